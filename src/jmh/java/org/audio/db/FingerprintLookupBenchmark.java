@@ -0,0 +1,104 @@
+package org.audio.db;
+
+import org.audio.db.repo.FilteredFingerprintRepository;
+import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.InMemorySongRepository;
+import org.audio.db.repo.MultiIndexFingerprintRepository;
+import org.audio.db.repo.PackedFingerprintRepository;
+import org.audio.fingerprints.FingerprintGenerator;
+import org.audio.models.TrackMatch;
+import org.audio.utils.LongArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск пятисекундного фрагмента с шумом в каталоге синтетических треков при разных
+ * допусках по Хэммингу: перебором соседей, перебором через фильтр существования и через
+ * мультииндекс. Для фильтра после прогона печатается, сколько проверок хешей на запрос
+ * дошло до хранилища и какую долю он отбросил.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=FingerprintLookupBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FingerprintLookupBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int TRACKS = 200;
+    private static final int TRACK_SECONDS = 20;
+    private static final int CLIP_SECONDS = 5;
+
+    @Param({"plain", "filter", "multi-index"})
+    public String lookup;
+
+    @Param({"1", "2", "3"})
+    public int distance;
+
+    private FingerprintRepository repository;
+    private InMemoryFingerprintDatabase database;
+    private LongArray clip;
+    private long queries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        InMemorySongRepository songs = new InMemorySongRepository();
+        FingerprintRepository packed = new PackedFingerprintRepository();
+        repository = switch (lookup) {
+            case "filter" -> new FilteredFingerprintRepository(packed, 1_000_000, 0.01);
+            case "multi-index" -> new MultiIndexFingerprintRepository(packed, 2);
+            default -> packed;
+        };
+        database = new InMemoryFingerprintDatabase(songs, repository);
+
+        for (int track = 0; track < TRACKS; track++) {
+            double[] audio = synthesize(random);
+            database.addTrack("track-" + track, "Track " + track, FingerprintGenerator.generateFingerprintHashes(audio));
+            if (track == TRACKS / 2) {
+                double[] excerpt = new double[CLIP_SECONDS * SAMPLE_RATE];
+                System.arraycopy(audio, 7 * SAMPLE_RATE, excerpt, 0, excerpt.length);
+                for (int i = 0; i < excerpt.length; i++) {
+                    excerpt[i] += 0.05 * random.nextGaussian();
+                }
+                clip = FingerprintGenerator.generateFingerprintHashes(excerpt);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (repository instanceof FilteredFingerprintRepository filtered) {
+            System.out.printf("%n%d probes/query, %.1f%% rejected by the filter, %.3f%% false positives, %d KB%n",
+                    filtered.probes() / queries, 100 * filtered.rejectionRate(),
+                    100 * filtered.falsePositiveRate(), filtered.filterBytes() / 1024);
+        }
+    }
+
+    @Benchmark
+    public TrackMatch[] bestMatches() {
+        queries++;
+        return database.bestMatches(clip, 5, 0.01f, distance);
+    }
+
+    // Последовательность двухтоновых нот по четверти секунды с лёгким шумом
+    private static double[] synthesize(Random random) {
+        int length = TRACK_SECONDS * SAMPLE_RATE;
+        double[] audio = new double[length];
+        int notes = TRACK_SECONDS * 4;
+        for (int note = 0; note < notes; note++) {
+            double first = 200 + random.nextDouble() * 3000;
+            double second = 200 + random.nextDouble() * 3000;
+            for (int i = note * length / notes; i < (note + 1) * length / notes; i++) {
+                audio[i] = 0.4 * Math.sin(2 * Math.PI * first * i / SAMPLE_RATE)
+                        + 0.3 * Math.sin(2 * Math.PI * second * i / SAMPLE_RATE)
+                        + 0.02 * random.nextGaussian();
+            }
+        }
+        return audio;
+    }
+}
@@ -0,0 +1,100 @@
+package org.audio.db;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Подсчёт сдвигов одного запроса: прежние словари с упакованными счётчиками на каждый трек
+ * против {@link OffsetHistogram} со сдвигами для всех треков (candidates = 10000) и только
+ * для отобранных по числу совпадений. Вхождения сгенерированы как у реального запроса:
+ * у искомого трека заметная доля совпадений лежит на одном сдвиге, остальные приходят
+ * от популярных по закону Ципфа треков каталога со случайными сдвигами.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=OffsetHistogramBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class OffsetHistogramBenchmark {
+    private static final int TRACKS = 10_000;
+    private static final int TRACK_HASHES = 20_000;
+    private static final int QUERY_HASHES = 2_000;
+    private static final int MATCHING_TRACK = 4_242;
+    private static final int TRUE_DELTA = 7_000;
+
+    @Param({"50000", "500000"})
+    public int postings;
+
+    @Param({"0.05"})
+    public double alignedShare;
+
+    @Param({"10000", "100"})
+    public int candidates;
+
+    private int[] ordinals;
+    private int[] deltas;
+    private final OffsetHistogram histogram = new OffsetHistogram();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(1);
+        double[] zipf = new double[TRACKS];
+        double total = 0;
+        for (int track = 0; track < TRACKS; track++) {
+            total += 1.0 / (track + 1);
+            zipf[track] = total;
+        }
+        ordinals = new int[postings];
+        deltas = new int[postings];
+        for (int i = 0; i < postings; i++) {
+            int queryOffset = random.nextInt(QUERY_HASHES);
+            if (random.nextDouble() < alignedShare) {
+                ordinals[i] = MATCHING_TRACK;
+                deltas[i] = TRUE_DELTA;
+            } else {
+                double point = random.nextDouble() * total;
+                int track = Arrays.binarySearch(zipf, point);
+                ordinals[i] = track >= 0 ? track : -track - 1;
+                deltas[i] = random.nextInt(TRACK_HASHES) - queryOffset;
+            }
+        }
+    }
+
+    @Benchmark
+    public int primitive() {
+        histogram.reset(TRACKS);
+        for (int i = 0; i < ordinals.length; i++) {
+            histogram.add(ordinals[i], deltas[i]);
+        }
+        histogram.align(candidates);
+        return histogram.alignedScore(MATCHING_TRACK);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public int boxed() {
+        Map<Integer, Integer>[] deltaCounts = new Map[TRACKS];
+        int[] bestDelta = new int[TRACKS];
+        for (int i = 0; i < ordinals.length; i++) {
+            int ordinal = ordinals[i];
+            Map<Integer, Integer> counts = deltaCounts[ordinal];
+            if (counts == null) {
+                counts = new HashMap<>();
+                deltaCounts[ordinal] = counts;
+            }
+            int count = counts.merge(deltas[i], 1, Integer::sum);
+            if (count > counts.getOrDefault(bestDelta[ordinal], 0)) {
+                bestDelta[ordinal] = deltas[i];
+            }
+        }
+        return deltaCounts[MATCHING_TRACK].get(bestDelta[MATCHING_TRACK]);
+    }
+}
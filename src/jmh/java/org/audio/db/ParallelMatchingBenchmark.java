@@ -0,0 +1,94 @@
+package org.audio.db;
+
+import org.audio.db.repo.InMemorySongRepository;
+import org.audio.db.repo.MultiIndexFingerprintRepository;
+import org.audio.db.repo.PackedFingerprintRepository;
+import org.audio.fingerprints.FingerprintGenerator;
+import org.audio.models.TrackMatch;
+import org.audio.utils.LongArray;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск 45-секундного фрагмента с шумом при обходе хранилища в пуле fork-join из parallelism
+ * потоков; parallelism = 0 — последовательный обход в вызывающем потоке. Ускорение — отношение
+ * времени при 0 ко времени при заданном числе потоков; больше потоков, чем ядер, не даёт выигрыша.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=ParallelMatchingBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelMatchingBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int TRACKS = 100;
+    private static final int TRACK_SECONDS = 60;
+    private static final int CLIP_SECONDS = 45;
+
+    @Param({"0", "1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"1", "2"})
+    public int distance;
+
+    private ForkJoinPool pool;
+    private InMemoryFingerprintDatabase database;
+    private LongArray clip;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+        database = new InMemoryFingerprintDatabase(new InMemorySongRepository(),
+                new MultiIndexFingerprintRepository(new PackedFingerprintRepository(), 2),
+                Double.POSITIVE_INFINITY, InMemoryFingerprintDatabase.DEFAULT_CANDIDATE_LIMIT,
+                pool, parallelism == 0 ? Integer.MAX_VALUE : 1);
+
+        for (int track = 0; track < TRACKS; track++) {
+            double[] audio = synthesize(random);
+            database.addTrack("track-" + track, "Track " + track, FingerprintGenerator.generateFingerprintHashes(audio));
+            if (track == TRACKS / 2) {
+                double[] excerpt = new double[CLIP_SECONDS * SAMPLE_RATE];
+                System.arraycopy(audio, 10 * SAMPLE_RATE, excerpt, 0, excerpt.length);
+                for (int i = 0; i < excerpt.length; i++) {
+                    excerpt[i] += 0.05 * random.nextGaussian();
+                }
+                clip = FingerprintGenerator.generateFingerprintHashes(excerpt);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Optional<TrackMatch> findBestMatch() {
+        return database.findBestMatch(clip, distance);
+    }
+
+    // Последовательность двухтоновых нот по четверти секунды с лёгким шумом
+    private static double[] synthesize(Random random) {
+        int length = TRACK_SECONDS * SAMPLE_RATE;
+        double[] audio = new double[length];
+        int notes = TRACK_SECONDS * 4;
+        for (int note = 0; note < notes; note++) {
+            double first = 200 + random.nextDouble() * 3000;
+            double second = 200 + random.nextDouble() * 3000;
+            for (int i = note * length / notes; i < (note + 1) * length / notes; i++) {
+                audio[i] = 0.4 * Math.sin(2 * Math.PI * first * i / SAMPLE_RATE)
+                        + 0.3 * Math.sin(2 * Math.PI * second * i / SAMPLE_RATE)
+                        + 0.02 * random.nextGaussian();
+            }
+        }
+        return audio;
+    }
+}
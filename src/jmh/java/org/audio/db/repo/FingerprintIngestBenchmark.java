@@ -0,0 +1,49 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность параллельной записи вхождений: потоки пишут в одно хранилище
+ * случайные хеши из общего диапазона, как при одновременной регистрации треков.
+ * Сравнение с запуском в один поток ({@code @Threads(1)}) показывает масштабирование по ядрам.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=FingerprintIngestBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class FingerprintIngestBenchmark {
+    // Около миллиона различных хешей: списки растут, но таблица не разрастается без предела
+    private static final long HASH_MASK = 0xFFFFFL;
+
+    @Param({"map", "packed"})
+    public String impl;
+
+    private FingerprintRepository repository;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private final SplittableRandom random = new SplittableRandom();
+        private final int ordinal = (int) (Thread.currentThread().getId() & 0x7FFF);
+        private int offset;
+    }
+
+    // Новое хранилище на каждую итерацию, чтобы размер списков не зависел от её длительности
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = "packed".equals(impl) ? new PackedFingerprintRepository() : new InMemoryFingerprintRepository();
+    }
+
+    @Benchmark
+    public void save(Writer writer) {
+        repository.save(writer.random.nextLong() & HASH_MASK, SongMatch.posting(writer.ordinal, writer.offset++));
+    }
+}
@@ -0,0 +1,74 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Память на вхождение и скорость поиска для хранилищ отпечатков.
+ * Остаточный объём кучи после заполнения печатается при подготовке каждого варианта
+ * строкой {@code bytes/posting}; время измеряется для поиска по существующим хешам.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=FingerprintRepositoryBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FingerprintRepositoryBenchmark {
+    // Около 100 треков по 3,5 минуты: ~45 тысяч хешей на трек
+    private static final int TRACKS = 100;
+    private static final int HASHES_PER_TRACK = 45_000;
+    private static final int LOOKUPS = 1024;
+
+    @Param({"map", "packed"})
+    public String impl;
+
+    private FingerprintRepository repository;
+    private long[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedHeap(memory);
+
+        repository = "packed".equals(impl) ? new PackedFingerprintRepository() : new InMemoryFingerprintRepository();
+        Random random = new Random(42);
+        queries = new long[LOOKUPS];
+        for (int track = 0; track < TRACKS; track++) {
+            for (int offset = 0; offset < HASHES_PER_TRACK; offset++) {
+                // 48-битные хеши с повторами, как у реальных отпечатков
+                long hash = random.nextLong() & 0x3FFFFFFFFL;
+                repository.save(hash, SongMatch.posting(track, offset));
+                if (offset < LOOKUPS && track == 0) {
+                    queries[offset] = hash;
+                }
+            }
+        }
+
+        long after = usedHeap(memory);
+        long postings = (long) TRACKS * HASHES_PER_TRACK;
+        System.out.printf("%n%s: %.1f bytes/posting (%d postings)%n", impl, (after - before) / (double) postings, postings);
+    }
+
+    @Benchmark
+    public List<SongMatch> findByHash() {
+        long hash = queries[next++ & (LOOKUPS - 1)];
+        return repository.findByHash(hash);
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,90 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongMatch;
+import org.audio.fingerprints.FingerprintFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Открытие, поиск и декодирование сегмента на диске. Время открытия, байты на хеш и на
+ * вхождение (сжатые и в несжатом представлении: 12 байт на хеш и 8 на вхождение)
+ * печатаются при подготовке. Измеряются поиск по существующим хешам и полный
+ * последовательный обход с декодированием всех вхождений; скорость декодирования —
+ * число вхождений, делённое на время {@code scanAll}.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=FingerprintSegmentBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FingerprintSegmentBenchmark {
+    private static final int TRACKS = 100;
+    private static final int HASHES_PER_TRACK = 45_000;
+    private static final int LOOKUPS = 1024;
+
+    // unique — почти все хеши различны, dense — около 22 вхождений на хеш
+    @Param({"unique", "dense"})
+    public String hashes;
+
+    private Path path;
+    private FingerprintSegment segment;
+    private long[] queries;
+    private int next;
+    private long sink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FingerprintSegmentWriter writer = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        Random random = new Random(42);
+        queries = new long[LOOKUPS];
+        for (int track = 0; track < TRACKS; track++) {
+            for (int offset = 0; offset < HASHES_PER_TRACK; offset++) {
+                long hash = "dense".equals(hashes) ? random.nextInt(200_000) : random.nextLong() & 0x3FFFFFFFFL;
+                writer.add(hash, SongMatch.posting(track, offset));
+                if (offset < LOOKUPS && track == 0) {
+                    queries[offset] = hash;
+                }
+            }
+        }
+        path = Files.createTempFile("fingerprints", ".seg");
+        long bytes = writer.write(path);
+
+        long start = System.nanoTime();
+        segment = FingerprintSegment.open(path);
+        System.out.printf("%nsegment: %.1f MB, opened in %.2f ms%n", bytes / 1e6, (System.nanoTime() - start) / 1e6);
+        long uncompressed = 12L * segment.hashCount() + 8L * segment.postingCount();
+        System.out.printf("%.1f bytes/hash (uncompressed %.1f), %.2f bytes/posting, %d postings%n",
+                bytes / (double) segment.hashCount(), uncompressed / (double) segment.hashCount(),
+                bytes / (double) segment.postingCount(), segment.postingCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public int forEachPosting() {
+        long hash = queries[next++ & (LOOKUPS - 1)];
+        return segment.forEachPosting(hash, posting -> sink += posting);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public long scanAll() {
+        FingerprintSegment.Cursor cursor = segment.cursor();
+        long count = 0;
+        while (cursor.next()) {
+            count += cursor.forEachPosting(posting -> sink += posting);
+        }
+        return count;
+    }
+}
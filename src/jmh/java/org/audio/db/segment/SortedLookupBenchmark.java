@@ -0,0 +1,121 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongMatch;
+import org.audio.fingerprints.FingerprintFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Все хеши фрагмента длиной clipSeconds в сегменте из 100 треков: поиск по одному хешу
+ * против пакетного слияния отсортированных хешей с сегментом. При distance = 1 к каждому
+ * хешу добавляются 48 соседей на расстоянии одного бита, как при поиске по Хэммингу, —
+ * 49 обращений на хеш. Пары методов: {@code findByHash}/{@code findByHashes} — через
+ * объекты {@link SongMatch}, {@code perHash}/{@code sorted} — только обращения к сегменту;
+ * сортировка пакета входит в время пакетных методов.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=SortedLookupBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SortedLookupBenchmark {
+    private static final int TRACKS = 100;
+    private static final int HASHES_PER_TRACK = 45_000;
+    // Около 200 хешей на секунду звука, как у генератора отпечатков
+    private static final int HASHES_PER_SECOND = 200;
+
+    @Param({"5", "15", "30", "60"})
+    public int clipSeconds;
+
+    @Param({"0", "1"})
+    public int distance;
+
+    private Path path;
+    private FingerprintSegment segment;
+    private long[] queries;
+    private List<Long> queryList;
+    private long[] sorted;
+    private long sink;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        FingerprintSegmentWriter writer = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        Random random = new Random(42);
+        int clipHashes = clipSeconds * HASHES_PER_SECOND;
+        long[] clip = new long[clipHashes];
+        for (int track = 0; track < TRACKS; track++) {
+            for (int offset = 0; offset < HASHES_PER_TRACK; offset++) {
+                long hash = random.nextLong() & 0x3FFFFFFFFL;
+                writer.add(hash, SongMatch.posting(track, offset));
+                if (track == TRACKS / 2 && offset >= 1_000 && offset < 1_000 + clipHashes) {
+                    clip[offset - 1_000] = hash;
+                }
+            }
+        }
+        path = Files.createTempFile("fingerprints", ".seg");
+        writer.write(path);
+        segment = FingerprintSegment.open(path);
+
+        int perHash = distance == 0 ? 1 : 1 + FingerprintFormat.CONTENT_BITS;
+        queries = new long[clipHashes * perHash];
+        int count = 0;
+        for (long hash : clip) {
+            queries[count++] = hash;
+            for (int bit = 0; distance > 0 && bit < FingerprintFormat.CONTENT_BITS; bit++) {
+                queries[count++] = hash ^ (1L << bit);
+            }
+        }
+        queryList = new ArrayList<>(queries.length);
+        for (long hash : queries) {
+            queryList.add(hash);
+        }
+        sorted = new long[queries.length];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    public int findByHash() {
+        int count = 0;
+        for (long hash : queries) {
+            List<SongMatch> matches = segment.findByHash(hash);
+            count += matches == null ? 0 : matches.size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int findByHashes() {
+        return segment.findByHashes(queryList).size();
+    }
+
+    @Benchmark
+    public long perHash() {
+        long count = 0;
+        for (long hash : queries) {
+            count += segment.forEachPosting(hash, posting -> sink += posting);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long sorted() {
+        System.arraycopy(queries, 0, sorted, 0, queries.length);
+        Arrays.sort(sorted);
+        return segment.forEachPostingSorted(sorted, sorted.length, (index, posting) -> sink += posting);
+    }
+}
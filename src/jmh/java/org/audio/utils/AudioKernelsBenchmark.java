@@ -0,0 +1,93 @@
+package org.audio.utils;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение скалярных и векторных ядер аудиоконвейера.
+ * Размеры соответствуют окну БПФ (4096) и 10 секундам PCM при 44.1 кГц.
+ *
+ * <pre>./gradlew jmh -Pjmh.includes=AudioKernelsBenchmark</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioKernelsBenchmark {
+    private static final int WINDOW_SIZE = 4096;
+    private static final int TRACK_SAMPLES = 44100 * 10;
+
+    @Param({"scalar", "vector"})
+    public String impl;
+
+    private AudioKernels kernels;
+    private double[] track;
+    private double[] frame;
+    private double[] window;
+    private double[] re;
+    private double[] im;
+    private double[] power;
+    private byte[] pcm;
+    private double[] decoded;
+
+    @Setup
+    public void setUp() {
+        kernels = "vector".equals(impl) ? new VectorAudioKernels() : new ScalarAudioKernels();
+
+        Random random = new Random(42);
+        track = new double[TRACK_SAMPLES];
+        for (int i = 0; i < track.length; i++) {
+            track[i] = random.nextGaussian() * 0.2;
+        }
+        frame = new double[WINDOW_SIZE];
+        window = new double[WINDOW_SIZE];
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            window[i] = 0.5 * (1 - Math.cos(2 * Math.PI * i / (WINDOW_SIZE - 1)));
+        }
+        re = new double[WINDOW_SIZE / 2 + 1];
+        im = new double[WINDOW_SIZE / 2 + 1];
+        for (int i = 0; i < re.length; i++) {
+            re[i] = random.nextGaussian();
+            im[i] = random.nextGaussian();
+        }
+        power = new double[re.length];
+        pcm = new byte[TRACK_SAMPLES * 2];
+        random.nextBytes(pcm);
+        decoded = new double[TRACK_SAMPLES];
+    }
+
+    @Benchmark
+    public double sumOfSquares() {
+        return kernels.sumOfSquares(track, 0, track.length);
+    }
+
+    @Benchmark
+    public double[] scaleAndClamp() {
+        System.arraycopy(track, 0, frame, 0, WINDOW_SIZE);
+        kernels.scaleAndClamp(frame, WINDOW_SIZE, 1.7);
+        return frame;
+    }
+
+    @Benchmark
+    public double[] hannWindow() {
+        System.arraycopy(track, 0, frame, 0, WINDOW_SIZE);
+        kernels.multiply(frame, window, WINDOW_SIZE);
+        return frame;
+    }
+
+    @Benchmark
+    public double[] spectrumPower() {
+        kernels.power(re, im, power, re.length);
+        return power;
+    }
+
+    @Benchmark
+    public double[] decodePcm16() {
+        kernels.decodePcm16(pcm, 0, decoded, decoded.length);
+        return decoded;
+    }
+}
@@ -3,29 +3,109 @@ package org.audio.configs;
 import jakarta.servlet.MultipartConfigElement;
 import org.audio.db.FingerprintDatabase;
 import org.audio.db.InMemoryFingerprintDatabase;
+import org.audio.db.repo.FilteredFingerprintRepository;
 import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.InMemoryFingerprintRepository;
+import org.audio.db.repo.MultiIndexFingerprintRepository;
+import org.audio.db.repo.PackedFingerprintRepository;
 import org.audio.db.repo.SongRepository;
+import org.audio.db.repo.StopHashFingerprintRepository;
+import org.audio.db.segment.SegmentedFingerprintRepository;
+import org.audio.fingerprints.FingerprintFormat;
+import org.audio.fingerprints.FingerprintPrecision;
 import org.audio.services.AudioMatchingService;
 import org.audio.services.FingerprintService;
 import org.audio.services.FingerprintServiceBase;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.boot.web.servlet.MultipartConfigFactory;
 import org.springframework.util.unit.DataSize;
 import io.swagger.v3.oas.annotations.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
 
 @Configuration
 public class AudioConfig {
 
+    /**
+     * Хранилище отпечатков выбирается свойством audio.fingerprint.repository:
+     * map — {@link InMemoryFingerprintRepository}, packed — {@link PackedFingerprintRepository},
+     * segmented — {@link SegmentedFingerprintRepository} в каталоге audio.fingerprint.segments.directory,
+     * который переживает перезапуск. При audio.fingerprint.filter.enabled хранилище
+     * оборачивается в {@link FilteredFingerprintRepository} с фильтром Блума. Если задан
+     * audio.fingerprint.stop-hashes.max-postings больше нуля, хеши с более длинными списками
+     * становятся стоп-хешами ({@link StopHashFingerprintRepository}). При
+     * audio.fingerprint.hamming.multi-index всё это оборачивается снаружи в {@link MultiIndexFingerprintRepository},
+     * который ищет соседей по Хэммингу через мультииндекс из audio.fingerprint.hamming.blocks блоков.
+     */
+    @Bean
+    public FingerprintRepository fingerprintRepository(
+            @Value("${audio.fingerprint.repository:map}") String repository,
+            @Value("${audio.fingerprint.sample-rate:44100}") int sampleRate,
+            @Value("${audio.fingerprint.segments.directory:data/fingerprints}") String segmentsDirectory,
+            @Value("${audio.fingerprint.segments.flush-threshold:1000000}") int flushThreshold,
+            @Value("${audio.fingerprint.segments.merge-factor:4}") int mergeFactor,
+            @Value("${audio.fingerprint.filter.enabled:false}") boolean filterEnabled,
+            @Value("${audio.fingerprint.filter.expected-hashes:10000000}") long filterExpectedHashes,
+            @Value("${audio.fingerprint.filter.false-positive-rate:0.01}") double filterFalsePositiveRate,
+            @Value("${audio.fingerprint.stop-hashes.max-postings:0}") int maxPostingsPerHash,
+            @Value("${audio.fingerprint.hamming.multi-index:false}") boolean multiIndexEnabled,
+            @Value("${audio.fingerprint.hamming.blocks:2}") int multiIndexBlocks,
+            SongRepository songRepository) throws IOException {
+        FingerprintRepository base = switch (repository) {
+            case "map" -> new InMemoryFingerprintRepository();
+            case "packed" -> new PackedFingerprintRepository();
+            case "segmented" -> new SegmentedFingerprintRepository(Path.of(segmentsDirectory),
+                    FingerprintFormat.forSampleRate(sampleRate), songRepository, flushThreshold, mergeFactor);
+            default -> throw new IllegalArgumentException("Unknown fingerprint repository: " + repository);
+        };
+        FingerprintRepository filtered = filterEnabled
+                ? new FilteredFingerprintRepository(base, filterExpectedHashes, filterFalsePositiveRate)
+                : base;
+        FingerprintRepository capped = maxPostingsPerHash > 0
+                ? new StopHashFingerprintRepository(filtered, maxPostingsPerHash)
+                : filtered;
+        return multiIndexEnabled ? new MultiIndexFingerprintRepository(capped, multiIndexBlocks) : capped;
+    }
+
+    /**
+     * При audio.fingerprint.hamming.adaptive запрос сначала ищет точные совпадения и расширяет
+     * допуск по Хэммингу, только если лучший трек опережает второй меньше чем в
+     * audio.fingerprint.hamming.adaptive-margin раз. Сдвиги совпадений считаются только для
+     * audio.fingerprint.scoring.candidates треков с наибольшим числом совпадений. Запросы не короче
+     * audio.fingerprint.scoring.parallel-threshold хешей обходят хранилище в общем пуле fork-join.
+     * При audio.fingerprint.scoring.early-exit-heuristic (по умолчанию выключено) идентификация
+     * прекращает обход запроса, как только лучший трек по оценке далеко опережает второй;
+     * это эвристика, а не гарантия, см. {@link InMemoryFingerprintDatabase}.
+     */
     @Bean
-    public FingerprintDatabase fingerprintDatabase(SongRepository songRepository, FingerprintRepository fingerprintRepository) {
-        return new InMemoryFingerprintDatabase(songRepository, fingerprintRepository);
+    public FingerprintDatabase fingerprintDatabase(
+            SongRepository songRepository,
+            FingerprintRepository fingerprintRepository,
+            @Value("${audio.fingerprint.hamming.adaptive:false}") boolean adaptive,
+            @Value("${audio.fingerprint.hamming.adaptive-margin:2.0}") double adaptiveMargin,
+            @Value("${audio.fingerprint.scoring.candidates:100}") int candidateLimit,
+            @Value("${audio.fingerprint.scoring.parallel-threshold:4096}") int parallelThreshold,
+            @Value("${audio.fingerprint.scoring.early-exit-heuristic:false}") boolean earlyExitHeuristic) {
+        return new InMemoryFingerprintDatabase(songRepository, fingerprintRepository,
+                adaptive ? adaptiveMargin : Double.POSITIVE_INFINITY, candidateLimit,
+                ForkJoinPool.commonPool(), parallelThreshold, earlyExitHeuristic);
     }
 
+    /**
+     * Точность конвейера задаётся свойством audio.fingerprint.precision: DOUBLE или FLOAT,
+     * частота спектрограммы — audio.fingerprint.sample-rate: 44100, 22050 или 11025.
+     * Индекс и запросы должны строиться в одном режиме; частота входит в версию формата хешей.
+     */
     @Bean
-    public FingerprintService fingerprintService() {
-        return new FingerprintService();
+    public FingerprintService fingerprintService(
+            @Value("${audio.fingerprint.precision:DOUBLE}") FingerprintPrecision precision,
+            @Value("${audio.fingerprint.sample-rate:44100}") int sampleRate) {
+        return new FingerprintService(precision, FingerprintFormat.forSampleRate(sampleRate));
     }
 
     @Bean
@@ -12,6 +12,7 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 @Tag(name = "Audio", description = "Audio fingerprinting и идентификация треков")
 @RestController
@@ -28,11 +29,12 @@ public class AudioController {
     @PostMapping(path = "/identify", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<MatchResponse> identifyTrack(
             @Parameter(description = "Аудиофайл для идентификации", required = true)
-            @RequestParam("audioFile") MultipartFile audioFile) {
+            @RequestParam("audioFile") MultipartFile audioFile,
+            @Parameter(description = "Допуск по Хэммингу для хешей, от 0 до 3", example = "1")
+            @RequestParam(defaultValue = "1") int hammingDistance) {
 
-        try {
-            byte[] audioData = audioFile.getBytes();
-            var result = audioMatchingService.identifyTrack(audioData);
+        try (InputStream audioStream = audioFile.getInputStream()) {
+            var result = audioMatchingService.identifyTrack(audioStream, hammingDistance);
 
             if (!result.isSuccess()) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -59,11 +61,12 @@ public class AudioController {
             @Parameter(description = "Максимальное количество результатов", example = "20")
             @RequestParam(defaultValue = "20") int limit,
             @Parameter(description = "Минимальная уверенность", example = "0.5")
-            @RequestParam(defaultValue = "0.5") float minConfidence) {
+            @RequestParam(defaultValue = "0.5") float minConfidence,
+            @Parameter(description = "Допуск по Хэммингу для хешей, от 0 до 3", example = "1")
+            @RequestParam(defaultValue = "1") int hammingDistance) {
 
-        try {
-            byte[] audioData = audioFile.getBytes();
-            var result = audioMatchingService.findBestMatches(audioData, limit, minConfidence);
+        try (InputStream audioStream = audioFile.getInputStream()) {
+            var result = audioMatchingService.findBestMatches(audioStream, limit, minConfidence, hammingDistance);
 
             if (!result.isSuccess()) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -88,9 +91,8 @@ public class AudioController {
             @Parameter(description = "Аудиофайл трека", required = true)
             @RequestParam("audioFile") MultipartFile audioFile) {
 
-        try {
-            byte[] audioData = audioFile.getBytes();
-            audioMatchingService.registerTrack(trackId, title, audioData);
+        try (InputStream audioStream = audioFile.getInputStream()) {
+            audioMatchingService.registerTrack(trackId, title, audioStream);
 
             return ResponseEntity.ok(new MatchResponse(
                     true,
@@ -0,0 +1,64 @@
+package org.audio.controller;
+
+import org.audio.db.FingerprintDatabase;
+import org.audio.db.InMemoryFingerprintDatabase;
+import org.audio.db.repo.DelegatingFingerprintRepository;
+import org.audio.db.repo.FilteredFingerprintRepository;
+import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.PostingLengthHistogram;
+import org.audio.db.repo.StopHashFingerprintRepository;
+import org.audio.dto.HammingTierStatsResponse;
+import org.audio.dto.IndexStatsResponse;
+import org.audio.dto.PostingDistributionResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+@Tag(name = "Index admin", description = "Состояние индекса отпечатков")
+@RestController
+@RequestMapping("/api/admin/index")
+public class IndexAdminController {
+
+    private final FingerprintRepository fingerprintRepository;
+    private final FingerprintDatabase fingerprintDatabase;
+
+    public IndexAdminController(FingerprintRepository fingerprintRepository, FingerprintDatabase fingerprintDatabase) {
+        this.fingerprintRepository = fingerprintRepository;
+        this.fingerprintDatabase = fingerprintDatabase;
+    }
+
+    @Operation(summary = "Счётчики фильтра существования",
+            description = "Число проверок хешей, отброшенных фильтром и ложных срабатываний. 404, если фильтр выключен.")
+    @GetMapping("/filter")
+    public ResponseEntity<IndexStatsResponse> filterStats() {
+        return DelegatingFingerprintRepository.find(fingerprintRepository, FilteredFingerprintRepository.class)
+                .map(filtered -> ResponseEntity.ok(IndexStatsResponse.fromRepository(filtered)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @Operation(summary = "Распределение длин списков вхождений",
+            description = "Число хешей и вхождений по интервалам длины [2^k, 2^(k+1)), самые длинные списки "
+                    + "и счётчики стоп-хешей. Обходит весь индекс.")
+    @GetMapping("/postings")
+    public ResponseEntity<PostingDistributionResponse> postingDistribution(
+            @Parameter(description = "Сколько самых длинных списков вернуть", example = "20")
+            @RequestParam(defaultValue = "20") int top) {
+        PostingLengthHistogram histogram = PostingLengthHistogram.of(fingerprintRepository, Math.max(0, top));
+        StopHashFingerprintRepository stopHashes = DelegatingFingerprintRepository
+                .find(fingerprintRepository, StopHashFingerprintRepository.class)
+                .orElse(null);
+        return ResponseEntity.ok(PostingDistributionResponse.fromHistogram(histogram, stopHashes));
+    }
+
+    @Operation(summary = "Счётчики ступеней поиска по Хэммингу",
+            description = "Для каждого допуска: сколько запросов его выполнили и сколько на нём закончились.")
+    @GetMapping("/hamming-tiers")
+    public ResponseEntity<HammingTierStatsResponse> hammingTierStats() {
+        if (fingerprintDatabase instanceof InMemoryFingerprintDatabase database) {
+            return ResponseEntity.ok(HammingTierStatsResponse.fromStats(database.tierStats()));
+        }
+        return ResponseEntity.notFound().build();
+    }
+}
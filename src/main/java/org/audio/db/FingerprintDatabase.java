@@ -1,14 +1,57 @@
 package org.audio.db;
 
 import org.audio.models.TrackMatch;
+import org.audio.utils.LongArray;
 
 import java.util.List;
 import java.util.Optional;
 
 public abstract class FingerprintDatabase {
-    public abstract Optional<TrackMatch> findBestMatch(List<Long> queryHashes);
+    /**
+     * Допуск по Хэммингу для запросов без явного расстояния: хеш совпадает с хешами,
+     * отличающимися от него не больше чем в одном бите.
+     */
+    public static final int DEFAULT_HAMMING_DISTANCE = 1;
+    public static final int MAX_HAMMING_DISTANCE = 3;
 
-    public abstract TrackMatch[] bestMatches(List<Long> queryHashes, int limit, float minConfidence);
+    public Optional<TrackMatch> findBestMatch(LongArray queryHashes) {
+        return findBestMatch(queryHashes, DEFAULT_HAMMING_DISTANCE);
+    }
 
-    public abstract void addTrack(String trackId, String trackName, List<Long> fingerprints);
-}
\ No newline at end of file
+    public TrackMatch[] bestMatches(LongArray queryHashes, int limit, float minConfidence) {
+        return bestMatches(queryHashes, limit, minConfidence, DEFAULT_HAMMING_DISTANCE);
+    }
+
+    /**
+     * @param maxHammingDistance допуск по Хэммингу, от 0 до {@link #MAX_HAMMING_DISTANCE}
+     * @throws IllegalArgumentException если допуск вне диапазона
+     */
+    public abstract Optional<TrackMatch> findBestMatch(LongArray queryHashes, int maxHammingDistance);
+
+    /**
+     * @param maxHammingDistance допуск по Хэммингу, от 0 до {@link #MAX_HAMMING_DISTANCE}
+     * @throws IllegalArgumentException если допуск вне диапазона
+     */
+    public abstract TrackMatch[] bestMatches(LongArray queryHashes, int limit, float minConfidence,
+                                             int maxHammingDistance);
+
+    public abstract void addTrack(String trackId, String trackName, LongArray fingerprints);
+
+    // Упакованные адаптеры для вызовов со списками Long
+
+    public Optional<TrackMatch> findBestMatch(List<Long> queryHashes) {
+        return findBestMatch(toLongArray(queryHashes));
+    }
+
+    public TrackMatch[] bestMatches(List<Long> queryHashes, int limit, float minConfidence) {
+        return bestMatches(toLongArray(queryHashes), limit, minConfidence);
+    }
+
+    public void addTrack(String trackId, String trackName, List<Long> fingerprints) {
+        addTrack(trackId, trackName, toLongArray(fingerprints));
+    }
+
+    private static LongArray toLongArray(List<Long> hashes) {
+        return hashes == null ? null : LongArray.fromList(hashes);
+    }
+}
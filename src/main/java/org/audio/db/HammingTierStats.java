@@ -0,0 +1,47 @@
+package org.audio.db;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики ступеней адаптивного поиска: сколько запросов выполнили поиск с допуском
+ * по Хэммингу d и на скольких из них поиск закончился.
+ */
+public final class HammingTierStats {
+    private final LongAdder[] runs;
+    private final LongAdder[] finished;
+
+    HammingTierStats(int maxDistance) {
+        this.runs = new LongAdder[maxDistance + 1];
+        this.finished = new LongAdder[maxDistance + 1];
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            runs[distance] = new LongAdder();
+            finished[distance] = new LongAdder();
+        }
+    }
+
+    void recordRun(int distance) {
+        runs[distance].increment();
+    }
+
+    void recordFinish(int distance) {
+        finished[distance].increment();
+    }
+
+    public int maxDistance() {
+        return runs.length - 1;
+    }
+
+    /**
+     * Число запросов, дошедших до допуска distance.
+     */
+    public long runs(int distance) {
+        return runs[distance].sum();
+    }
+
+    /**
+     * Число запросов, результат которых получен с допуском distance.
+     */
+    public long finished(int distance) {
+        return finished[distance].sum();
+    }
+}
@@ -3,111 +3,251 @@ package org.audio.db;
 import org.audio.db.repo.FingerprintRepository;
 import org.audio.db.repo.SongRepository;
 import org.audio.models.TrackMatch;
+import org.audio.utils.LongArray;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
+/**
+ * Поиск по отпечаткам в памяти. В адаптивном режиме запрос сначала ищет только точные
+ * совпадения хешей и расширяет допуск по Хэммингу на единицу, пока результат не станет
+ * однозначным или допуск не дойдёт до запрошенного: каждый бит допуска умножает число
+ * обращений к хранилищу примерно в 49 раз, а чистые фрагменты обычно узнаются уже
+ * по точным хешам. Результат однозначен, если у лучшего трека не меньше {@code MIN_MATCHES}
+ * совпадений с одним сдвигом и их хотя бы в adaptiveMargin раз больше, чем у второго.
+ *
+ * <p>Совпадения считаются в два прохода: сначала только число совпадений каждого трека,
+ * затем сдвиги для candidateLimit треков с наибольшим числом совпадений. Трек вне этого
+ * списка не может стать лучшим, если его совпадений меньше, чем совпадений с одним сдвигом
+ * у победителя, поэтому небольшой список почти не меняет результат, а стоимость подсчёта
+ * сдвигов перестаёт расти с числом треков, делящих с запросом частые хеши. Совпадения
+ * первого прохода хранятся для второго, пока их не больше hitLimit; сверх этого второй
+ * проход заново обходит хранилище и считает сдвиги только отобранных треков, так что память
+ * подсчёта ограничена и при запросе из одних частых хешей.
+ *
+ * <p>Запрос не короче parallelThreshold хешей делится на отрезки, которые обходят хранилище
+ * в пуле fork-join, каждый в свою частичную гистограмму — только совпадения и их число
+ * по встреченным трекам, без массивов по всему каталогу; частичные гистограммы
+ * переиспользуются запросами потока и объединяются в порядке отрезков, поэтому результат
+ * совпадает с последовательным обходом.
+ *
+ * <p>Если хранилище проходит отсортированный пакет слиянием
+ * ({@link FingerprintRepository#supportsSortedLookup()}), точные совпадения отрезка ищутся
+ * одним пакетом {@link FingerprintRepository#forEachPostingSorted}; соседи по Хэммингу
+ * по-прежнему ищутся по одному хешу.
+ *
+ * <p>С эвристикой досрочной остановки (по умолчанию выключена) {@link #findBestMatch} обходит
+ * запрос блоками, удваивая просмотренную часть, и после каждого блока сравнивает лучший трек
+ * с оценкой того, сколько совпадений с одним сдвигом второй трек наберёт на оставшихся хешах;
+ * удвоение ограничивает повторные пересчёты сдвигов двукратной стоимостью одного. Оценка —
+ * не верхняя граница: она исходит из темпа второго трека в просмотренной части и учитывает
+ * только отобранные треки, поэтому трек, совпадающий лишь с концом запроса, может быть
+ * отброшен ошибочно. Совпадения и уверенность результата при остановке считаются по
+ * просмотренной части, а не по всему запросу.
+ */
 @Service
 public class InMemoryFingerprintDatabase extends FingerprintDatabase {
 
     private final SongRepository songRepository;
     private final FingerprintRepository fingerprintRepository;
+    private final double adaptiveMargin;
+    private final int candidateLimit;
+    private final ForkJoinPool pool;
+    private final int parallelThreshold;
+    private final boolean earlyExitHeuristic;
+    private final boolean sortedLookup;
+    private final HammingTierStats tierStats = new HammingTierStats(MAX_HAMMING_DISTANCE);
+    private final int hitLimit;
+    // Гистограмма переиспользуется запросами одного потока, поэтому подсчёт не выделяет память
+    private final ThreadLocal<OffsetHistogram> histograms;
+    private final ThreadLocal<SortedQueryBatch> batches;
 
     private static final int MIN_MATCHES = 5;
-    private static final int HAMMING_DISTANCE_THRESHOLD = 1;
+    public static final int DEFAULT_CANDIDATE_LIMIT = 100;
+    // Около 20 секунд звука: на более коротких запросах разбиение не окупается
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+    private static final int MIN_SLICE = 256;
+    // Первая проверка досрочной остановки — после стольких хешей запроса
+    private static final int EARLY_EXIT_BLOCK = 256;
+    // Запас оценки прироста второго трека в стандартных отклонениях
+    private static final double EARLY_EXIT_SIGMAS = 3;
 
+    /**
+     * Неадаптивный поиск: запрос всегда выполняется с полным допуском.
+     */
+    @Autowired
     public InMemoryFingerprintDatabase(SongRepository songRepository, FingerprintRepository fingerprintRepository) {
+        this(songRepository, fingerprintRepository, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @param adaptiveMargin во сколько раз лучший трек должен опережать второй, чтобы допуск
+     *                       не расширялся; {@link Double#POSITIVE_INFINITY} отключает адаптивный режим
+     */
+    public InMemoryFingerprintDatabase(SongRepository songRepository, FingerprintRepository fingerprintRepository,
+                                       double adaptiveMargin) {
+        this(songRepository, fingerprintRepository, adaptiveMargin, DEFAULT_CANDIDATE_LIMIT);
+    }
+
+    /**
+     * @param candidateLimit для скольких треков с наибольшим числом совпадений считать сдвиги;
+     *                       в {@link #bestMatches} не меньше запрошенного числа результатов
+     */
+    public InMemoryFingerprintDatabase(SongRepository songRepository, FingerprintRepository fingerprintRepository,
+                                       double adaptiveMargin, int candidateLimit) {
+        this(songRepository, fingerprintRepository, adaptiveMargin, candidateLimit,
+                ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param pool              пул для обхода хранилища длинными запросами
+     * @param parallelThreshold с какого числа хешей запрос обходит хранилище параллельно;
+     *                          {@link Integer#MAX_VALUE} отключает параллельный обход
+     */
+    public InMemoryFingerprintDatabase(SongRepository songRepository, FingerprintRepository fingerprintRepository,
+                                       double adaptiveMargin, int candidateLimit,
+                                       ForkJoinPool pool, int parallelThreshold) {
+        this(songRepository, fingerprintRepository, adaptiveMargin, candidateLimit, pool, parallelThreshold, false);
+    }
+
+    /**
+     * @param earlyExitHeuristic прекращать {@link #findBestMatch} обход запроса, как только лучший
+     *                           трек по оценке далеко опережает второй; эвристика может ошибиться
+     *                           и меняет смысл числа совпадений и уверенности в результате
+     */
+    public InMemoryFingerprintDatabase(SongRepository songRepository, FingerprintRepository fingerprintRepository,
+                                       double adaptiveMargin, int candidateLimit,
+                                       ForkJoinPool pool, int parallelThreshold, boolean earlyExitHeuristic) {
+        this(songRepository, fingerprintRepository, adaptiveMargin, candidateLimit, pool, parallelThreshold,
+                earlyExitHeuristic, OffsetHistogram.DEFAULT_HIT_LIMIT);
+    }
+
+    /**
+     * @param hitLimit сколько совпадений запроса хранить в памяти для подсчёта сдвигов; при
+     *                 большем числе сдвиги отобранных треков считаются повторным обходом хранилища
+     */
+    InMemoryFingerprintDatabase(SongRepository songRepository, FingerprintRepository fingerprintRepository,
+                                double adaptiveMargin, int candidateLimit, ForkJoinPool pool,
+                                int parallelThreshold, boolean earlyExitHeuristic, int hitLimit) {
+        if (!(adaptiveMargin >= 1)) {
+            throw new IllegalArgumentException("Adaptive margin must be at least 1");
+        }
+        if (candidateLimit < 1) {
+            throw new IllegalArgumentException("Candidate limit must be positive");
+        }
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("Parallel threshold must be positive");
+        }
+        if (hitLimit < 1) {
+            throw new IllegalArgumentException("Hit limit must be positive");
+        }
         this.songRepository = songRepository;
         this.fingerprintRepository = fingerprintRepository;
+        this.adaptiveMargin = adaptiveMargin;
+        this.candidateLimit = candidateLimit;
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        this.earlyExitHeuristic = earlyExitHeuristic;
+        this.sortedLookup = fingerprintRepository.supportsSortedLookup();
+        this.hitLimit = hitLimit;
+        this.histograms = ThreadLocal.withInitial(() -> new OffsetHistogram(hitLimit));
+        this.batches = ThreadLocal.withInitial(() -> new SortedQueryBatch(hitLimit));
+    }
+
+    public HammingTierStats tierStats() {
+        return tierStats;
     }
 
     @Override
-    public void addTrack(String trackId, String trackName, List<Long> fingerprints) {
+    public void addTrack(String trackId, String trackName, LongArray fingerprints) {
         SongData songData = new SongData(trackId, trackName);
         songRepository.save(songData);
+        int ordinal = songRepository.ordinalOf(trackId);
 
         for (int offset = 0; offset < fingerprints.size(); offset++) {
             long hash = fingerprints.get(offset);
-            fingerprintRepository.save(hash, new SongMatch(trackId, offset));
+            fingerprintRepository.save(hash, SongMatch.posting(ordinal, offset));
         }
     }
 
     @Override
-    public Optional<TrackMatch> findBestMatch(List<Long> queryHashes) {
+    public Optional<TrackMatch> findBestMatch(LongArray queryHashes, int maxHammingDistance) {
+        checkHammingDistance(maxHammingDistance);
         if (queryHashes == null || queryHashes.isEmpty()) {
             return Optional.empty();
         }
 
-        Map<String, Map<Integer, Integer>> candidateMatches = new HashMap<>();
-        findAndProcessMatchesForBestMatch(queryHashes, candidateMatches, HAMMING_DISTANCE_THRESHOLD);
+        OffsetHistogram scores = score(queryHashes, maxHammingDistance, candidateLimit, earlyExitHeuristic);
 
-        String bestTrackId = null;
+        int bestOrdinal = -1;
         int bestMatches = 0;
         int bestDelta = 0;
 
-        for (Map.Entry<String, Map<Integer, Integer>> entry : candidateMatches.entrySet()) {
-            String currentTrackId = entry.getKey();
-            for (Map.Entry<Integer, Integer> deltaEntry : entry.getValue().entrySet()) {
-                if (deltaEntry.getValue() > bestMatches && deltaEntry.getValue() >= MIN_MATCHES) {
-                    bestMatches = deltaEntry.getValue();
-                    bestTrackId = currentTrackId;
-                    bestDelta = deltaEntry.getKey();
-                }
+        for (int i = 0; i < scores.candidateCount(); i++) {
+            int ordinal = scores.trackAt(i);
+            int aligned = scores.alignedScore(ordinal);
+            if (aligned > bestMatches && aligned >= MIN_MATCHES) {
+                bestMatches = aligned;
+                bestOrdinal = ordinal;
+                bestDelta = scores.bestDelta(ordinal);
             }
         }
 
-        if (bestTrackId == null) {
+        if (bestOrdinal < 0) {
             return Optional.empty();
         }
 
         final int finalBestMatches = bestMatches;
         final int finalBestDelta = bestDelta;
-        return songRepository.findById(bestTrackId)
+        return songRepository.findByOrdinal(bestOrdinal)
                 .map(songData -> TrackMatch.create(
                         songData.id,
                         songData.name,
                         finalBestMatches,
-                        queryHashes.size(),
+                        scores.hashesConsumed(),
                         finalBestDelta * 1000L / 44100
                 ));
     }
 
     @Override
-    public TrackMatch[] bestMatches(List<Long> queryHashes, int limit, float minConfidence) {
+    public TrackMatch[] bestMatches(LongArray queryHashes, int limit, float minConfidence, int maxHammingDistance) {
+        checkHammingDistance(maxHammingDistance);
         if (queryHashes == null || queryHashes.isEmpty()) {
             return new TrackMatch[0];
         }
 
-        Map<String, TrackMatchInfo> matchInfoMap = new HashMap<>();
-        findAndProcessMatchesForBestMatches(queryHashes, matchInfoMap);
-
-        if (matchInfoMap.isEmpty()) {
-            return new TrackMatch[0];
-        }
+        // Результаты упорядочены по числу совпадений, поэтому все они попадают в отобранные треки
+        OffsetHistogram scores = score(queryHashes, maxHammingDistance, Math.max(candidateLimit, limit), false);
 
-        PriorityQueue<TrackMatchInfo> topMatches = new PriorityQueue<>(
-                Comparator.comparingInt(info -> info.matchCount)
+        // Куча порядковых номеров с наименьшим числом совпадений наверху
+        PriorityQueue<Integer> topMatches = new PriorityQueue<>(
+                Comparator.comparingInt(scores::matchCount)
         );
 
-        for (TrackMatchInfo info : matchInfoMap.values()) {
-            float confidence = (float) info.matchCount / queryHashes.size();
+        for (int i = 0; i < scores.candidateCount(); i++) {
+            int ordinal = scores.trackAt(i);
+            int matchCount = scores.matchCount(ordinal);
+            float confidence = (float) matchCount / queryHashes.size();
             if (confidence >= minConfidence) {
                 if (topMatches.size() < limit) {
-                    topMatches.add(info);
-                } else if (info.matchCount > Objects.requireNonNull(topMatches.peek()).matchCount) {
+                    topMatches.add(ordinal);
+                } else if (matchCount > scores.matchCount(Objects.requireNonNull(topMatches.peek()))) {
                     topMatches.poll();
-                    topMatches.add(info);
+                    topMatches.add(ordinal);
                 }
             }
         }
 
+        // Строковые идентификаторы нужны только отобранным трекам
         return topMatches.stream()
-                .sorted(Comparator.comparingInt((TrackMatchInfo info) -> info.matchCount).reversed())
-                .map(info -> {
-                    final String trackId = info.trackId;
-                    final int matchCount = info.matchCount;
-                    final int finalBestDelta = info.bestDelta;
-                    return songRepository.findById(trackId)
+                .sorted(Comparator.comparingInt(scores::matchCount).reversed())
+                .map(ordinal -> {
+                    final int matchCount = scores.matchCount(ordinal);
+                    final int finalBestDelta = scores.bestDelta(ordinal);
+                    return songRepository.findByOrdinal(ordinal)
                             .map(songData -> TrackMatch.create(
                                     songData.id,
                                     songData.name,
@@ -121,81 +261,173 @@ public class InMemoryFingerprintDatabase extends FingerprintDatabase {
                 .toArray(TrackMatch[]::new);
     }
 
-    private void findAndProcessMatchesForBestMatch(List<Long> queryHashes, Map<String, Map<Integer, Integer>> candidateMatches, int maxHammingDistance) {
-        for (int queryOffset = 0; queryOffset < queryHashes.size(); queryOffset++) {
-            long queryHash = queryHashes.get(queryOffset);
-            Set<Long> hashesToSearch = getHashesWithinHammingDistance(queryHash, maxHammingDistance);
-
-            for (long hash : hashesToSearch) {
-                List<SongMatch> matches = fingerprintRepository.findByHash(hash);
-                if (matches != null) {
-                    for (SongMatch match : matches) {
-                        int delta = match.offset - queryOffset;
-                        candidateMatches
-                                .computeIfAbsent(match.songId, k -> new HashMap<>())
-                                .merge(delta, 1, Integer::sum);
-                    }
-                }
+    /**
+     * Считает совпадения, расширяя допуск по ступеням; каждая ступень считается заново,
+     * так как дешевле всех следующих вместе взятых. Возвращает гистограмму потока,
+     * действительную до следующего запроса в нём.
+     */
+    private OffsetHistogram score(LongArray queryHashes, int maxHammingDistance, int candidates, boolean earlyExit) {
+        OffsetHistogram scores = histograms.get();
+        int distance = adaptiveMargin == Double.POSITIVE_INFINITY ? maxHammingDistance : 0;
+        while (true) {
+            walk(queryHashes, scores, distance, candidates, earlyExit);
+            tierStats.recordRun(distance);
+            if (distance == maxHammingDistance || isConclusive(scores, adaptiveMargin)) {
+                tierStats.recordFinish(distance);
+                return scores;
             }
+            distance++;
         }
     }
 
-    private void findAndProcessMatchesForBestMatches(List<Long> queryHashes, Map<String, TrackMatchInfo> matchInfoMap) {
-        for (int queryOffset = 0; queryOffset < queryHashes.size(); queryOffset++) {
-            long queryHash = queryHashes.get(queryOffset);
-            Set<Long> hashesToSearch = getHashesWithinHammingDistance(queryHash, HAMMING_DISTANCE_THRESHOLD);
+    /**
+     * Один обход хранилища с заданным допуском; без досрочной остановки — одним блоком.
+     */
+    private void walk(LongArray queryHashes, OffsetHistogram scores, int maxHammingDistance, int candidates,
+                      boolean earlyExit) {
+        scores.reset(songRepository.ordinalCount());
+        int size = queryHashes.size();
+        int consumed = 0;
+        do {
+            int end = earlyExit ? Math.min(size, Math.max(EARLY_EXIT_BLOCK, 2 * consumed)) : size;
+            if (end - consumed >= parallelThreshold) {
+                collectMatchesInParallel(queryHashes, scores, consumed, end, maxHammingDistance);
+            } else {
+                collectMatches(queryHashes, scores, consumed, end, maxHammingDistance);
+            }
+            consumed = end;
+            scores.align(candidates);
+            if (scores.needsRecount()) {
+                recount(queryHashes, scores, consumed, maxHammingDistance);
+            }
+        } while (consumed < size && !(earlyExit && isDecided(scores, consumed, size - consumed)));
+        scores.setHashesConsumed(consumed);
+    }
 
-            for (long hash : hashesToSearch) {
-                List<SongMatch> matches = fingerprintRepository.findByHash(hash);
-                if (matches != null) {
-                    for (SongMatch match : matches) {
-                        int delta = match.offset - queryOffset;
-                        TrackMatchInfo info = matchInfoMap.computeIfAbsent(match.songId,
-                                k -> new TrackMatchInfo(match.songId));
+    /**
+     * Совпадений больше, чем помещается в буфер гистограммы: сдвиги отобранных треков
+     * считаются повторным последовательным обходом хешей [0, to), в том же порядке, что и
+     * первый проход, поэтому результат не отличается от подсчёта по буферу.
+     */
+    private void recount(LongArray queryHashes, OffsetHistogram scores, int to, int maxHammingDistance) {
+        scores.startRecount();
+        collectMatches(queryHashes, scores, 0, to, maxHammingDistance);
+        scores.finishRecount();
+    }
 
-                        info.matchCount++;
-                        info.deltaCounts.merge(delta, 1, Integer::sum);
-                        if (info.deltaCounts.get(delta) > info.deltaCounts.getOrDefault(info.bestDelta, 0)) {
-                            info.bestDelta = delta;
-                        }
-                    }
-                }
-            }
+    private void collectMatches(LongArray queryHashes, OffsetVisitor scores, int from, int to, int maxHammingDistance) {
+        if (maxHammingDistance == 0 && sortedLookup
+                && batches.get().collect(fingerprintRepository, queryHashes, from, to, scores)) {
+            return;
+        }
+        for (int queryOffset = from; queryOffset < to; queryOffset++) {
+            scores.setQueryOffset(queryOffset);
+            fingerprintRepository.forEachPostingWithin(queryHashes.get(queryOffset), maxHammingDistance, scores);
         }
     }
 
-    private Set<Long> getHashesWithinHammingDistance(long hash, int distance) {
-        Set<Long> results = new HashSet<>();
-        results.add(hash);
-        if (distance <= 0) {
-            return results;
+    /**
+     * Делит хеши запроса [from, to) примерно на 4 отрезка на поток пула и дописывает
+     * их частичные гистограммы к scores в порядке отрезков.
+     */
+    private void collectMatchesInParallel(LongArray queryHashes, OffsetHistogram scores, int from, int to,
+                                          int maxHammingDistance) {
+        int slice = Math.max(MIN_SLICE, (to - from) / (4 * pool.getParallelism()));
+        int count = (to - from + slice - 1) / slice;
+        PartialHistogram[] partials = scores.partials(count);
+        pool.invoke(new CollectTask(queryHashes, from, to, partials, 0, count, slice, maxHammingDistance));
+        for (int i = 0; i < count; i++) {
+            scores.merge(partials[i]);
         }
-        findNeighbors(hash, distance, 0, results);
-        return results;
     }
 
-    private void findNeighbors(long hash, int maxDistance, int startBit, Set<Long> results) {
-        if (maxDistance == 0) {
-            return;
+    /**
+     * Обход хранилища для отрезков [first, last) хешей запроса [from, to): каждый отрезок
+     * собирается в свою частичную гистограмму partials[i], диапазон из нескольких отрезков
+     * делится пополам.
+     */
+    private final class CollectTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final LongArray queryHashes;
+        private final int from;
+        private final int to;
+        private final PartialHistogram[] partials;
+        private final int first;
+        private final int last;
+        private final int slice;
+        private final int maxHammingDistance;
+
+        CollectTask(LongArray queryHashes, int from, int to, PartialHistogram[] partials, int first, int last,
+                    int slice, int maxHammingDistance) {
+            this.queryHashes = queryHashes;
+            this.from = from;
+            this.to = to;
+            this.partials = partials;
+            this.first = first;
+            this.last = last;
+            this.slice = slice;
+            this.maxHammingDistance = maxHammingDistance;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first == 1) {
+                int start = from + first * slice;
+                collectMatches(queryHashes, partials[first], start, Math.min(start + slice, to), maxHammingDistance);
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new CollectTask(queryHashes, from, to, partials, first, middle, slice, maxHammingDistance),
+                    new CollectTask(queryHashes, from, to, partials, middle, last, slice, maxHammingDistance));
         }
-        for (int i = startBit; i < 48; i++) { // Assuming 48-bit hashes
-            long neighbor = hash ^ (1L << i);
-            if (results.add(neighbor)) {
-                findNeighbors(neighbor, maxDistance - 1, i + 1, results);
+    }
+
+    /**
+     * Эвристика: лучший трек, по всей видимости, уже не будет обойдён. У любого другого
+     * отобранного трека с каждым сдвигом сейчас не больше second совпадений; если его
+     * совпадения приходят по запросу равномерно, прирост на remaining хешах не превысит
+     * темпа second плюс {@code EARLY_EXIT_SIGMAS} пуассоновских отклонений (с одним
+     * совпадением сверху, чтобы темп не был нулевым). Это оценка, а не граница: трек, чьи
+     * совпадения сосредоточены в непросмотренной части, и трек, ещё не попавший в отобранные,
+     * могут её превысить. Точная граница second + remaining на реальных запросах почти
+     * не срабатывает.
+     */
+    private static boolean isDecided(OffsetHistogram scores, int consumed, int remaining) {
+        int best = 0;
+        int second = 0;
+        for (int i = 0; i < scores.candidateCount(); i++) {
+            int score = scores.alignedScore(scores.trackAt(i));
+            if (score > best) {
+                second = Math.max(second, best);
+                best = score;
+            } else {
+                second = Math.max(second, score);
             }
         }
+        double expectedGain = (second + 1.0) * remaining / consumed;
+        double maxGain = Math.min(remaining, expectedGain + EARLY_EXIT_SIGMAS * Math.sqrt(expectedGain));
+        return best >= MIN_MATCHES && best > second + maxGain;
     }
 
-    private static class TrackMatchInfo {
-        final String trackId;
-        int matchCount;
-        int bestDelta;
-        final Map<Integer, Integer> deltaCounts = new HashMap<>();
+    private static boolean isConclusive(OffsetHistogram scores, double margin) {
+        int best = 0;
+        int second = 0;
+        for (int i = 0; i < scores.candidateCount(); i++) {
+            int score = scores.alignedScore(scores.trackAt(i));
+            if (score > best) {
+                second = best;
+                best = score;
+            } else if (score > second) {
+                second = score;
+            }
+        }
+        return best >= MIN_MATCHES && best >= margin * second;
+    }
 
-        TrackMatchInfo(String trackId) {
-            this.trackId = trackId;
-            this.matchCount = 0;
-            this.bestDelta = 0;
+    private static void checkHammingDistance(int maxHammingDistance) {
+        if (maxHammingDistance < 0 || maxHammingDistance > MAX_HAMMING_DISTANCE) {
+            throw new IllegalArgumentException("Hamming distance must be between 0 and " + MAX_HAMMING_DISTANCE);
         }
     }
-}
\ No newline at end of file
+}
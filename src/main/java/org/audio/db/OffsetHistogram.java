@@ -0,0 +1,456 @@
+package org.audio.db;
+
+import java.util.Arrays;
+
+/**
+ * Гистограмма сдвигов совпадений запроса: сколько раз каждый трек встретился с каждым
+ * сдвигом между смещением в треке и смещением в запросе. Подсчёт идёт в два прохода.
+ * Первый проход, {@link #add(int, int)}, только увеличивает число совпадений трека в массиве
+ * и дописывает пару (трек, сдвиг) в буфер. Второй, {@link #align(int)}, отбирает треки
+ * с наибольшим числом совпадений и строит гистограмму сдвигов только для них, поэтому
+ * время подсчёта сдвигов не зависит от того, сколько треков делят с запросом несколько
+ * частых хешей.
+ *
+ * <p>Буфер пар ограничен hitLimit совпадениями. Если частые хеши дают больше, буфер
+ * отбрасывается, первый проход досчитывает только число совпадений треков, а сдвиги
+ * отобранных треков пересчитывает повторный обход хранилища между {@link #startRecount()}
+ * и {@link #finishRecount()}: память подсчёта не растёт с числом совпадений.
+ *
+ * <p>Пары (трек, сдвиг) лежат в таблице с открытой адресацией над примитивными массивами,
+ * поэтому на каждое вхождение нет ни упаковки, ни выделения памяти. Экземпляр
+ * переиспользуется между запросами одного потока: {@link #reset(int)} очищает только
+ * занятые ячейки, а массивы больше {@code RETAINED_CAPACITY} заменяет начальными, чтобы
+ * поток не держал память самого тяжёлого запроса.
+ *
+ * <p>Сама гистограмма служит посетителем вхождений: смещение текущего хеша запроса
+ * задаётся через {@link #setQueryOffset(int)}, чтобы не создавать замыкание на каждый хеш.
+ * Длинный запрос может собираться по частям в {@link PartialHistogram}, которые затем
+ * объединяются через {@link #merge(PartialHistogram)}; частичные гистограммы
+ * переиспользуются вместе с этой.
+ */
+final class OffsetHistogram implements OffsetVisitor {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    // 8 МБ пар; запрос с большим числом совпадений пересчитывает сдвиги повторным обходом
+    static final int DEFAULT_HIT_LIMIT = 1 << 20;
+    private static final int RETAINED_CAPACITY = 1 << 16;
+
+    // Таблица пар: ключ (номер трека << 32 | сдвиг), число 0 означает свободную ячейку
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int shift = Long.SIZE - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+    private int[] usedSlots = new int[INITIAL_CAPACITY / 2];
+    private int usedCount;
+
+    // Совпадения первого прохода: номер трека и сдвиг, упакованные как вхождение
+    private long[] hits = new long[INITIAL_CAPACITY];
+    private int hitCount;
+    private final int hitLimit;
+    private boolean overflowed;
+    private boolean recounting;
+
+    // Итоги по трекам, индексированные порядковым номером
+    private int[] matchCount = new int[0];
+    private int[] bestDelta = new int[0];
+    private int[] bestCount = new int[0];
+    private boolean[] candidate = new boolean[0];
+    private int[] ordinals = new int[16];
+    private int ordinalCount;
+    private int[] candidates = new int[16];
+    private int candidateCount;
+    private int[] scratch = new int[16];
+    private int hashesConsumed;
+
+    private int trackCount;
+    private int queryOffset;
+    private PartialHistogram[] partials = new PartialHistogram[0];
+
+    OffsetHistogram() {
+        this(DEFAULT_HIT_LIMIT);
+    }
+
+    /**
+     * @param hitLimit сколько пар (трек, сдвиг) первого прохода хранить для подсчёта сдвигов
+     */
+    OffsetHistogram(int hitLimit) {
+        this.hitLimit = hitLimit;
+    }
+
+    /**
+     * Очищает гистограмму перед новым запросом.
+     *
+     * @param trackCount число треков на момент запроса; вхождения более поздних треков не учитываются
+     */
+    void reset(int trackCount) {
+        if (keys.length > RETAINED_CAPACITY) {
+            keys = new long[INITIAL_CAPACITY];
+            counts = new int[INITIAL_CAPACITY];
+            shift = Long.SIZE - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+            usedSlots = new int[INITIAL_CAPACITY / 2];
+        } else {
+            for (int i = 0; i < usedCount; i++) {
+                counts[usedSlots[i]] = 0;
+            }
+        }
+        usedCount = 0;
+        if (hits.length > RETAINED_CAPACITY) {
+            hits = new long[INITIAL_CAPACITY];
+        }
+        hitCount = 0;
+        overflowed = false;
+        recounting = false;
+        for (int i = 0; i < ordinalCount; i++) {
+            int ordinal = ordinals[i];
+            matchCount[ordinal] = 0;
+            bestCount[ordinal] = 0;
+            candidate[ordinal] = false;
+        }
+        ordinalCount = 0;
+        candidateCount = 0;
+        if (ordinals.length > RETAINED_CAPACITY) {
+            ordinals = new int[16];
+            candidates = new int[16];
+            scratch = new int[16];
+        }
+        hashesConsumed = 0;
+        if (matchCount.length < trackCount) {
+            int capacity = Math.max(trackCount, matchCount.length * 2);
+            matchCount = new int[capacity];
+            bestDelta = new int[capacity];
+            bestCount = new int[capacity];
+            candidate = new boolean[capacity];
+        }
+        this.trackCount = trackCount;
+    }
+
+    @Override
+    public void setQueryOffset(int queryOffset) {
+        this.queryOffset = queryOffset;
+    }
+
+    /**
+     * count частичных гистограмм для отрезков запроса, очищенных под число треков последнего
+     * {@link #reset(int)}; вместе они хранят не больше hitLimit совпадений. Действительны
+     * до следующего вызова.
+     */
+    PartialHistogram[] partials(int count) {
+        if (partials.length < count) {
+            int previous = partials.length;
+            partials = Arrays.copyOf(partials, count);
+            for (int i = previous; i < count; i++) {
+                partials[i] = new PartialHistogram();
+            }
+        }
+        int partialLimit = Math.max(1, hitLimit / count);
+        for (int i = 0; i < count; i++) {
+            partials[i].reset(trackCount, partialLimit);
+        }
+        return partials;
+    }
+
+    @Override
+    public void accept(long posting) {
+        int ordinal = SongMatch.ordinalOf(posting);
+        int delta = SongMatch.offsetOf(posting) - queryOffset;
+        if (!recounting) {
+            add(ordinal, delta);
+        } else if (ordinal < trackCount && candidate[ordinal]) {
+            count(ordinal, delta);
+        }
+    }
+
+    /**
+     * Первый проход: учитывает совпадение трека без подсчёта сдвигов.
+     */
+    void add(int ordinal, int delta) {
+        if (ordinal >= trackCount) {
+            return;
+        }
+        addMatches(ordinal, 1);
+        if (overflowed) {
+            return;
+        }
+        if (hitCount == hitLimit) {
+            overflow();
+            return;
+        }
+        if (hitCount == hits.length) {
+            hits = Arrays.copyOf(hits, Math.min(hitCount * 2, hitLimit));
+        }
+        hits[hitCount++] = SongMatch.posting(ordinal, delta);
+    }
+
+    /**
+     * Добавляет совпадения частичной гистограммы с тем же числом треков после своих,
+     * сохраняя их порядок. Вызывается до {@link #align(int)}.
+     */
+    void merge(PartialHistogram other) {
+        for (int i = 0; i < other.matchedTracks(); i++) {
+            addMatches(other.trackAt(i), other.matchCountAt(i));
+        }
+        if (overflowed) {
+            return;
+        }
+        int otherHits = other.hitCount();
+        if (other.overflowed() || hitCount + otherHits > hitLimit) {
+            overflow();
+            return;
+        }
+        if (hitCount + otherHits > hits.length) {
+            hits = Arrays.copyOf(hits, Math.min(Math.max(hitCount + otherHits, hits.length * 2), hitLimit));
+        }
+        System.arraycopy(other.hits(), 0, hits, hitCount, otherHits);
+        hitCount += otherHits;
+    }
+
+    /**
+     * Буфер пар больше не нужен: сдвиги до конца запроса считает повторный обход.
+     */
+    private void overflow() {
+        overflowed = true;
+        hitCount = 0;
+        hits = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Переполнился ли буфер пар; тогда после {@link #align(int)} сдвиги отобранных треков
+     * нужно пересчитать повторным обходом всех учтённых хешей запроса.
+     */
+    boolean needsRecount() {
+        return overflowed;
+    }
+
+    /**
+     * Начинает повторный обход: вхождения, переданные гистограмме как посетителю, дальше
+     * не увеличивают число совпадений, а считают сдвиги треков, отобранных {@link #align(int)}.
+     * Вхождения должны приходить в том же порядке, что и в первом проходе, — от порядка
+     * зависит выбор сдвига при равенстве.
+     */
+    void startRecount() {
+        recounting = true;
+    }
+
+    void finishRecount() {
+        recounting = false;
+    }
+
+    private void addMatches(int ordinal, int matches) {
+        if (matchCount[ordinal] == 0) {
+            if (ordinalCount == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, ordinalCount * 2);
+            }
+            ordinals[ordinalCount++] = ordinal;
+        }
+        matchCount[ordinal] += matches;
+    }
+
+    /**
+     * Второй проход: отбирает не больше limit треков с наибольшим числом совпадений
+     * (при равенстве — с меньшими номерами) и считает сдвиги только для них. После вызова
+     * {@link #trackAt(int)} перечисляет отобранные треки по возрастанию номера. Повторный
+     * вызов после новых совпадений пересчитывает сдвиги заново. Если буфер пар переполнился,
+     * сдвиги остаются нулевыми до повторного обхода ({@link #needsRecount()}).
+     */
+    void align(int limit) {
+        for (int i = 0; i < usedCount; i++) {
+            counts[usedSlots[i]] = 0;
+        }
+        usedCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int ordinal = candidates[i];
+            bestCount[ordinal] = 0;
+            candidate[ordinal] = false;
+        }
+        selectCandidates(limit);
+        if (overflowed) {
+            return;
+        }
+        for (int i = 0; i < hitCount; i++) {
+            long hit = hits[i];
+            int ordinal = SongMatch.ordinalOf(hit);
+            if (candidate[ordinal]) {
+                count(ordinal, SongMatch.offsetOf(hit));
+            }
+        }
+    }
+
+    private void selectCandidates(int limit) {
+        if (candidates.length < ordinalCount) {
+            candidates = new int[Math.max(ordinalCount, candidates.length * 2)];
+        }
+        if (scratch.length < ordinalCount) {
+            scratch = new int[Math.max(ordinalCount, scratch.length * 2)];
+        }
+        candidateCount = 0;
+        if (ordinalCount <= limit) {
+            System.arraycopy(ordinals, 0, candidates, 0, ordinalCount);
+            candidateCount = ordinalCount;
+        } else {
+            // Порог — limit-е по величине число совпадений, линейным выбором без сортировки всех треков
+            for (int i = 0; i < ordinalCount; i++) {
+                scratch[i] = matchCount[ordinals[i]];
+            }
+            int threshold = select(scratch, ordinalCount, ordinalCount - limit);
+            int ties = 0;
+            for (int i = 0; i < ordinalCount; i++) {
+                int ordinal = ordinals[i];
+                int count = matchCount[ordinal];
+                if (count > threshold) {
+                    candidates[candidateCount++] = ordinal;
+                } else if (count == threshold) {
+                    scratch[ties++] = ordinal;
+                }
+            }
+            // Из треков на пороге берутся треки с меньшими номерами
+            int fromTies = limit - candidateCount;
+            if (ties > fromTies) {
+                Arrays.sort(scratch, 0, ties);
+            }
+            System.arraycopy(scratch, 0, candidates, candidateCount, fromTies);
+            candidateCount += fromTies;
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+        for (int i = 0; i < candidateCount; i++) {
+            candidate[candidates[i]] = true;
+        }
+    }
+
+    /**
+     * k-й по возрастанию элемент первых n значений; порядок значений меняется.
+     */
+    private static int select(int[] values, int n, int k) {
+        int left = 0;
+        int right = n - 1;
+        while (left < right) {
+            int pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return values[k];
+    }
+
+    private void count(int ordinal, int delta) {
+        long key = (long) ordinal << 32 | (delta & 0xFFFFFFFFL);
+        int mask = keys.length - 1;
+        int slot = (int) ((key * HASH_MULTIPLIER) >>> shift);
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int count = counts[slot] + 1;
+        if (count == 1) {
+            keys[slot] = key;
+            usedSlots[usedCount++] = slot;
+        }
+        counts[slot] = count;
+
+        if (count > bestCount[ordinal]) {
+            bestCount[ordinal] = count;
+            bestDelta[ordinal] = delta;
+        }
+        if (usedCount == usedSlots.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Число треков хотя бы с одним совпадением.
+     */
+    int matchedTracks() {
+        return ordinalCount;
+    }
+
+    /**
+     * Число треков, отобранных {@link #align(int)}.
+     */
+    int candidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * Порядковый номер i-го отобранного трека; номера идут по возрастанию, чтобы равные
+     * результаты разрешались одинаково независимо от порядка обхода хранилища.
+     */
+    int trackAt(int i) {
+        return candidates[i];
+    }
+
+    /**
+     * Число совпадений трека в первом проходе, без учёта сдвигов.
+     */
+    int matchCount(int ordinal) {
+        return matchCount[ordinal];
+    }
+
+    /**
+     * Наиболее частый сдвиг трека; при равенстве — тот, что набрал это число первым.
+     */
+    int bestDelta(int ordinal) {
+        return bestDelta[ordinal];
+    }
+
+    /**
+     * Сколько хешей запроса учтено; задаётся обходящим хранилище кодом.
+     */
+    int hashesConsumed() {
+        return hashesConsumed;
+    }
+
+    void setHashesConsumed(int hashesConsumed) {
+        this.hashesConsumed = hashesConsumed;
+    }
+
+    /**
+     * Число совпадений трека с наиболее частым сдвигом; 0 для неотобранных треков.
+     */
+    int alignedScore(int ordinal) {
+        return bestCount[ordinal];
+    }
+
+    /**
+     * Удваивает таблицу, когда она заполнена наполовину.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int[] oldUsedSlots = usedSlots;
+        int oldUsedCount = usedCount;
+        int capacity = oldKeys.length * 2;
+        keys = new long[capacity];
+        counts = new int[capacity];
+        shift--;
+        usedSlots = new int[capacity / 2];
+        usedCount = 0;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldUsedCount; i++) {
+            int oldSlot = oldUsedSlots[i];
+            long key = oldKeys[oldSlot];
+            int slot = (int) ((key * HASH_MULTIPLIER) >>> shift);
+            while (counts[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            counts[slot] = oldCounts[oldSlot];
+            usedSlots[usedCount++] = slot;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.audio.db;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Получатель вхождений при обходе хранилища хешами запроса: смещение текущего хеша
+ * задаётся заранее, чтобы не создавать замыкание на каждый хеш.
+ */
+interface OffsetVisitor extends LongConsumer {
+    void setQueryOffset(int queryOffset);
+}
@@ -0,0 +1,165 @@
+package org.audio.db;
+
+import java.util.Arrays;
+
+/**
+ * Первый проход одного отрезка запроса при параллельном обходе: совпадения (трек, сдвиг)
+ * в порядке прихода и число совпадений по трекам. В отличие от {@link OffsetHistogram}
+ * здесь нет массивов по всем трекам каталога: число совпадений лежит в таблице с открытой
+ * адресацией только для встреченных треков, а плотные массивы строит
+ * {@link OffsetHistogram#merge(PartialHistogram)} в гистограмме запроса.
+ *
+ * <p>Совпадений в буфере не больше hitLimit; при переполнении буфер отбрасывается и
+ * считается только число совпадений, а сдвиги затем пересчитываются повторным обходом.
+ * Экземпляры переиспользуются запросами потока через {@link OffsetHistogram#partials(int)}.
+ */
+final class PartialHistogram implements OffsetVisitor {
+    private static final int INITIAL_CAPACITY = 1 << 6;
+    private static final int RETAINED_CAPACITY = 1 << 14;
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    // Таблица треков: ключ — номер трека + 1, 0 означает свободную ячейку
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private int shift = Integer.SIZE - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+    private int[] usedSlots = new int[INITIAL_CAPACITY / 2];
+    private int usedCount;
+
+    private long[] hits = new long[INITIAL_CAPACITY];
+    private int hitCount;
+    private int hitLimit;
+    private boolean overflowed;
+
+    private int trackCount;
+    private int queryOffset;
+
+    void reset(int trackCount, int hitLimit) {
+        if (keys.length > RETAINED_CAPACITY) {
+            keys = new int[INITIAL_CAPACITY];
+            counts = new int[INITIAL_CAPACITY];
+            shift = Integer.SIZE - Integer.numberOfTrailingZeros(INITIAL_CAPACITY);
+            usedSlots = new int[INITIAL_CAPACITY / 2];
+        } else {
+            for (int i = 0; i < usedCount; i++) {
+                keys[usedSlots[i]] = 0;
+            }
+        }
+        usedCount = 0;
+        if (hits.length > RETAINED_CAPACITY) {
+            hits = new long[INITIAL_CAPACITY];
+        }
+        hitCount = 0;
+        overflowed = false;
+        this.hitLimit = hitLimit;
+        this.trackCount = trackCount;
+    }
+
+    @Override
+    public void setQueryOffset(int queryOffset) {
+        this.queryOffset = queryOffset;
+    }
+
+    @Override
+    public void accept(long posting) {
+        add(SongMatch.ordinalOf(posting), SongMatch.offsetOf(posting) - queryOffset);
+    }
+
+    void add(int ordinal, int delta) {
+        if (ordinal >= trackCount) {
+            return;
+        }
+        addMatch(ordinal);
+        if (overflowed) {
+            return;
+        }
+        if (hitCount == hitLimit) {
+            overflowed = true;
+            hitCount = 0;
+            return;
+        }
+        if (hitCount == hits.length) {
+            hits = Arrays.copyOf(hits, Math.min(hitCount * 2, hitLimit));
+        }
+        hits[hitCount++] = SongMatch.posting(ordinal, delta);
+    }
+
+    private void addMatch(int ordinal) {
+        int key = ordinal + 1;
+        int mask = keys.length - 1;
+        int slot = (key * HASH_MULTIPLIER) >>> shift;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            keys[slot] = key;
+            counts[slot] = 1;
+            usedSlots[usedCount++] = slot;
+            if (usedCount == usedSlots.length) {
+                grow();
+            }
+        } else {
+            counts[slot]++;
+        }
+    }
+
+    /**
+     * Число треков хотя бы с одним совпадением.
+     */
+    int matchedTracks() {
+        return usedCount;
+    }
+
+    /**
+     * Номер i-го встреченного трека, в порядке первого совпадения.
+     */
+    int trackAt(int i) {
+        return keys[usedSlots[i]] - 1;
+    }
+
+    /**
+     * Число совпадений i-го встреченного трека.
+     */
+    int matchCountAt(int i) {
+        return counts[usedSlots[i]];
+    }
+
+    boolean overflowed() {
+        return overflowed;
+    }
+
+    int hitCount() {
+        return hitCount;
+    }
+
+    long[] hits() {
+        return hits;
+    }
+
+    /**
+     * Удваивает таблицу, когда она заполнена наполовину; порядок встреченных треков сохраняется.
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        int[] oldUsedSlots = usedSlots;
+        int oldUsedCount = usedCount;
+        int capacity = oldKeys.length * 2;
+        keys = new int[capacity];
+        counts = new int[capacity];
+        shift--;
+        usedSlots = new int[capacity / 2];
+        usedCount = 0;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldUsedCount; i++) {
+            int oldSlot = oldUsedSlots[i];
+            int key = oldKeys[oldSlot];
+            int slot = (key * HASH_MULTIPLIER) >>> shift;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            counts[slot] = oldCounts[oldSlot];
+            usedSlots[usedCount++] = slot;
+        }
+    }
+}
@@ -1,11 +1,36 @@
 package org.audio.db;
 
+/**
+ * Вхождение хеша в трек: порядковый номер трека в {@link org.audio.db.repo.SongRepository}
+ * и смещение хеша в отпечатке. В хранилищах вхождение лежит одним long
+ * (номер в старших 32 битах, смещение в младших), объект нужен только на границе API.
+ */
 public class SongMatch {
-    public final String songId;
+    public final int songOrdinal;
     public final int offset;
 
-    public SongMatch(String songId, int offset) {
-        this.songId = songId;
+    public SongMatch(int songOrdinal, int offset) {
+        this.songOrdinal = songOrdinal;
         this.offset = offset;
     }
-} 
\ No newline at end of file
+
+    public static long posting(int songOrdinal, int offset) {
+        return (long) songOrdinal << 32 | (offset & 0xFFFFFFFFL);
+    }
+
+    public static int ordinalOf(long posting) {
+        return (int) (posting >>> 32);
+    }
+
+    public static int offsetOf(long posting) {
+        return (int) posting;
+    }
+
+    public static SongMatch fromPosting(long posting) {
+        return new SongMatch(ordinalOf(posting), offsetOf(posting));
+    }
+
+    public long toPosting() {
+        return posting(songOrdinal, offset);
+    }
+}
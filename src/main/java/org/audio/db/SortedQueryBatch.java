@@ -0,0 +1,131 @@
+package org.audio.db;
+
+import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.IndexedPostingVisitor;
+import org.audio.utils.LongArray;
+
+import java.util.Arrays;
+
+/**
+ * Точные совпадения отрезка запроса одним пакетным поиском
+ * {@link FingerprintRepository#forEachPostingSorted}. Хеши отрезка сортируются без повторов;
+ * вхождения приходят в порядке хешей и раскладываются обратно по сдвигам запроса, а гистограмме
+ * передаются в том же порядке, что и при поиске по одному хешу, — совпадения и выбранные
+ * сдвиги не меняются. Массивы переиспользуются запросами одного потока.
+ *
+ * <p>Вхождений в буфере не больше postingLimit: если пакет даёт больше, буфер
+ * отбрасывается, и отрезок ищется по одному хешу. Буфер больше {@code RETAINED_CAPACITY}
+ * освобождается после каждого пакета.
+ */
+final class SortedQueryBatch implements IndexedPostingVisitor {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int RETAINED_CAPACITY = 1 << 16;
+
+    private long[] hashes = new long[0];
+    // Первый сдвиг отрезка с i-м хешем пакета и следующий сдвиг с тем же хешем, -1 в конце цепочки
+    private int[] firstOffset = new int[0];
+    private int[] nextOffset = new int[0];
+    private int[] ends = new int[1];
+    private long[] postings = new long[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private long[] ordered = new long[INITIAL_CAPACITY];
+    private int count;
+    private final int postingLimit;
+    private boolean overflowed;
+
+    SortedQueryBatch(int postingLimit) {
+        this.postingLimit = postingLimit;
+    }
+
+    /**
+     * @return false, если вхождений больше postingLimit; scores тогда не менялась
+     */
+    boolean collect(FingerprintRepository repository, LongArray queryHashes, int from, int to,
+                    OffsetVisitor scores) {
+        int size = to - from;
+        if (hashes.length < size) {
+            hashes = new long[size];
+            firstOffset = new int[size];
+            nextOffset = new int[size];
+            ends = new int[size + 1];
+        }
+        for (int i = 0; i < size; i++) {
+            hashes[i] = queryHashes.get(from + i);
+        }
+        Arrays.sort(hashes, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || hashes[i] != hashes[unique - 1]) {
+                hashes[unique++] = hashes[i];
+            }
+        }
+        Arrays.fill(firstOffset, 0, unique, -1);
+        for (int i = size - 1; i >= 0; i--) {
+            int index = Arrays.binarySearch(hashes, 0, unique, queryHashes.get(from + i));
+            nextOffset[i] = firstOffset[index];
+            firstOffset[index] = i;
+        }
+
+        count = 0;
+        overflowed = false;
+        repository.forEachPostingSorted(hashes, unique, this);
+        if (overflowed) {
+            release();
+            return false;
+        }
+
+        // Устойчивая сортировка подсчётом по сдвигу: вхождения одного сдвига сохраняют порядок прихода
+        Arrays.fill(ends, 0, size + 1, 0);
+        for (int i = 0; i < count; i++) {
+            ends[offsets[i] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            ends[i + 1] += ends[i];
+        }
+        if (ordered.length < count) {
+            ordered = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            ordered[ends[offsets[i]]++] = postings[i];
+        }
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            scores.setQueryOffset(from + i);
+            while (position < ends[i]) {
+                scores.accept(ordered[position++]);
+            }
+        }
+        release();
+        return true;
+    }
+
+    private void release() {
+        if (postings.length > RETAINED_CAPACITY) {
+            postings = new long[INITIAL_CAPACITY];
+            offsets = new int[INITIAL_CAPACITY];
+        }
+        if (ordered.length > RETAINED_CAPACITY) {
+            ordered = new long[INITIAL_CAPACITY];
+        }
+    }
+
+    @Override
+    public void accept(int index, long posting) {
+        if (overflowed) {
+            return;
+        }
+        for (int offset = firstOffset[index]; offset >= 0; offset = nextOffset[offset]) {
+            if (count == postingLimit) {
+                overflowed = true;
+                return;
+            }
+            if (count == postings.length) {
+                int capacity = Math.min(count * 2, postingLimit);
+                postings = Arrays.copyOf(postings, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+            }
+            postings[count] = posting;
+            offsets[count++] = offset;
+        }
+    }
+}
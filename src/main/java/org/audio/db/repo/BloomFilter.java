@@ -0,0 +1,158 @@
+package org.audio.db.repo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Блочный фильтр Блума по 64-битным хешам: все биты одного ключа лежат в одном блоке
+ * из 512 бит (строка кеша), поэтому проверка стоит одного промаха кеша.
+ *
+ * <p>Фильтр масштабируемый: когда в последний слой добавлено расчётное число ключей,
+ * создаётся слой вдвое больше с вдвое меньшей долей ложных срабатываний, так что
+ * общая доля остаётся не выше заданной при любом числе ключей. Ложных отрицаний нет.
+ *
+ * <p>Добавление и проверка потокобезопасны и не блокируют друг друга.
+ */
+public final class BloomFilter {
+    private static final int BLOCK_LONGS = 8;
+    private static final int BLOCK_BITS = BLOCK_LONGS * Long.SIZE;
+
+    private final double falsePositiveRate;
+    private volatile Layer[] layers;
+
+    /**
+     * @param expectedKeys      расчётное число ключей первого слоя
+     * @param falsePositiveRate допустимая доля ложных срабатываний, от 0 до 1
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected keys must be positive and false positive rate in (0, 1)");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.layers = new Layer[]{new Layer(expectedKeys, falsePositiveRate / 2)};
+    }
+
+    /**
+     * Добавляет ключ.
+     */
+    public void put(long key) {
+        long mixed = mix(key);
+        if (mightContain(layers, mixed)) {
+            return;
+        }
+        Layer[] current = layers;
+        Layer last = current[current.length - 1];
+        if (last.put(mixed) && last.count.incrementAndGet() >= last.capacity) {
+            grow(last);
+        }
+    }
+
+    /**
+     * false, если ключ точно не добавлялся.
+     */
+    public boolean mightContain(long key) {
+        return mightContain(layers, mix(key));
+    }
+
+    public int layerCount() {
+        return layers.length;
+    }
+
+    /**
+     * Размер битовых массивов всех слоёв в байтах.
+     */
+    public long sizeBytes() {
+        long bytes = 0;
+        for (Layer layer : layers) {
+            bytes += (long) layer.bits.length() * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private static boolean mightContain(Layer[] layers, long mixed) {
+        for (Layer layer : layers) {
+            if (layer.mightContain(mixed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void grow(Layer full) {
+        Layer[] current = layers;
+        if (current[current.length - 1] != full) {
+            return;
+        }
+        Layer[] next = new Layer[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = new Layer(full.capacity * 2, falsePositiveRate / (2L << current.length));
+        layers = next;
+    }
+
+    // Финализатор splitmix64: хеши отпечатков неравномерны в младших битах
+    private static long mix(long key) {
+        long z = key + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Layer {
+        final long capacity;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLongArray bits;
+        final int blocks;
+        final int hashes;
+
+        Layer(long capacity, double falsePositiveRate) {
+            // Оптимум для обычного фильтра плюс запас на неравномерность блоков
+            double bitsPerKey = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) * 1.1;
+            long blockCount = Math.max(1, (long) Math.ceil(capacity * bitsPerKey / BLOCK_BITS));
+            if (blockCount * BLOCK_LONGS > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Bloom filter layer is too large");
+            }
+            this.capacity = capacity;
+            this.blocks = (int) blockCount;
+            this.bits = new AtomicLongArray(blocks * BLOCK_LONGS);
+            this.hashes = Math.max(1, Math.min(8, (int) Math.round(bitsPerKey / 1.1 * Math.log(2))));
+        }
+
+        /**
+         * Устанавливает биты ключа; true, если хотя бы один бит был сброшен.
+         */
+        boolean put(long mixed) {
+            int base = block(mixed);
+            boolean changed = false;
+            long bitSource = mix(mixed);
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) (bitSource & (BLOCK_BITS - 1));
+                bitSource = Long.rotateRight(bitSource, 9);
+                int index = base + (bit >>> 6);
+                long mask = 1L << bit;
+                if ((bits.get(index) & mask) == 0) {
+                    bits.getAndAccumulate(index, mask, (value, m) -> value | m);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        boolean mightContain(long mixed) {
+            int base = block(mixed);
+            long bitSource = mix(mixed);
+            for (int i = 0; i < hashes; i++) {
+                int bit = (int) (bitSource & (BLOCK_BITS - 1));
+                bitSource = Long.rotateRight(bitSource, 9);
+                if ((bits.get(base + (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Блок выбирается старшими битами ключа, номера битов — из повторно перемешанного ключа
+        private int block(long mixed) {
+            return (int) (((mixed >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.audio.db.repo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Хранилище-обёртка, добавляющее к другому хранилищу фильтр, индекс или ограничения.
+ * Обёртки складываются в цепочку, в конце которой — хранилище с данными.
+ */
+public interface DelegatingFingerprintRepository extends FingerprintRepository, Closeable {
+    FingerprintRepository delegate();
+
+    /**
+     * Закрывает обёрнутое хранилище, если оно закрываемое, например сегментированное.
+     */
+    @Override
+    default void close() throws IOException {
+        if (delegate() instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * Первое хранилище типа type в цепочке обёрток, начиная с самого repository.
+     */
+    static <T extends FingerprintRepository> Optional<T> find(FingerprintRepository repository, Class<T> type) {
+        FingerprintRepository current = repository;
+        while (true) {
+            if (type.isInstance(current)) {
+                return Optional.of(type.cast(current));
+            }
+            if (!(current instanceof DelegatingFingerprintRepository delegating)) {
+                return Optional.empty();
+            }
+            current = delegating.delegate();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.audio.db.repo;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище с фильтром Блума перед поиском: хеш, которого точно нет в индексе,
+ * отбрасывается без обращения к таблице или сегментам. Большинство проверок при
+ * поиске соседей по Хэммингу — промахи, поэтому фильтр снимает основную часть обращений.
+ * Фильтр заполняется из хранилища при создании и пополняется при каждом {@link #save}.
+ *
+ * <p>Счётчики: всего проверок, отброшено фильтром, пропущено к хранилищу и из них
+ * ложных срабатываний (хранилище ничего не нашло).
+ */
+public class FilteredFingerprintRepository implements DelegatingFingerprintRepository {
+    private final FingerprintRepository delegate;
+    private final BloomFilter filter;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    /**
+     * @param expectedHashes    расчётное число различных хешей; фильтр растёт и сверх него
+     * @param falsePositiveRate допустимая доля ложных срабатываний
+     */
+    public FilteredFingerprintRepository(FingerprintRepository delegate, long expectedHashes, double falsePositiveRate) {
+        this.delegate = delegate;
+        this.filter = new BloomFilter(expectedHashes, falsePositiveRate);
+        delegate.forEachHash(filter::put);
+    }
+
+    @Override
+    public void save(long hash, long posting) {
+        // Сначала фильтр: иначе параллельный поиск может отбросить уже сохранённый хеш
+        filter.put(hash);
+        delegate.save(hash, posting);
+    }
+
+    @Override
+    public int forEachPosting(long hash, LongConsumer visitor) {
+        probes.increment();
+        if (!filter.mightContain(hash)) {
+            rejected.increment();
+            return 0;
+        }
+        int count = delegate.forEachPosting(hash, visitor);
+        if (count == 0) {
+            falsePositives.increment();
+        }
+        return count;
+    }
+
+    /**
+     * Пакет сужается до хешей, прошедших фильтр, и целиком передаётся хранилищу;
+     * номера хешей переводятся обратно в номера исходного пакета.
+     */
+    @Override
+    public long forEachPostingSorted(long[] hashes, int count, IndexedPostingVisitor visitor) {
+        long[] passed = new long[count];
+        int[] indexes = new int[count];
+        int passedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (filter.mightContain(hashes[i])) {
+                passed[passedCount] = hashes[i];
+                indexes[passedCount++] = i;
+            }
+        }
+        probes.add(count);
+        rejected.add(count - passedCount);
+
+        boolean[] found = new boolean[passedCount];
+        long total = delegate.forEachPostingSorted(passed, passedCount, (index, posting) -> {
+            found[index] = true;
+            visitor.accept(indexes[index], posting);
+        });
+        int missing = 0;
+        for (boolean hit : found) {
+            if (!hit) {
+                missing++;
+            }
+        }
+        falsePositives.add(missing);
+        return total;
+    }
+
+    @Override
+    public boolean supportsSortedLookup() {
+        return delegate.supportsSortedLookup();
+    }
+
+    @Override
+    public int forEachPostingUpTo(long hash, int maxPostings, LongConsumer visitor) {
+        probes.increment();
+        if (!filter.mightContain(hash)) {
+            rejected.increment();
+            return 0;
+        }
+        int count = delegate.forEachPostingUpTo(hash, maxPostings, visitor);
+        if (count == 0) {
+            falsePositives.increment();
+        }
+        return count;
+    }
+
+    @Override
+    public int countPostings(long hash) {
+        return filter.mightContain(hash) ? delegate.countPostings(hash) : 0;
+    }
+
+    @Override
+    public void forEachHash(LongConsumer visitor) {
+        delegate.forEachHash(visitor);
+    }
+
+    @Override
+    public FingerprintRepository delegate() {
+        return delegate;
+    }
+
+    public long probes() {
+        return probes.sum();
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public long falsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * Доля проверок, не дошедших до хранилища.
+     */
+    public double rejectionRate() {
+        long total = probes.sum();
+        return total == 0 ? 0 : (double) rejected.sum() / total;
+    }
+
+    /**
+     * Доля ложных срабатываний среди хешей, отсутствующих в индексе.
+     */
+    public double falsePositiveRate() {
+        long misses = rejected.sum() + falsePositives.sum();
+        return misses == 0 ? 0 : (double) falsePositives.sum() / misses;
+    }
+
+    public long filterBytes() {
+        return filter.sizeBytes();
+    }
+}
@@ -1,11 +1,128 @@
 package org.audio.db.repo;
 
 import org.audio.db.SongMatch;
+import org.audio.fingerprints.FingerprintFormat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.LongConsumer;
 
+/**
+ * Хранилище вхождений хешей. Вхождение — long, упакованный через {@link SongMatch#posting(int, int)}.
+ */
 public interface FingerprintRepository {
-    void save(long hash, SongMatch match);
-    List<SongMatch> findByHash(long hash);
-    List<SongMatch> findByHashes(List<Long> hashes);
-} 
\ No newline at end of file
+    void save(long hash, long posting);
+
+    /**
+     * Передаёт вхождения хеша посетителю в порядке добавления.
+     *
+     * @return число вхождений
+     */
+    int forEachPosting(long hash, LongConsumer visitor);
+
+    /**
+     * Число вхождений хеша — длина его списка; хранилища отвечают, не читая сами вхождения.
+     */
+    default int countPostings(long hash) {
+        return forEachPosting(hash, posting -> { });
+    }
+
+    /**
+     * Передаёт вхождения хеша посетителю, только если их не больше maxPostings. Базовая
+     * реализация сначала считает вхождения; хранилища, у которых длина лежит рядом со
+     * списком, отвечают одним обращением.
+     *
+     * @return длина списка, в том числе когда вхождения не переданы
+     */
+    default int forEachPostingUpTo(long hash, int maxPostings, LongConsumer visitor) {
+        int count = countPostings(hash);
+        return count == 0 || count > maxPostings ? count : forEachPosting(hash, visitor);
+    }
+
+    /**
+     * Передаёт посетителю все хеши индекса в произвольном порядке; хранилище из нескольких
+     * частей может передать один хеш несколько раз.
+     */
+    void forEachHash(LongConsumer visitor);
+
+    /**
+     * Передаёт посетителю вхождения хеша и всех хешей, отличающихся от него не больше чем
+     * в distance битах содержимого; тег формата не меняется. Базовая реализация проверяет
+     * каждого соседа по отдельности — при distance 2 это больше тысячи обращений на хеш.
+     *
+     * @return число вхождений
+     */
+    default int forEachPostingWithin(long hash, int distance, LongConsumer visitor) {
+        int count = forEachPosting(hash, visitor);
+        return distance > 0 ? count + forEachFlippedPosting(hash, distance, 0, visitor) : count;
+    }
+
+    default void save(long hash, SongMatch match) {
+        save(hash, match.toPosting());
+    }
+
+    /**
+     * Вхождения хеша объектами или null, если хеш не встречался.
+     */
+    default List<SongMatch> findByHash(long hash) {
+        List<SongMatch> matches = new ArrayList<>();
+        forEachPosting(hash, posting -> matches.add(SongMatch.fromPosting(posting)));
+        return matches.isEmpty() ? null : matches;
+    }
+
+    /**
+     * Пакетный поиск первых count хешей массива, отсортированных по возрастанию; повторы
+     * допускаются, и вхождения повторённого хеша передаются для каждого его номера. Базовая
+     * реализация ищет каждый хеш отдельно; хранилища с хешами по возрастанию проходят пакет
+     * одним слиянием. Хранилище из нескольких частей передаёт вхождения по частям, поэтому
+     * вхождения разных хешей могут чередоваться.
+     *
+     * @return число вхождений
+     */
+    default long forEachPostingSorted(long[] hashes, int count, IndexedPostingVisitor visitor) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            total += forEachPosting(hashes[i], posting -> visitor.accept(index, posting));
+        }
+        return total;
+    }
+
+    /**
+     * Проходит ли {@link #forEachPostingSorted} пакет слиянием, а не по одному хешу. Поиск
+     * точных совпадений запроса идёт пакетом только тогда: иначе сортировка пакета не окупается.
+     */
+    default boolean supportsSortedLookup() {
+        return false;
+    }
+
+    /**
+     * Вхождения всех хешей одним пакетным поиском, по возрастанию хешей.
+     */
+    default List<SongMatch> findByHashes(List<Long> hashes) {
+        long[] sorted = new long[hashes.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = hashes.get(i);
+        }
+        Arrays.sort(sorted);
+        List<SongMatch> matches = new ArrayList<>();
+        forEachPostingSorted(sorted, sorted.length, (index, posting) -> matches.add(SongMatch.fromPosting(posting)));
+        return matches;
+    }
+
+    /**
+     * Соседи, полученные инверсией битов начиная с firstBit: каждый набор битов ровно один раз.
+     */
+    private int forEachFlippedPosting(long hash, int distance, int firstBit, LongConsumer visitor) {
+        int count = 0;
+        for (int bit = firstBit; bit < FingerprintFormat.CONTENT_BITS; bit++) {
+            long neighbor = hash ^ (1L << bit);
+            count += forEachPosting(neighbor, visitor);
+            if (distance > 1) {
+                count += forEachFlippedPosting(neighbor, distance - 1, bit + 1, visitor);
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,192 @@
+package org.audio.db.repo;
+
+import org.audio.fingerprints.FingerprintFormat;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Мультииндекс различных хешей для поиска соседей по Хэммингу (multi-index hashing).
+ * 48 битов содержимого хеша делятся на m блоков, по каждому блоку строится подиндекс
+ * от значения блока к списку хешей. Если хеши различаются не больше чем в r битах, хотя
+ * бы в одном блоке они различаются не больше чем в ⌊r/m⌋ битах. Поэтому запрос перебирает
+ * соседей только внутри блоков и только на расстоянии ⌊r/m⌋, а найденных кандидатов
+ * проверяет подсчётом единиц в XOR.
+ *
+ * <p>Биты распределяются по блокам через один (бит i — в блок i mod m): в каждом поле хеша
+ * заняты в основном младшие биты, и сплошные блоки получились бы неравномерными.
+ * Тег формата входит в ключ каждого блока, так что хеши разных форматов не смешиваются.
+ *
+ * <p>Подиндексы — {@link PackedFingerprintRepository}, в которых вместо вхождений лежат
+ * сами хеши, поэтому кандидаты одного ключа читаются подряд. Поиск не блокирует добавление;
+ * хеш, добавляемый во время запроса, может в нём не встретиться.
+ */
+public final class HammingIndex {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.5;
+
+    private final long[] blockMasks;
+    private final long[] keyMasks;
+    private final int[][] blockBits;
+    private final PackedFingerprintRepository[] blocks;
+
+    // Множество уже добавленных хешей: occupied отличает пустой слот от хеша 0
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private boolean[] occupied = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param blockCount число блоков, от 1 до 8; чем больше блоков, тем короче ключ блока
+     *                   и тем больше кандидатов на ключ
+     */
+    public HammingIndex(int blockCount) {
+        if (blockCount < 1 || blockCount > 8) {
+            throw new IllegalArgumentException("Block count must be between 1 and 8");
+        }
+        this.blockMasks = new long[blockCount];
+        this.keyMasks = new long[blockCount];
+        this.blockBits = new int[blockCount][];
+        this.blocks = new PackedFingerprintRepository[blockCount];
+        for (int bit = 0; bit < FingerprintFormat.CONTENT_BITS; bit++) {
+            blockMasks[bit % blockCount] |= 1L << bit;
+        }
+        for (int block = 0; block < blockCount; block++) {
+            keyMasks[block] = blockMasks[block] | ~FingerprintFormat.CONTENT_MASK;
+            blockBits[block] = new int[Long.bitCount(blockMasks[block])];
+            long mask = blockMasks[block];
+            for (int i = 0; mask != 0; i++, mask &= mask - 1) {
+                blockBits[block][i] = Long.numberOfTrailingZeros(mask);
+            }
+            blocks[block] = new PackedFingerprintRepository();
+        }
+    }
+
+    /**
+     * Добавляет хеш, если его ещё нет.
+     *
+     * @return true, если хеш добавлен
+     */
+    public synchronized boolean add(long hash) {
+        int slot = find(hash);
+        if (occupied[slot]) {
+            return false;
+        }
+        keys[slot] = hash;
+        occupied[slot] = true;
+        if (++size > keys.length * MAX_LOAD) {
+            rehash();
+        }
+        for (int block = 0; block < blocks.length; block++) {
+            blocks[block].save(hash & keyMasks[block], hash);
+        }
+        return true;
+    }
+
+    /**
+     * Передаёт посетителю каждый хеш индекса того же формата, отличающийся от hash
+     * не больше чем в distance битах, ровно один раз; сам hash тоже передаётся, если он есть.
+     *
+     * @return число переданных хешей
+     */
+    public int forEachWithin(long hash, int distance, LongConsumer visitor) {
+        if (distance < 0) {
+            throw new IllegalArgumentException("Hamming distance cannot be negative");
+        }
+        int blockDistance = distance / blocks.length;
+        int[] found = new int[1];
+        for (int block = 0; block < blocks.length; block++) {
+            int current = block;
+            LongConsumer verifier = candidate -> {
+                long difference = candidate ^ hash;
+                if (Long.bitCount(difference) <= distance && firstBlockWithin(difference, blockDistance) == current) {
+                    visitor.accept(candidate);
+                    found[0]++;
+                }
+            };
+            forEachKeyWithin(block, hash & keyMasks[block], blockDistance, 0, verifier);
+        }
+        return found[0];
+    }
+
+    public int blockCount() {
+        return blocks.length;
+    }
+
+    /**
+     * Число различных хешей.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Размер массивов индекса и подиндексов в байтах.
+     */
+    public synchronized long footprintBytes() {
+        long bytes = (long) keys.length * (Long.BYTES + 1);
+        for (PackedFingerprintRepository block : blocks) {
+            bytes += block.footprintBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Обходит хеши, ключ блока которых отличается от key не больше чем в distance битах блока;
+     * каждый вариант ключа строится ровно один раз.
+     */
+    private void forEachKeyWithin(int block, long key, int distance, int firstBit, LongConsumer verifier) {
+        if (firstBit == 0) {
+            blocks[block].forEachPosting(key, verifier);
+        }
+        if (distance == 0) {
+            return;
+        }
+        int[] bits = blockBits[block];
+        for (int i = firstBit; i < bits.length; i++) {
+            long variant = key ^ (1L << bits[i]);
+            blocks[block].forEachPosting(variant, verifier);
+            if (distance > 1) {
+                forEachKeyWithin(block, variant, distance - 1, i + 1, verifier);
+            }
+        }
+    }
+
+    // Кандидат учитывается только в первом блоке, где он достаточно близок к запросу
+    private int firstBlockWithin(long difference, int blockDistance) {
+        for (int block = 0; ; block++) {
+            if (Long.bitCount(difference & blockMasks[block]) <= blockDistance) {
+                return block;
+            }
+        }
+    }
+
+    /**
+     * Слот с хешем или пустой слот для него.
+     */
+    private int find(long hash) {
+        int mask = keys.length - 1;
+        int slot = mix(hash) & mask;
+        while (occupied[slot] && keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        boolean[] oldOccupied = occupied;
+        keys = new long[oldKeys.length * 2];
+        occupied = new boolean[oldKeys.length * 2];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldOccupied[slot]) {
+                int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                occupied[target] = true;
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,35 +1,90 @@
 package org.audio.db.repo;
 
-import org.audio.db.SongMatch;
-import org.springframework.stereotype.Repository;
-
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.function.LongConsumer;
 
-@Repository
+/**
+ * Хранилище отпечатков на {@link ConcurrentHashMap} со списком вхождений на каждый хеш.
+ * Создаётся в {@code configs.AudioConfig}, если не выбрано упакованное хранилище.
+ *
+ * <p>Запись потокобезопасна и блокирует только список своего хеша, поэтому параллельная
+ * регистрация треков масштабируется по ядрам. Чтение не блокируется и всегда видит
+ * непрерывный префикс списка: вхождения, записанные до начала чтения, не теряются.
+ */
 public class InMemoryFingerprintRepository implements FingerprintRepository {
 
-    private final Map<Long, List<SongMatch>> hashMap = new ConcurrentHashMap<>();
+    private final Map<Long, PostingList> hashMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(long hash, long posting) {
+        PostingList postings = hashMap.get(hash);
+        if (postings == null) {
+            postings = hashMap.computeIfAbsent(hash, k -> new PostingList());
+        }
+        postings.add(posting);
+    }
 
     @Override
-    public void save(long hash, SongMatch match) {
-        hashMap.computeIfAbsent(hash, k -> new ArrayList<>()).add(match);
+    public int forEachPosting(long hash, LongConsumer visitor) {
+        PostingList postings = hashMap.get(hash);
+        return postings == null ? 0 : postings.forEach(visitor);
     }
 
     @Override
-    public List<SongMatch> findByHash(long hash) {
-        return hashMap.get(hash);
+    public int forEachPostingUpTo(long hash, int maxPostings, LongConsumer visitor) {
+        PostingList postings = hashMap.get(hash);
+        if (postings == null) {
+            return 0;
+        }
+        int count = postings.size;
+        return count > maxPostings ? count : postings.forEach(visitor);
     }
 
     @Override
-    public List<SongMatch> findByHashes(List<Long> hashes) {
-        return hashes.stream()
-                .map(hashMap::get)
-                .filter(list -> list != null && !list.isEmpty())
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
+    public int countPostings(long hash) {
+        PostingList postings = hashMap.get(hash);
+        return postings == null ? 0 : postings.size;
+    }
+
+    @Override
+    public void forEachHash(LongConsumer visitor) {
+        for (long hash : hashMap.keySet()) {
+            visitor.accept(hash);
+        }
+    }
+
+    /**
+     * Список только на добавление. Писатель кладёт вхождение в массив (при переполнении —
+     * в копию вдвое больше, публикуемую до нового размера) и затем увеличивает volatile size.
+     * Читатель сначала читает size, затем массив: любой массив, опубликованный после этого
+     * размера, содержит первые size вхождений.
+     */
+    private static final class PostingList {
+        private volatile long[] values = new long[2];
+        private volatile int size;
+
+        synchronized void add(long posting) {
+            long[] current = values;
+            int count = size;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, count * 2);
+                current[count] = posting;
+                values = current;
+            } else {
+                current[count] = posting;
+            }
+            size = count + 1;
+        }
+
+        int forEach(LongConsumer visitor) {
+            int count = size;
+            long[] current = values;
+            for (int i = 0; i < count; i++) {
+                visitor.accept(current[i]);
+            }
+            return count;
+        }
     }
-} 
\ No newline at end of file
+}
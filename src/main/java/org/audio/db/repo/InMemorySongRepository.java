@@ -3,6 +3,8 @@ package org.audio.db.repo;
 import org.audio.db.SongData;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -11,14 +13,50 @@ import java.util.concurrent.ConcurrentHashMap;
 public class InMemorySongRepository implements SongRepository {
 
     private final Map<String, SongData> songs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private final List<String> ids = new ArrayList<>();
 
     @Override
     public void save(SongData song) {
         songs.put(song.id, song);
+        ordinalOf(song.id);
     }
 
     @Override
     public Optional<SongData> findById(String id) {
         return Optional.ofNullable(songs.get(id));
     }
-} 
\ No newline at end of file
+
+    @Override
+    public int ordinalOf(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (ids) {
+            return ordinals.computeIfAbsent(id, key -> {
+                ids.add(key);
+                return ids.size() - 1;
+            });
+        }
+    }
+
+    @Override
+    public Optional<SongData> findByOrdinal(int ordinal) {
+        String id;
+        synchronized (ids) {
+            if (ordinal < 0 || ordinal >= ids.size()) {
+                return Optional.empty();
+            }
+            id = ids.get(ordinal);
+        }
+        return findById(id);
+    }
+
+    @Override
+    public int ordinalCount() {
+        synchronized (ids) {
+            return ids.size();
+        }
+    }
+}
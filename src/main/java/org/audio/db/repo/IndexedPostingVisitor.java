@@ -0,0 +1,9 @@
+package org.audio.db.repo;
+
+/**
+ * Получатель вхождений при пакетном поиске: номер хеша в пакете и упакованное вхождение.
+ */
+@FunctionalInterface
+public interface IndexedPostingVisitor {
+    void accept(int index, long posting);
+}
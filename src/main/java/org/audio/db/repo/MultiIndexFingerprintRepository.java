@@ -0,0 +1,78 @@
+package org.audio.db.repo;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище с {@link HammingIndex} для поиска соседей: вместо перебора всех хешей на
+ * расстоянии до distance запрос получает из мультииндекса только хеши, которые есть
+ * в индексе, и читает их вхождения. Мультииндекс заполняется из хранилища при создании
+ * и пополняется при каждом {@link #save}.
+ */
+public class MultiIndexFingerprintRepository implements DelegatingFingerprintRepository {
+    private final FingerprintRepository delegate;
+    private final HammingIndex index;
+
+    /**
+     * @param blockCount число блоков мультииндекса, см. {@link HammingIndex}
+     */
+    public MultiIndexFingerprintRepository(FingerprintRepository delegate, int blockCount) {
+        this.delegate = delegate;
+        this.index = new HammingIndex(blockCount);
+        delegate.forEachHash(index::add);
+    }
+
+    @Override
+    public void save(long hash, long posting) {
+        delegate.save(hash, posting);
+        index.add(hash);
+    }
+
+    @Override
+    public int forEachPosting(long hash, LongConsumer visitor) {
+        return delegate.forEachPosting(hash, visitor);
+    }
+
+    @Override
+    public long forEachPostingSorted(long[] hashes, int count, IndexedPostingVisitor visitor) {
+        return delegate.forEachPostingSorted(hashes, count, visitor);
+    }
+
+    @Override
+    public boolean supportsSortedLookup() {
+        return delegate.supportsSortedLookup();
+    }
+
+    @Override
+    public int forEachPostingUpTo(long hash, int maxPostings, LongConsumer visitor) {
+        return delegate.forEachPostingUpTo(hash, maxPostings, visitor);
+    }
+
+    @Override
+    public int countPostings(long hash) {
+        return delegate.countPostings(hash);
+    }
+
+    @Override
+    public int forEachPostingWithin(long hash, int distance, LongConsumer visitor) {
+        if (distance == 0) {
+            return delegate.forEachPosting(hash, visitor);
+        }
+        int[] count = new int[1];
+        index.forEachWithin(hash, distance, neighbor -> count[0] += delegate.forEachPosting(neighbor, visitor));
+        return count[0];
+    }
+
+    @Override
+    public void forEachHash(LongConsumer visitor) {
+        delegate.forEachHash(visitor);
+    }
+
+    @Override
+    public FingerprintRepository delegate() {
+        return delegate;
+    }
+
+    public HammingIndex index() {
+        return index;
+    }
+}
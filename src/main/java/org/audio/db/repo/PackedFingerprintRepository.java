@@ -0,0 +1,263 @@
+package org.audio.db.repo;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище отпечатков на примитивных массивах: таблица с открытой адресацией по
+ * ключу long и общий массив списков вхождений, упакованных в long.
+ *
+ * <p>Единственное вхождение хеша хранится прямо в слоте таблицы. Длинные списки
+ * лежат в общем массиве блоками размером в степень двойки; заполненный блок
+ * переносится в конец массива в блок вдвое больше, брошенные блоки собираются
+ * уплотнением, когда их набирается больше половины массива.
+ *
+ * <p>Чтение идёт параллельно, запись — под исключительной блокировкой.
+ */
+public class PackedFingerprintRepository implements FingerprintRepository {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final double MAX_LOAD = 0.6;
+    private static final int INITIAL_ARENA = 1 << 10;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // counts[slot] == 0 — пустой слот; при 1 values[slot] — само вхождение, иначе начало блока в arena
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size;
+    private long postingCount;
+
+    private long[] arena = new long[INITIAL_ARENA];
+    private int arenaSize;
+    private long arenaWaste;
+
+    @Override
+    public void save(long hash, long posting) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(hash);
+            if (counts[slot] == 0) {
+                if (size + 1 > keys.length * MAX_LOAD) {
+                    rehash(keys.length * 2);
+                    slot = findSlot(hash);
+                }
+                keys[slot] = hash;
+                size++;
+            }
+            append(slot, posting);
+            postingCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int forEachPosting(long hash, LongConsumer visitor) {
+        return forEachPostingUpTo(hash, Integer.MAX_VALUE, visitor);
+    }
+
+    @Override
+    public int forEachPostingUpTo(long hash, int maxPostings, LongConsumer visitor) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(hash);
+            int count = counts[slot];
+            if (count > maxPostings) {
+                return count;
+            }
+            if (count == 1) {
+                visitor.accept(values[slot]);
+            } else if (count > 1) {
+                int start = (int) values[slot];
+                for (int i = 0; i < count; i++) {
+                    visitor.accept(arena[start + i]);
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countPostings(long hash) {
+        lock.readLock().lock();
+        try {
+            return counts[findSlot(hash)];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachHash(LongConsumer visitor) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (counts[slot] != 0) {
+                    visitor.accept(keys[slot]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Обходит все вхождения; хеши идут в порядке таблицы, а не по возрастанию.
+     */
+    public void forEach(PostingVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < keys.length; slot++) {
+                int count = counts[slot];
+                if (count == 1) {
+                    visitor.accept(keys[slot], values[slot]);
+                } else if (count > 1) {
+                    int start = (int) values[slot];
+                    for (int i = 0; i < count; i++) {
+                        visitor.accept(keys[slot], arena[start + i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Число различных хешей.
+     */
+    public int hashCount() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long postingCount() {
+        lock.readLock().lock();
+        try {
+            return postingCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Размер примитивных массивов таблицы и списков в байтах.
+     */
+    public long footprintBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) keys.length * (Long.BYTES + Integer.BYTES + Long.BYTES) + (long) arena.length * Long.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Слот с ключом hash или пустой слот, в который его следует вставить.
+     */
+    private int findSlot(long hash) {
+        int mask = keys.length - 1;
+        int slot = mix(hash) & mask;
+        while (counts[slot] != 0 && keys[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void append(int slot, long posting) {
+        int count = counts[slot];
+        if (count == 0) {
+            values[slot] = posting;
+        } else if (count == 1) {
+            int start = allocate(2);
+            arena[start] = values[slot];
+            arena[start + 1] = posting;
+            values[slot] = start;
+        } else if (Integer.bitCount(count) == 1) {
+            // Блок заполнен: переносим список в блок вдвое больше
+            int start = allocate(count * 2);
+            int old = (int) values[slot];
+            System.arraycopy(arena, old, arena, start, count);
+            arena[start + count] = posting;
+            values[slot] = start;
+            arenaWaste += count;
+        } else {
+            arena[(int) values[slot] + count] = posting;
+        }
+        counts[slot] = count + 1;
+    }
+
+    private int allocate(int length) {
+        if (arenaSize + length > arena.length) {
+            if (arenaWaste > arenaSize / 2) {
+                compact();
+            }
+            if (arenaSize + length > arena.length) {
+                long capacity = Math.max((long) arenaSize + length, arena.length + (arena.length >> 1));
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Posting arena is full");
+                }
+                arena = Arrays.copyOf(arena, (int) capacity);
+            }
+        }
+        int start = arenaSize;
+        arenaSize += length;
+        return start;
+    }
+
+    /**
+     * Переписывает живые блоки подряд, сохраняя их ёмкость.
+     */
+    private void compact() {
+        long[] packed = new long[arena.length];
+        int position = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            int count = counts[slot];
+            if (count < 2) {
+                continue;
+            }
+            System.arraycopy(arena, (int) values[slot], packed, position, count);
+            values[slot] = position;
+            position += blockCapacity(count);
+        }
+        arena = packed;
+        arenaSize = position;
+        arenaWaste = 0;
+    }
+
+    private static int blockCapacity(int count) {
+        return Integer.highestOneBit(count - 1) << 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        long[] oldValues = values;
+
+        keys = new long[capacity];
+        counts = new int[capacity];
+        values = new long[capacity];
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldCounts[slot] != 0) {
+                int target = findSlot(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                counts[target] = oldCounts[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.audio.db.repo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Распределение длин списков вхождений по интервалам [2^k, 2^(k+1)) и самые длинные списки.
+ * Строится полным обходом хешей через {@link FingerprintRepository#countPostings(long)},
+ * поэтому предназначено для настройки предела стоп-хешей, а не для частых вызовов.
+ * В хранилище из нескольких частей хеш, лежащий в нескольких частях, учитывается столько
+ * же раз с полной длиной списка.
+ */
+public final class PostingLengthHistogram {
+    private final long[] hashes = new long[Integer.SIZE];
+    private final long[] postings = new long[Integer.SIZE];
+    private final List<HeavyHash> heaviest;
+    private long hashCount;
+    private long postingCount;
+
+    private PostingLengthHistogram(FingerprintRepository repository, int top) {
+        PriorityQueue<HeavyHash> queue = new PriorityQueue<>(Comparator.comparingInt(HeavyHash::postings));
+        repository.forEachHash(hash -> {
+            int length = repository.countPostings(hash);
+            if (length == 0) {
+                return;
+            }
+            int bucket = 31 - Integer.numberOfLeadingZeros(length);
+            hashes[bucket]++;
+            postings[bucket] += length;
+            hashCount++;
+            postingCount += length;
+            if (top > 0 && (queue.size() < top || length > queue.peek().postings())) {
+                if (queue.size() == top) {
+                    queue.poll();
+                }
+                queue.add(new HeavyHash(hash, length));
+            }
+        });
+        List<HeavyHash> sorted = new ArrayList<>(queue);
+        sorted.sort(Comparator.comparingInt(HeavyHash::postings).reversed());
+        this.heaviest = sorted;
+    }
+
+    /**
+     * @param top сколько самых длинных списков сохранить
+     */
+    public static PostingLengthHistogram of(FingerprintRepository repository, int top) {
+        return new PostingLengthHistogram(repository, top);
+    }
+
+    public long hashCount() {
+        return hashCount;
+    }
+
+    public long postingCount() {
+        return postingCount;
+    }
+
+    /**
+     * Непустые интервалы в порядке возрастания длины.
+     */
+    public List<Bucket> buckets() {
+        List<Bucket> buckets = new ArrayList<>();
+        for (int bucket = 0; bucket < hashes.length; bucket++) {
+            if (hashes[bucket] > 0) {
+                long min = 1L << bucket;
+                buckets.add(new Bucket((int) min, (int) Math.min(Integer.MAX_VALUE, 2 * min - 1),
+                        hashes[bucket], postings[bucket]));
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Самые длинные списки по убыванию длины.
+     */
+    public List<HeavyHash> heaviest() {
+        return heaviest;
+    }
+
+    public static final class Bucket {
+        private final int minLength;
+        private final int maxLength;
+        private final long hashes;
+        private final long postings;
+
+        Bucket(int minLength, int maxLength, long hashes, long postings) {
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            this.hashes = hashes;
+            this.postings = postings;
+        }
+
+        public int minLength() {
+            return minLength;
+        }
+
+        public int maxLength() {
+            return maxLength;
+        }
+
+        public long hashes() {
+            return hashes;
+        }
+
+        public long postings() {
+            return postings;
+        }
+    }
+
+    public static final class HeavyHash {
+        private final long hash;
+        private final int postings;
+
+        HeavyHash(long hash, int postings) {
+            this.hash = hash;
+            this.postings = postings;
+        }
+
+        public long hash() {
+            return hash;
+        }
+
+        public int postings() {
+            return postings;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.audio.db.repo;
+
+/**
+ * Получатель пар (хеш, упакованное вхождение) при обходе хранилища целиком.
+ */
+@FunctionalInterface
+public interface PostingVisitor {
+    void accept(long hash, long posting);
+}
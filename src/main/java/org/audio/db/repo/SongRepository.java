@@ -7,4 +7,17 @@ import java.util.Optional;
 public interface SongRepository {
     void save(SongData song);
     Optional<SongData> findById(String id);
-} 
\ No newline at end of file
+
+    /**
+     * Плотный порядковый номер трека, начиная с 0; назначается при первом обращении
+     * и дальше не меняется.
+     */
+    int ordinalOf(String id);
+
+    Optional<SongData> findByOrdinal(int ordinal);
+
+    /**
+     * Число назначенных номеров; все номера меньше него.
+     */
+    int ordinalCount();
+}
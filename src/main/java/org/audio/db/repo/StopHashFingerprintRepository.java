@@ -0,0 +1,94 @@
+package org.audio.db.repo;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Хранилище со стоп-хешами. Хеш, у которого больше maxPostings вхождений (края тишины,
+ * частые гармонические пары), встречается почти во всех треках и почти не различает их,
+ * а каждый запрос с ним перебирает весь список. Такой хеш при поиске пропускается, а при
+ * записи его новые вхождения отбрасываются. В списке остаётся maxPostings + 1 вхождение,
+ * так что хеш остаётся стоп-хешем и после перезапуска. Отброшенные вхождения не
+ * восстанавливаются при увеличении предела — только повторной регистрацией треков.
+ *
+ * <p>Длина списка проверяется без блокировки между проверкой и записью, поэтому при
+ * параллельной записи список может немного превысить предел.
+ */
+public class StopHashFingerprintRepository implements DelegatingFingerprintRepository {
+    private final FingerprintRepository delegate;
+    private final int maxPostings;
+
+    private final LongAdder droppedPostings = new LongAdder();
+    private final LongAdder skippedLookups = new LongAdder();
+
+    /**
+     * @param maxPostings наибольшая длина списка вхождений, при которой хеш ещё участвует в поиске
+     */
+    public StopHashFingerprintRepository(FingerprintRepository delegate, int maxPostings) {
+        if (maxPostings < 1) {
+            throw new IllegalArgumentException("Max postings per hash must be positive");
+        }
+        this.delegate = delegate;
+        this.maxPostings = maxPostings;
+    }
+
+    @Override
+    public void save(long hash, long posting) {
+        if (delegate.countPostings(hash) > maxPostings) {
+            droppedPostings.increment();
+            return;
+        }
+        delegate.save(hash, posting);
+    }
+
+    @Override
+    public int forEachPosting(long hash, LongConsumer visitor) {
+        // Длина списка и сами вхождения берутся одним обращением к хранилищу
+        int count = delegate.forEachPostingUpTo(hash, maxPostings, visitor);
+        if (count > maxPostings) {
+            skippedLookups.increment();
+            return 0;
+        }
+        return count;
+    }
+
+    /**
+     * Полная длина списка, в том числе у стоп-хешей.
+     */
+    @Override
+    public int countPostings(long hash) {
+        return delegate.countPostings(hash);
+    }
+
+    @Override
+    public void forEachHash(LongConsumer visitor) {
+        delegate.forEachHash(visitor);
+    }
+
+    @Override
+    public FingerprintRepository delegate() {
+        return delegate;
+    }
+
+    public int maxPostings() {
+        return maxPostings;
+    }
+
+    public boolean isStopHash(long hash) {
+        return delegate.countPostings(hash) > maxPostings;
+    }
+
+    /**
+     * Вхождения, не записанные из-за предела.
+     */
+    public long droppedPostings() {
+        return droppedPostings.sum();
+    }
+
+    /**
+     * Обращения при поиске, пропущенные из-за стоп-хешей.
+     */
+    public long skippedLookups() {
+        return skippedLookups.sum();
+    }
+}
@@ -0,0 +1,495 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongData;
+import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.IndexedPostingVisitor;
+import org.audio.db.repo.SongRepository;
+import org.audio.fingerprints.FingerprintFormat;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Неизменяемый сегмент индекса в файле, отображённом в память через {@link FileChannel#map}.
+ * Хеши, вхождения и таблица треков не копируются в кучу: поиск идёт по отображению,
+ * кешированием занимается страничный кеш ОС, поэтому открытие не зависит от размера
+ * каталога. Таблица треков читается только при слиянии и восстановлении треков.
+ *
+ * <p>Формат файла (big-endian):
+ * <pre>
+ * заголовок   {@value #HEADER_BYTES} байт: магическое число, версия файла, версия
+ *             {@link FingerprintFormat}, шаг каталога, число хешей n, число вхождений m,
+ *             число записей о треках, число замещённых поколений, смещения каталога и таблицы треков
+ * данные      хеши по возрастанию блоками по шаг хешей; для каждого хеша — прирост
+ *             относительно предыдущего хеша блока (varint, у первого хеша блока отсутствует),
+ *             длина списка в байтах (varint) и список, сжатый {@link PostingCodec}
+ * каталог     для каждого блока — первый хеш и смещение блока в данных, по long
+ * замещённые  поколения сегментов, которые заменяет сегмент, слитый из них, по long
+ * треки       только треки вхождений сегмента, по возрастанию порядкового номера: номер (int),
+ *             id и название в modified UTF-8
+ * </pre>
+ * Поиск хеша — двоичный поиск по каталогу и последовательный просмотр одного блока,
+ * чужие списки перескакиваются по длине без декодирования. Отсортированный пакет хешей
+ * ищется слиянием: каталог и данные проходятся один раз вперёд, без возврата к началу.
+ *
+ * <p>Сегмент только читается; чтение потокобезопасно.
+ */
+public final class FingerprintSegment implements FingerprintRepository {
+    static final int MAGIC = 0x41465347; // "AFSG"
+    static final int FILE_VERSION = 3;
+    static final int HEADER_BYTES = 64;
+    static final int DIRECTORY_STRIDE = 32;
+
+    private final Path path;
+    private final FingerprintFormat format;
+    private final int hashCount;
+    private final int postingCount;
+    private final ByteBuffer data;
+    private final LongBuffer directory;
+    private final long sizeBytes;
+    private final int stride;
+    private final ByteBuffer songTable;
+    private final int songCount;
+    private final long[] replacedGenerations;
+
+    private FingerprintSegment(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        long fileSize = channel.size();
+        if (fileSize < HEADER_BYTES) {
+            throw new IOException("Not a fingerprint segment: " + path);
+        }
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a fingerprint segment: " + path);
+        }
+        if (header.getInt(4) != FILE_VERSION) {
+            throw new IOException("Unsupported segment version " + header.getInt(4) + ": " + path);
+        }
+        try {
+            this.format = FingerprintFormat.forVersion(header.getInt(8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + ": " + path, e);
+        }
+        this.stride = header.getInt(12);
+        this.hashCount = header.getInt(16);
+        this.postingCount = header.getInt(20);
+        this.songCount = header.getInt(24);
+        int replacedCount = header.getInt(28);
+        if (stride < 1 || hashCount < 0 || postingCount < 0 || songCount < 0 || replacedCount < 0) {
+            throw new IOException("Corrupted fingerprint segment: " + path);
+        }
+        long directoryOffset = header.getLong(32);
+        long songsOffset = header.getLong(40);
+        int blocks = directorySize(hashCount, stride);
+        long replacedOffset = directoryOffset + (long) blocks * 2 * Long.BYTES;
+        if (directoryOffset < HEADER_BYTES || replacedOffset + (long) replacedCount * Long.BYTES != songsOffset
+                || songsOffset > fileSize) {
+            throw new IOException("Corrupted fingerprint segment: " + path);
+        }
+
+        this.data = map(channel, HEADER_BYTES, directoryOffset - HEADER_BYTES);
+        this.directory = map(channel, directoryOffset, (long) blocks * 2 * Long.BYTES).asLongBuffer();
+        this.replacedGenerations = new long[replacedCount];
+        map(channel, replacedOffset, (long) replacedCount * Long.BYTES).asLongBuffer().get(replacedGenerations);
+        this.sizeBytes = fileSize;
+        this.songTable = map(channel, songsOffset, fileSize - songsOffset);
+    }
+
+    /**
+     * Открывает сегмент; файл можно удалить или заменить, пока сегмент открыт.
+     *
+     * @throws IOException если файл не является сегментом или повреждён
+     */
+    public static FingerprintSegment open(Path path) throws IOException {
+        // Отображение остаётся действительным после закрытия канала
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new FingerprintSegment(path, channel);
+        }
+    }
+
+    static int directorySize(int hashCount, int stride) {
+        return (hashCount + stride - 1) / stride;
+    }
+
+    @Override
+    public void save(long hash, long posting) {
+        throw new UnsupportedOperationException("Fingerprint segments are immutable");
+    }
+
+    @Override
+    public int forEachPosting(long hash, LongConsumer visitor) {
+        int position = listPosition(hash);
+        return position < 0 ? 0 : PostingCodec.decode(data, position, visitor);
+    }
+
+    @Override
+    public int forEachPostingUpTo(long hash, int maxPostings, LongConsumer visitor) {
+        int position = listPosition(hash);
+        if (position < 0) {
+            return 0;
+        }
+        int count = new PostingCodec.Reader(data, position).readVarInt();
+        return count > maxPostings ? count : PostingCodec.decode(data, position, visitor);
+    }
+
+    @Override
+    public int countPostings(long hash) {
+        int position = listPosition(hash);
+        return position < 0 ? 0 : new PostingCodec.Reader(data, position).readVarInt();
+    }
+
+    /**
+     * Слияние пакета с хешами сегмента: к блоку следующего хеша курсор переходит галопом по
+     * каталогу — шагами 1, 2, 4… и двоичным поиском в последнем шаге, — а внутри блока идёт
+     * только вперёд. Близкие хеши пакета обходятся за несколько шагов по соседним байтам
+     * вместо двоичного поиска по всему каталогу на каждый хеш.
+     */
+    @Override
+    public long forEachPostingSorted(long[] hashes, int count, IndexedPostingVisitor visitor) {
+        IndexedVisitor indexed = new IndexedVisitor(visitor);
+        PostingCodec.Reader reader = new PostingCodec.Reader(data, 0);
+        int block = -1;
+        int remaining = 0;
+        long current = 0;
+        int listStart = 0;
+        int listLength = 0;
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            long hash = hashes[i];
+            int target = gallop(block, hash);
+            if (target < 0) {
+                continue;
+            }
+            if (target != block) {
+                block = target;
+                reader.position = (int) directory.get(2 * block + 1);
+                current = directory.get(2 * block);
+                listLength = reader.readVarInt();
+                listStart = reader.position;
+                remaining = Math.min(stride, hashCount - block * stride) - 1;
+            }
+            while (current < hash && remaining > 0) {
+                reader.position = listStart + listLength;
+                current += reader.readVarLong();
+                listLength = reader.readVarInt();
+                listStart = reader.position;
+                remaining--;
+            }
+            if (current == hash) {
+                indexed.index = i;
+                total += PostingCodec.decode(data, listStart, indexed);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public boolean supportsSortedLookup() {
+        return true;
+    }
+
+    @Override
+    public void forEachHash(LongConsumer visitor) {
+        Cursor cursor = new Cursor();
+        while (cursor.next()) {
+            visitor.accept(cursor.hash());
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Формат отпечатков, из которых построен сегмент.
+     */
+    public FingerprintFormat format() {
+        return format;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    public int postingCount() {
+        return postingCount;
+    }
+
+    /**
+     * Размер раздела вхождений в байтах.
+     */
+    public long dataBytes() {
+        return data.capacity();
+    }
+
+    /**
+     * Размер файла сегмента в байтах.
+     */
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Поколения сегментов, вхождения которых уже вошли в этот сегмент при слиянии;
+     * у сегмента, записанного не слиянием, — пустой массив.
+     */
+    public long[] replacedGenerations() {
+        return replacedGenerations.clone();
+    }
+
+    /**
+     * Число треков в таблице сегмента.
+     */
+    public int songCount() {
+        return songCount;
+    }
+
+    /**
+     * Передаёт посетителю треки сегмента с их порядковыми номерами, по возрастанию номера;
+     * таблица читается из отображения при каждом вызове.
+     *
+     * @throws IOException если таблица повреждена
+     */
+    public void forEachSong(ObjIntConsumer<SongData> visitor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferInput(songTable.duplicate()));
+        int previous = -1;
+        for (int i = 0; i < songCount; i++) {
+            int ordinal = in.readInt();
+            if (ordinal <= previous) {
+                throw new IOException("Corrupted song table: " + path);
+            }
+            previous = ordinal;
+            visitor.accept(new SongData(in.readUTF(), in.readUTF()), ordinal);
+        }
+    }
+
+    /**
+     * Регистрирует треки сегмента в пустом репозитории так, чтобы их порядковые
+     * номера совпали с номерами во вхождениях.
+     *
+     * @throws IllegalStateException если репозиторий назначил другие номера
+     */
+    public void restoreSongs(SongRepository songRepository) throws IOException {
+        restoreSongs(List.of(this), songRepository);
+    }
+
+    /**
+     * Регистрирует в пустом репозитории объединение таблиц треков сегментов. Номер, которого
+     * нет ни в одной таблице, — трек без вхождений или не записанный до остановки — занимается
+     * заглушкой, чтобы следующие номера совпали с номерами во вхождениях.
+     *
+     * @throws IllegalStateException если репозиторий назначил другие номера
+     */
+    public static void restoreSongs(List<FingerprintSegment> segments, SongRepository songRepository)
+            throws IOException {
+        TreeMap<Integer, SongData> songs = new TreeMap<>();
+        for (FingerprintSegment segment : segments) {
+            segment.forEachSong((song, ordinal) -> songs.putIfAbsent(ordinal, song));
+        }
+        if (songs.isEmpty()) {
+            return;
+        }
+        for (int ordinal = 0; ordinal <= songs.lastKey(); ordinal++) {
+            SongData song = songs.get(ordinal);
+            String id = song != null ? song.id : missingSongId(ordinal);
+            if (songRepository.ordinalOf(id) != ordinal) {
+                throw new IllegalStateException("Song ordinals of " + segments.get(0).path
+                        + " do not match the repository");
+            }
+            if (song != null) {
+                songRepository.save(song);
+            }
+        }
+    }
+
+    /**
+     * Начало списка вхождений хеша или -1, если хеша нет.
+     */
+    private int listPosition(long hash) {
+        int block = blockOf(hash);
+        if (block < 0) {
+            return -1;
+        }
+
+        PostingCodec.Reader reader = new PostingCodec.Reader(data, (int) directory.get(2 * block + 1));
+        long current = directory.get(2 * block);
+        int blockHashes = Math.min(stride, hashCount - block * stride);
+        for (int i = 0; i < blockHashes; i++) {
+            if (i > 0) {
+                current += reader.readVarLong();
+                if (current > hash) {
+                    return -1;
+                }
+            }
+            int length = reader.readVarInt();
+            if (current == hash) {
+                return reader.position;
+            }
+            reader.position += length;
+        }
+        return -1;
+    }
+
+    /**
+     * Последний блок, первый хеш которого не больше искомого, или -1.
+     */
+    private int blockOf(long hash) {
+        int low = 0;
+        int high = directory.limit() / 2 - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (directory.get(2 * mid) <= hash) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return block;
+    }
+
+    /**
+     * То же, что {@link #blockOf(long)}, но поиск начинается с блока from, первый хеш которого
+     * заведомо не больше искомого; from = -1 — поиск с начала каталога.
+     */
+    private int gallop(int from, long hash) {
+        int blocks = directory.limit() / 2;
+        int low = from;
+        if (low < 0) {
+            if (blocks == 0 || directory.get(0) > hash) {
+                return -1;
+            }
+            low = 0;
+        }
+        int step = 1;
+        int high = low + 1;
+        while (high < blocks && directory.get(2 * high) <= hash) {
+            low = high;
+            step <<= 1;
+            high = low + step;
+        }
+        high = Math.min(high, blocks) - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (directory.get(2 * mid) <= hash) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Курсор для последовательного обхода хешей по возрастанию, например при слиянии.
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    final class Cursor {
+        private final PostingCodec.Reader reader = new PostingCodec.Reader(data, 0);
+        private int index = -1;
+        private long hash;
+        private int listStart;
+        private int listEnd;
+
+        /**
+         * Переходит к следующему хешу; false, если хеши закончились.
+         */
+        boolean next() {
+            if (index + 1 >= hashCount) {
+                return false;
+            }
+            index++;
+            if (index % stride == 0) {
+                int block = index / stride;
+                hash = directory.get(2 * block);
+                reader.position = (int) directory.get(2 * block + 1);
+            } else {
+                reader.position = listEnd;
+                hash += reader.readVarLong();
+            }
+            int length = reader.readVarInt();
+            listStart = reader.position;
+            listEnd = listStart + length;
+            return true;
+        }
+
+        long hash() {
+            return hash;
+        }
+
+        /**
+         * Передаёт вхождения текущего хеша посетителю.
+         */
+        int forEachPosting(LongConsumer visitor) {
+            return PostingCodec.decode(data, listStart, visitor);
+        }
+    }
+
+    // Переводит вхождения одного хеша пакета в вызовы с его номером без замыкания на каждый хеш
+    private static final class IndexedVisitor implements LongConsumer {
+        private final IndexedPostingVisitor visitor;
+        private int index;
+
+        IndexedVisitor(IndexedPostingVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void accept(long posting) {
+            visitor.accept(index, posting);
+        }
+    }
+
+    // Номер без трека занимается заглушкой, чтобы следующие номера не сдвинулись
+    private static String missingSongId(int ordinal) {
+        return "\u0000missing-" + ordinal;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE || position + size > channel.size()) {
+            throw new IOException("Corrupted fingerprint segment section at " + position);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Поток байтов отображённой области без копирования в кучу.
+     */
+    private static final class BufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
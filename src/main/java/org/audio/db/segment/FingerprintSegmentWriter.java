@@ -0,0 +1,348 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongData;
+import org.audio.fingerprints.FingerprintFormat;
+import org.audio.utils.LongArray;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.audio.db.segment.FingerprintSegment.DIRECTORY_STRIDE;
+import static org.audio.db.segment.FingerprintSegment.FILE_VERSION;
+import static org.audio.db.segment.FingerprintSegment.HEADER_BYTES;
+import static org.audio.db.segment.FingerprintSegment.MAGIC;
+
+/**
+ * Собирает вхождения и треки и записывает их в файл {@link FingerprintSegment}.
+ * Вхождения сортируются по хешу, вхождения одного хеша — по (номер трека, смещение),
+ * и сжимаются {@link PostingCodec}. Сжатые данные сегмента ограничены 2 ГБ.
+ * Файл пишется во временный, сбрасывается на диск и переименовывается, так что
+ * читатели видят либо старый сегмент, либо новый целиком. Не потокобезопасен.
+ */
+public final class FingerprintSegmentWriter {
+    // Предел размера LongArray
+    private static final int MAX_POSTINGS = Integer.MAX_VALUE - 8;
+    // Пределы сегмента: данные отображаются одним буфером, число вхождений хранится в int
+    static final long MAX_DATA_BYTES = Integer.MAX_VALUE;
+    static final long MAX_SEGMENT_POSTINGS = Integer.MAX_VALUE;
+
+    private final FingerprintFormat format;
+    private final LongArray hashes = new LongArray();
+    private final LongArray postings = new LongArray();
+    private final TreeMap<Integer, SongData> songs = new TreeMap<>();
+
+    public FingerprintSegmentWriter(FingerprintFormat format) {
+        this.format = format;
+    }
+
+    public void add(long hash, long posting) {
+        if (postings.size() == MAX_POSTINGS) {
+            throw new IllegalStateException("Segment cannot hold more than " + MAX_POSTINGS + " postings");
+        }
+        hashes.add(hash);
+        postings.add(posting);
+    }
+
+    /**
+     * Запоминает трек под его порядковым номером. В таблицу сегмента стоит добавлять только
+     * треки его вхождений: таблица остальных сегментов каталога их не повторяет.
+     */
+    public void addSong(int ordinal, SongData song) {
+        songs.put(ordinal, song);
+    }
+
+    public int postingCount() {
+        return postings.size();
+    }
+
+    /**
+     * Записывает сегмент и возвращает размер файла в байтах. Собранные данные
+     * остаются в писателе, повторный вызов запишет тот же сегмент.
+     */
+    public long write(Path path) throws IOException {
+        int count = postings.size();
+        long[] keys = hashes.toArray();
+        long[] values = postings.toArray();
+        sort(keys, values, 0, count);
+
+        return writeSorted(path, format, songs, new long[0], visitor -> {
+            for (int from = 0, to; from < count; from = to) {
+                to = from + 1;
+                while (to < count && keys[to] == keys[from]) {
+                    to++;
+                }
+                visitor.accept(keys[from], values, from, to - from);
+            }
+        });
+    }
+
+    /**
+     * Сливает сегменты одного формата в новый файл, не загружая их в кучу: k-путевое
+     * слияние по хешам, вхождения одного хеша объединяются и сортируются. Таблица
+     * треков — объединение таблиц входов по порядковому номеру; таблицы читаются из
+     * отображения входов.
+     *
+     * @return размер файла в байтах
+     * @throws IllegalArgumentException если форматы сегментов различаются
+     */
+    public static long merge(List<FingerprintSegment> segments, Path path) throws IOException {
+        return merge(segments, path, new long[0]);
+    }
+
+    /**
+     * То же, что {@link #merge(List, Path)}, с поколениями входов, записанными в заголовок
+     * нового сегмента: если входы переживут аварийную остановку, при открытии каталога
+     * их вхождения не будут учтены дважды.
+     */
+    public static long merge(List<FingerprintSegment> segments, Path path, long[] replacedGenerations)
+            throws IOException {
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to merge");
+        }
+        FingerprintFormat format = segments.get(0).format();
+        TreeMap<Integer, SongData> songs = new TreeMap<>();
+        for (FingerprintSegment segment : segments) {
+            if (segment.format() != format) {
+                throw new IllegalArgumentException("Cannot merge segments of different formats");
+            }
+            segment.forEachSong((song, ordinal) -> songs.putIfAbsent(ordinal, song));
+        }
+        return writeSorted(path, format, songs, replacedGenerations, new Merge(segments));
+    }
+
+    /**
+     * Записывает группы вхождений, идущие по возрастанию хеша, одним последовательным
+     * проходом; каталог копится в памяти (16 байт на {@value FingerprintSegment#DIRECTORY_STRIDE}
+     * хешей), заголовок дописывается в начало файла последним.
+     */
+    private static long writeSorted(Path path, FingerprintFormat format, SortedMap<Integer, SongData> songs,
+                                    long[] replacedGenerations, SortedPostings source) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_BYTES);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+
+                LongArray blocks = new LongArray();
+                long[] counts = {0, 0};
+                long[] dataBytes = {0};
+                long[] previous = {0};
+                byte[][] scratch = {new byte[PostingCodec.maxEncodedLength(16)]};
+                byte[] prefix = new byte[15];
+                source.forEachGroup((hash, values, offset, length) -> {
+                    long distinct = counts[0]++;
+                    int prefixLength = 0;
+                    if (distinct % DIRECTORY_STRIDE == 0) {
+                        blocks.add(hash);
+                        blocks.add(dataBytes[0]);
+                    } else {
+                        prefixLength = PostingCodec.writeVarLong(prefix, 0, hash - previous[0]);
+                    }
+                    previous[0] = hash;
+
+                    if (scratch[0].length < PostingCodec.maxEncodedLength(length)) {
+                        scratch[0] = new byte[PostingCodec.maxEncodedLength(length)];
+                    }
+                    int encoded = PostingCodec.encode(values, offset, length, scratch[0]);
+                    prefixLength = PostingCodec.writeVarInt(prefix, prefixLength, encoded);
+                    out.write(prefix, 0, prefixLength);
+                    out.write(scratch[0], 0, encoded);
+
+                    counts[1] += length;
+                    dataBytes[0] += prefixLength + encoded;
+                    if (dataBytes[0] > MAX_DATA_BYTES || counts[1] > MAX_SEGMENT_POSTINGS) {
+                        throw new IllegalStateException("Segment is too large, split it into several");
+                    }
+                });
+
+                long directoryOffset = HEADER_BYTES + dataBytes[0];
+                for (int i = 0; i < blocks.size(); i++) {
+                    out.writeLong(blocks.get(i));
+                }
+                for (long generation : replacedGenerations) {
+                    out.writeLong(generation);
+                }
+                long songsOffset = directoryOffset + (long) (blocks.size() + replacedGenerations.length) * Long.BYTES;
+                for (Map.Entry<Integer, SongData> song : songs.entrySet()) {
+                    out.writeInt(song.getKey());
+                    out.writeUTF(song.getValue().id);
+                    out.writeUTF(song.getValue().name);
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC)
+                        .putInt(FILE_VERSION)
+                        .putInt(format.version())
+                        .putInt(DIRECTORY_STRIDE)
+                        .putInt((int) counts[0])
+                        .putInt((int) counts[1])
+                        .putInt(songs.size())
+                        .putInt(replacedGenerations.length)
+                        .putLong(directoryOffset)
+                        .putLong(songsOffset);
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(false);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return Files.size(path);
+    }
+
+    /**
+     * Источник групп вхождений по возрастанию хеша.
+     */
+    private interface SortedPostings {
+        void forEachGroup(GroupVisitor visitor) throws IOException;
+    }
+
+    private interface GroupVisitor {
+        void accept(long hash, long[] values, int offset, int length) throws IOException;
+    }
+
+    /**
+     * K-путевое слияние сегментов по хешам через кучу курсоров.
+     */
+    private static final class Merge implements SortedPostings {
+        private final List<FingerprintSegment> segments;
+
+        Merge(List<FingerprintSegment> segments) {
+            this.segments = segments;
+        }
+
+        @Override
+        public void forEachGroup(GroupVisitor visitor) throws IOException {
+            // Куча курсоров по текущему хешу
+            FingerprintSegment.Cursor[] heap = new FingerprintSegment.Cursor[segments.size()];
+            int size = 0;
+            for (FingerprintSegment segment : segments) {
+                FingerprintSegment.Cursor cursor = segment.cursor();
+                if (cursor.next()) {
+                    heap[size++] = cursor;
+                    siftUp(heap, size - 1);
+                }
+            }
+
+            LongArray group = new LongArray();
+            while (size > 0) {
+                long hash = heap[0].hash();
+                group.clear();
+                while (size > 0 && heap[0].hash() == hash) {
+                    heap[0].forEachPosting(group::add);
+                    if (!heap[0].next()) {
+                        heap[0] = heap[--size];
+                    }
+                    siftDown(heap, size);
+                }
+                Arrays.sort(group.array(), 0, group.size());
+                visitor.accept(hash, group.array(), 0, group.size());
+            }
+        }
+
+        private static void siftUp(FingerprintSegment.Cursor[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (heap[parent].hash() <= heap[index].hash()) {
+                    return;
+                }
+                FingerprintSegment.Cursor tmp = heap[parent];
+                heap[parent] = heap[index];
+                heap[index] = tmp;
+                index = parent;
+            }
+        }
+
+        private static void siftDown(FingerprintSegment.Cursor[] heap, int size) {
+            int index = 0;
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && heap[left].hash() < heap[smallest].hash()) {
+                    smallest = left;
+                }
+                if (right < size && heap[right].hash() < heap[smallest].hash()) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                FingerprintSegment.Cursor tmp = heap[smallest];
+                heap[smallest] = heap[index];
+                heap[index] = tmp;
+                index = smallest;
+            }
+        }
+    }
+
+    /**
+     * Быстрая сортировка пар (ключ, значение) по ключу, затем по значению.
+     */
+    private static void sort(long[] keys, long[] values, int from, int to) {
+        while (to - from > 16) {
+            int mid = (from + to) >>> 1;
+            long pivotKey = keys[mid];
+            long pivotValue = values[mid];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(keys[i], values[i], pivotKey, pivotValue) < 0) {
+                    i++;
+                }
+                while (compare(keys[j], values[j], pivotKey, pivotValue) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(keys, values, i++, j--);
+                }
+            }
+            // Рекурсия по меньшей части ограничивает глубину стека
+            if (j + 1 - from < to - i) {
+                sort(keys, values, from, j + 1);
+                from = i;
+            } else {
+                sort(keys, values, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compare(keys[j], values[j], keys[j - 1], values[j - 1]) < 0; j--) {
+                swap(keys, values, j, j - 1);
+            }
+        }
+    }
+
+    private static int compare(long key, long value, long otherKey, long otherValue) {
+        int byKey = Long.compare(key, otherKey);
+        return byKey != 0 ? byKey : Long.compare(value, otherValue);
+    }
+
+    private static void swap(long[] keys, long[] values, int i, int j) {
+        long key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
@@ -0,0 +1,131 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongMatch;
+
+import java.nio.ByteBuffer;
+import java.util.function.LongConsumer;
+
+/**
+ * Сжатие отсортированных списков вхождений разностями и varint (7 бит на байт,
+ * старший бит — продолжение). Список — число вхождений, затем для каждого вхождения
+ * прирост порядкового номера трека и смещение: при том же треке — прирост смещения,
+ * иначе само смещение. Смещения трактуются как беззнаковые 32-битные числа, так что
+ * порядок совпадает с порядком упакованных long.
+ *
+ * <p>Типичное вхождение занимает 2–4 байта вместо 8.
+ */
+final class PostingCodec {
+    // Худший случай: число и по два пятибайтовых varint на вхождение
+    static final int MAX_BYTES_PER_POSTING = 10;
+
+    private PostingCodec() {
+    }
+
+    static int maxEncodedLength(int count) {
+        return 5 + count * MAX_BYTES_PER_POSTING;
+    }
+
+    /**
+     * Кодирует вхождения, отсортированные по возрастанию, в out начиная с нуля.
+     *
+     * @return число записанных байтов
+     */
+    static int encode(long[] postings, int offset, int length, byte[] out) {
+        int position = writeVarInt(out, 0, length);
+        int previousOrdinal = 0;
+        int previousOffset = 0;
+        for (int i = 0; i < length; i++) {
+            long posting = postings[offset + i];
+            int ordinal = SongMatch.ordinalOf(posting);
+            int songOffset = SongMatch.offsetOf(posting);
+            int ordinalDelta = ordinal - previousOrdinal;
+            position = writeVarInt(out, position, ordinalDelta);
+            position = writeVarInt(out, position, ordinalDelta == 0 ? songOffset - previousOffset : songOffset);
+            previousOrdinal = ordinal;
+            previousOffset = songOffset;
+        }
+        return position;
+    }
+
+    /**
+     * Декодирует список, начинающийся в position, и передаёт вхождения посетителю.
+     *
+     * @return число вхождений
+     */
+    static int decode(ByteBuffer buffer, int position, LongConsumer visitor) {
+        Reader reader = new Reader(buffer, position);
+        int count = reader.readVarInt();
+        int ordinal = 0;
+        int songOffset = 0;
+        for (int i = 0; i < count; i++) {
+            int ordinalDelta = reader.readVarInt();
+            int value = reader.readVarInt();
+            ordinal += ordinalDelta;
+            songOffset = ordinalDelta == 0 ? songOffset + value : value;
+            visitor.accept(SongMatch.posting(ordinal, songOffset));
+        }
+        return count;
+    }
+
+    static int writeVarInt(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    static int writeVarLong(byte[] out, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Последовательное чтение varint из буфера по абсолютным позициям; сам буфер не меняется,
+     * поэтому один отображённый буфер читают несколько потоков.
+     */
+    static final class Reader {
+        private final ByteBuffer buffer;
+        int position;
+
+        Reader(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readVarInt() {
+            int b = buffer.get(position++);
+            if (b >= 0) {
+                return b;
+            }
+            int value = b & 0x7F;
+            int shift = 7;
+            while (true) {
+                b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                int b = buffer.get(position++);
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongMatch;
+import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.IndexedPostingVisitor;
+import org.audio.db.repo.PackedFingerprintRepository;
+import org.audio.db.repo.SongRepository;
+import org.audio.fingerprints.FingerprintFormat;
+import org.audio.utils.LongArray;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Индекс из сегментов в духе LSM-дерева. Новые вхождения пишутся в небольшой изменяемый
+ * {@link PackedFingerprintRepository}; когда в нём набирается flushThreshold вхождений,
+ * он замораживается, а фоновый поток записывает его в неизменяемый {@link FingerprintSegment}.
+ * Тот же поток сливает сегменты: как только их становится mergeFactor, самые маленькие
+ * mergeFactor сегментов сливаются в один, так что число сегментов растёт логарифмически.
+ * Сегменты, с которыми слитый файл превысил бы предел сегмента (2 ГБ данных или
+ * {@code Integer.MAX_VALUE} вхождений), в слияние не берутся и остаются как есть.
+ *
+ * <p>Запрос обходит изменяемую часть, замороженные части, ещё не записанные на диск,
+ * и все сегменты. Набор частей заменяется целиком одной записью volatile-поля, поэтому
+ * запрос видит каждое вхождение ровно один раз и не ждёт ни записи, ни слияния.
+ *
+ * <p>Сегменты лежат в каталоге как {@code segment-<поколение>.seg}. Слитый сегмент
+ * появляется в каталоге раньше, чем удаляются его входы, поэтому в его заголовке записаны
+ * поколения всех сегментов, которые он заменяет, включая входы его входов. При открытии
+ * каталога такие сегменты пропускаются и удаляются, и ни одно вхождение не учитывается
+ * дважды, даже если остановка пришлась между записью слияния и удалением входов. При открытии
+ * каталога треки восстанавливаются в переданный пустой {@link SongRepository} с прежними
+ * порядковыми номерами из объединения таблиц сегментов: каждый сегмент хранит только треки
+ * своих вхождений, поэтому трек без вхождений после перезапуска не восстанавливается.
+ * Данные, не сброшенные на диск до остановки, теряются, поэтому перед остановкой следует
+ * вызывать {@link #close()}.
+ */
+public class SegmentedFingerprintRepository implements FingerprintRepository, Closeable {
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final FingerprintFormat format;
+    private final SongRepository songRepository;
+    private final int flushThreshold;
+    private final int mergeFactor;
+    private final long maxMergeBytes;
+    // Сегменты, слияние с которыми не уложилось в предел файла; доступ только из фонового потока
+    private final Set<Long> unmergeable = new HashSet<>();
+
+    // Запись идёт под разделяемой блокировкой, замена изменяемой части — под исключительной
+    private final ReadWriteLock rotation = new ReentrantReadWriteLock();
+    private final ExecutorService background;
+    private volatile Parts parts;
+    private long nextGeneration;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * Открывает каталог сегментов, создавая его при необходимости.
+     *
+     * @param flushThreshold число вхождений в изменяемой части, после которого она записывается на диск
+     * @param mergeFactor    число сегментов, при котором самые маленькие из них сливаются, не меньше 2
+     * @throws IllegalStateException если сегменты построены в другом формате
+     */
+    public SegmentedFingerprintRepository(Path directory, FingerprintFormat format, SongRepository songRepository,
+                                          int flushThreshold, int mergeFactor) throws IOException {
+        this(directory, format, songRepository, flushThreshold, mergeFactor, FingerprintSegmentWriter.MAX_DATA_BYTES);
+    }
+
+    /**
+     * @param maxMergeBytes предел суммы размеров данных входов слияния, для тестов
+     */
+    SegmentedFingerprintRepository(Path directory, FingerprintFormat format, SongRepository songRepository,
+                                   int flushThreshold, int mergeFactor, long maxMergeBytes) throws IOException {
+        if (flushThreshold < 1 || mergeFactor < 2) {
+            throw new IllegalArgumentException("Flush threshold must be positive and merge factor at least 2");
+        }
+        if (maxMergeBytes < 1 || maxMergeBytes > FingerprintSegmentWriter.MAX_DATA_BYTES) {
+            throw new IllegalArgumentException("Merge size limit must be positive and fit a segment");
+        }
+        this.directory = directory;
+        this.format = format;
+        this.songRepository = songRepository;
+        this.flushThreshold = flushThreshold;
+        this.mergeFactor = mergeFactor;
+        this.maxMergeBytes = maxMergeBytes;
+
+        Files.createDirectories(directory);
+        List<Segment> segments = openSegments();
+        this.parts = new Parts(new PackedFingerprintRepository(), List.of(), segments);
+        this.background = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "fingerprint-segment-merger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        background.execute(this::mergeIfNeeded);
+    }
+
+    @Override
+    public void save(long hash, long posting) {
+        rotation.readLock().lock();
+        PackedFingerprintRepository active;
+        try {
+            if (closed) {
+                throw new IllegalStateException("Repository is closed");
+            }
+            active = parts.active;
+            active.save(hash, posting);
+        } finally {
+            rotation.readLock().unlock();
+        }
+        if (active.postingCount() >= flushThreshold) {
+            rotate(active);
+        }
+    }
+
+    @Override
+    public int forEachPosting(long hash, LongConsumer visitor) {
+        Parts snapshot = parts;
+        int count = snapshot.active.forEachPosting(hash, visitor);
+        for (PackedFingerprintRepository frozen : snapshot.frozen) {
+            count += frozen.forEachPosting(hash, visitor);
+        }
+        for (Segment segment : snapshot.segments) {
+            count += segment.data.forEachPosting(hash, visitor);
+        }
+        return count;
+    }
+
+    /**
+     * Пакет ищется в каждой части по очереди, в сегментах — слиянием.
+     */
+    @Override
+    public long forEachPostingSorted(long[] hashes, int count, IndexedPostingVisitor visitor) {
+        Parts snapshot = parts;
+        long total = snapshot.active.forEachPostingSorted(hashes, count, visitor);
+        for (PackedFingerprintRepository frozen : snapshot.frozen) {
+            total += frozen.forEachPostingSorted(hashes, count, visitor);
+        }
+        for (Segment segment : snapshot.segments) {
+            total += segment.data.forEachPostingSorted(hashes, count, visitor);
+        }
+        return total;
+    }
+
+    @Override
+    public boolean supportsSortedLookup() {
+        return true;
+    }
+
+    @Override
+    public int countPostings(long hash) {
+        Parts snapshot = parts;
+        int count = snapshot.active.countPostings(hash);
+        for (PackedFingerprintRepository frozen : snapshot.frozen) {
+            count += frozen.countPostings(hash);
+        }
+        for (Segment segment : snapshot.segments) {
+            count += segment.data.countPostings(hash);
+        }
+        return count;
+    }
+
+    @Override
+    public void forEachHash(LongConsumer visitor) {
+        Parts snapshot = parts;
+        snapshot.active.forEachHash(visitor);
+        for (PackedFingerprintRepository frozen : snapshot.frozen) {
+            frozen.forEachHash(visitor);
+        }
+        for (Segment segment : snapshot.segments) {
+            segment.data.forEachHash(visitor);
+        }
+    }
+
+    /**
+     * Записывает изменяемую часть на диск и дожидается завершения фоновых записи и слияния.
+     *
+     * @throws IOException если фоновая запись завершилась ошибкой
+     */
+    public void flush() throws IOException {
+        rotate(parts.active);
+        awaitBackground();
+    }
+
+    /**
+     * Сбрасывает данные на диск и останавливает фоновый поток; после закрытия запись невозможна,
+     * чтение из уже открытых сегментов продолжает работать.
+     */
+    @Override
+    public void close() throws IOException {
+        rotation.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+        } finally {
+            rotation.writeLock().unlock();
+        }
+        try {
+            flush();
+        } finally {
+            rotation.writeLock().lock();
+            try {
+                closed = true;
+            } finally {
+                rotation.writeLock().unlock();
+            }
+            background.shutdown();
+        }
+    }
+
+    public int segmentCount() {
+        return parts.segments.size();
+    }
+
+    /**
+     * Число вхождений, ещё не записанных в сегменты.
+     */
+    public long bufferedPostings() {
+        Parts snapshot = parts;
+        long count = snapshot.active.postingCount();
+        for (PackedFingerprintRepository frozen : snapshot.frozen) {
+            count += frozen.postingCount();
+        }
+        return count;
+    }
+
+    /**
+     * Замораживает изменяемую часть, если она всё ещё expected и не пуста, и ставит её запись в очередь.
+     */
+    private void rotate(PackedFingerprintRepository expected) {
+        rotation.writeLock().lock();
+        try {
+            Parts current = parts;
+            if (closed || current.active != expected || expected.postingCount() == 0) {
+                return;
+            }
+            List<PackedFingerprintRepository> frozenParts = new ArrayList<>(current.frozen);
+            frozenParts.add(current.active);
+            parts = new Parts(new PackedFingerprintRepository(), frozenParts, current.segments);
+        } finally {
+            rotation.writeLock().unlock();
+        }
+        background.execute(() -> {
+            writeFrozen();
+            mergeIfNeeded();
+        });
+    }
+
+    /**
+     * Записывает все замороженные части; часть, запись которой раньше не удалась,
+     * повторяется вместе со следующей.
+     */
+    private void writeFrozen() {
+        for (PackedFingerprintRepository frozen : parts.frozen) {
+            if (!writeSegment(frozen)) {
+                return;
+            }
+        }
+    }
+
+    private boolean writeSegment(PackedFingerprintRepository frozen) {
+        try {
+            FingerprintSegmentWriter writer = new FingerprintSegmentWriter(format);
+            // Номера назначаются до записи вхождений, так что трек каждого вхождения уже известен
+            BitSet ordinals = new BitSet();
+            frozen.forEach((hash, posting) -> {
+                writer.add(hash, posting);
+                ordinals.set(SongMatch.ordinalOf(posting));
+            });
+            for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+                int current = ordinal;
+                songRepository.findByOrdinal(ordinal).ifPresent(song -> writer.addSong(current, song));
+            }
+
+            long generation = allocateGeneration();
+            Path path = segmentPath(generation);
+            writer.write(path);
+            Segment segment = new Segment(generation, openWritten(path));
+            replace(List.of(frozen), List.of(), segment);
+            return true;
+        } catch (IOException e) {
+            // Замороженная часть остаётся в памяти и продолжает участвовать в запросах
+            failure = e;
+            return false;
+        }
+    }
+
+    private void mergeIfNeeded() {
+        while (true) {
+            List<Segment> inputs = mergeInputs();
+            if (inputs == null) {
+                return;
+            }
+            try {
+                List<FingerprintSegment> data = new ArrayList<>();
+                LongArray replaced = new LongArray();
+                for (Segment input : inputs) {
+                    data.add(input.data);
+                    replaced.add(input.generation);
+                    for (long generation : input.data.replacedGenerations()) {
+                        replaced.add(generation);
+                    }
+                }
+                long generation = allocateGeneration();
+                Path path = segmentPath(generation);
+                FingerprintSegmentWriter.merge(data, path, replaced.toArray());
+                replace(List.of(), inputs, new Segment(generation, openWritten(path)));
+            } catch (IllegalStateException e) {
+                // Слитые данные оказались больше суммы входов: самый большой вход больше не сливается
+                unmergeable.add(inputs.get(inputs.size() - 1).generation);
+                continue;
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            for (Segment input : inputs) {
+                try {
+                    // Отображения уже открытых запросов остаются действительными
+                    Files.deleteIfExists(input.data.path());
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Самые маленькие mergeFactor сегментов, суммы вхождений и данных которых укладываются
+     * в пределы сегмента, по возрастанию числа вхождений; null, если таких не набирается.
+     * Сегмент, который не помещается вместе с меньшими, пропускается, иначе одно и то же
+     * слишком большое слияние повторялось бы после каждой записи.
+     */
+    private List<Segment> mergeInputs() {
+        List<Segment> segments = new ArrayList<>(parts.segments);
+        if (segments.size() < mergeFactor) {
+            return null;
+        }
+        segments.sort(Comparator.comparingInt(segment -> segment.data.postingCount()));
+        List<Segment> inputs = new ArrayList<>(mergeFactor);
+        long postings = 0;
+        long bytes = 0;
+        for (Segment segment : segments) {
+            if (unmergeable.contains(segment.generation)) {
+                continue;
+            }
+            long nextPostings = postings + segment.data.postingCount();
+            long nextBytes = bytes + segment.data.dataBytes();
+            if (nextPostings > FingerprintSegmentWriter.MAX_SEGMENT_POSTINGS || nextBytes > maxMergeBytes) {
+                continue;
+            }
+            inputs.add(segment);
+            postings = nextPostings;
+            bytes = nextBytes;
+            if (inputs.size() == mergeFactor) {
+                return inputs;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Открывает только что записанный сегмент; файл, который не удалось открыть, удаляется,
+     * иначе после перезапуска его вхождения сложились бы с вхождениями частей, которые
+     * остались в индексе вместо него.
+     */
+    private static FingerprintSegment openWritten(Path path) throws IOException {
+        try {
+            return FingerprintSegment.open(path);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private void replace(List<PackedFingerprintRepository> flushed, List<Segment> merged, Segment added) {
+        rotation.writeLock().lock();
+        try {
+            Parts current = parts;
+            List<PackedFingerprintRepository> frozen = new ArrayList<>(current.frozen);
+            frozen.removeAll(flushed);
+            List<Segment> segments = new ArrayList<>(current.segments);
+            segments.removeAll(merged);
+            segments.add(added);
+            parts = new Parts(current.active, frozen, segments);
+        } finally {
+            rotation.writeLock().unlock();
+        }
+    }
+
+    private void awaitBackground() throws IOException {
+        try {
+            background.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for segment writes", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        IOException error = failure;
+        if (error != null) {
+            failure = null;
+            throw error;
+        }
+    }
+
+    private List<Segment> openSegments() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Недописанный сегмент после аварийной остановки
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    long generation = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                    segments.add(new Segment(generation, FingerprintSegment.open(file)));
+                    nextGeneration = Math.max(nextGeneration, generation + 1);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(segment -> segment.generation));
+
+        // Входы слияния, пережившие остановку до своего удаления, уже учтены в слитом сегменте
+        Set<Long> replaced = new HashSet<>();
+        for (Segment segment : segments) {
+            for (long generation : segment.data.replacedGenerations()) {
+                replaced.add(generation);
+            }
+        }
+        List<Segment> live = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (replaced.contains(segment.generation)) {
+                Files.deleteIfExists(segment.data.path());
+            } else {
+                live.add(segment);
+            }
+        }
+        segments = live;
+
+        List<FingerprintSegment> data = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (segment.data.format() != format) {
+                throw new IllegalStateException("Segment " + segment.data.path() + " was built for "
+                        + segment.data.format() + ", expected " + format);
+            }
+            data.add(segment.data);
+        }
+        FingerprintSegment.restoreSongs(data, songRepository);
+        return segments;
+    }
+
+    private synchronized long allocateGeneration() {
+        return nextGeneration++;
+    }
+
+    private Path segmentPath(long generation) {
+        return directory.resolve(String.format("%s%012d%s", PREFIX, generation, SUFFIX));
+    }
+
+    /**
+     * Неизменяемый набор частей индекса.
+     */
+    private static final class Parts {
+        final PackedFingerprintRepository active;
+        final List<PackedFingerprintRepository> frozen;
+        final List<Segment> segments;
+
+        Parts(PackedFingerprintRepository active, List<PackedFingerprintRepository> frozen, List<Segment> segments) {
+            this.active = active;
+            this.frozen = List.copyOf(frozen);
+            this.segments = List.copyOf(segments);
+        }
+    }
+
+    private static final class Segment {
+        final long generation;
+        final FingerprintSegment data;
+
+        Segment(long generation, FingerprintSegment data) {
+            this.generation = generation;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.audio.dto;
+
+import org.audio.db.HammingTierStats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO со счётчиками ступеней адаптивного поиска по допуску Хэмминга
+ */
+public class HammingTierStatsResponse {
+    private final List<Tier> tiers;
+
+    public HammingTierStatsResponse(List<Tier> tiers) {
+        this.tiers = tiers;
+    }
+
+    public static HammingTierStatsResponse fromStats(HammingTierStats stats) {
+        List<Tier> tiers = new ArrayList<>();
+        for (int distance = 0; distance <= stats.maxDistance(); distance++) {
+            tiers.add(new Tier(distance, stats.runs(distance), stats.finished(distance)));
+        }
+        return new HammingTierStatsResponse(tiers);
+    }
+
+    public List<Tier> getTiers() { return tiers; }
+
+    public static class Tier {
+        private final int hammingDistance;
+        private final long runs;
+        private final long finished;
+
+        public Tier(int hammingDistance, long runs, long finished) {
+            this.hammingDistance = hammingDistance;
+            this.runs = runs;
+            this.finished = finished;
+        }
+
+        public int getHammingDistance() { return hammingDistance; }
+        public long getRuns() { return runs; }
+        public long getFinished() { return finished; }
+    }
+}
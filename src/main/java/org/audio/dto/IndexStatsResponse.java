@@ -0,0 +1,43 @@
+package org.audio.dto;
+
+import org.audio.db.repo.FilteredFingerprintRepository;
+
+/**
+ * DTO со счётчиками фильтра существования перед индексом отпечатков
+ */
+public class IndexStatsResponse {
+    private final long probes;
+    private final long rejected;
+    private final long falsePositives;
+    private final double rejectionRate;
+    private final double falsePositiveRate;
+    private final long filterBytes;
+
+    public IndexStatsResponse(long probes, long rejected, long falsePositives,
+                              double rejectionRate, double falsePositiveRate, long filterBytes) {
+        this.probes = probes;
+        this.rejected = rejected;
+        this.falsePositives = falsePositives;
+        this.rejectionRate = rejectionRate;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filterBytes = filterBytes;
+    }
+
+    public static IndexStatsResponse fromRepository(FilteredFingerprintRepository repository) {
+        return new IndexStatsResponse(
+                repository.probes(),
+                repository.rejected(),
+                repository.falsePositives(),
+                repository.rejectionRate(),
+                repository.falsePositiveRate(),
+                repository.filterBytes()
+        );
+    }
+
+    public long getProbes() { return probes; }
+    public long getRejected() { return rejected; }
+    public long getFalsePositives() { return falsePositives; }
+    public double getRejectionRate() { return rejectionRate; }
+    public double getFalsePositiveRate() { return falsePositiveRate; }
+    public long getFilterBytes() { return filterBytes; }
+}
@@ -39,7 +39,8 @@ public class MatchResponse {
                         null,
                 new ProcessingStatsDto(
                         result.getSamplesProcessed(),
-                        result.getAudioDurationMs()
+                        result.getAudioDurationMs(),
+                        result.getHashesConsumed()
                 )
         );
     }
@@ -51,6 +52,14 @@ public class MatchResponse {
     public ProcessingStatsDto getStats() { return stats; }
 
     // Nested DTOs
+
+    /**
+     * Совпавший трек. matchScore — число совпадений хешей с одним сдвигом, confidence — их доля
+     * среди просмотренных хешей. С эвристикой досрочной остановки
+     * (audio.fingerprint.scoring.early-exit-heuristic) оба поля считаются только по первым
+     * {@link ProcessingStatsDto#getHashesConsumed()} хешам запроса, и matchScore оказывается
+     * меньше, чем при просмотре всего запроса.
+     */
     public static class TrackMatchDto {
         private final String trackId;
         private final String title;
@@ -85,17 +94,28 @@ public class MatchResponse {
         public long getOffsetMs() { return offsetMs; }
     }
 
+    /**
+     * hashesConsumed — сколько хешей запроса просмотрено; меньше их общего числа, только если
+     * сработала эвристика досрочной остановки.
+     */
     public static class ProcessingStatsDto {
         private final int samplesProcessed;
         private final int durationMs;
+        private final int hashesConsumed;
 
         public ProcessingStatsDto(int samplesProcessed, int durationMs) {
+            this(samplesProcessed, durationMs, 0);
+        }
+
+        public ProcessingStatsDto(int samplesProcessed, int durationMs, int hashesConsumed) {
             this.samplesProcessed = samplesProcessed;
             this.durationMs = durationMs;
+            this.hashesConsumed = hashesConsumed;
         }
 
         // Getters
         public int getSamplesProcessed() { return samplesProcessed; }
         public int getDurationMs() { return durationMs; }
+        public int getHashesConsumed() { return hashesConsumed; }
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package org.audio.dto;
+
+import org.audio.db.repo.PostingLengthHistogram;
+import org.audio.db.repo.StopHashFingerprintRepository;
+
+import java.util.List;
+
+/**
+ * DTO с распределением длин списков вхождений и счётчиками стоп-хешей
+ */
+public class PostingDistributionResponse {
+    private final long hashCount;
+    private final long postingCount;
+    private final Integer maxPostingsPerHash;
+    private final long droppedPostings;
+    private final long skippedLookups;
+    private final List<Bucket> buckets;
+    private final List<HeavyHash> heaviest;
+
+    public PostingDistributionResponse(long hashCount, long postingCount, Integer maxPostingsPerHash,
+                                       long droppedPostings, long skippedLookups,
+                                       List<Bucket> buckets, List<HeavyHash> heaviest) {
+        this.hashCount = hashCount;
+        this.postingCount = postingCount;
+        this.maxPostingsPerHash = maxPostingsPerHash;
+        this.droppedPostings = droppedPostings;
+        this.skippedLookups = skippedLookups;
+        this.buckets = buckets;
+        this.heaviest = heaviest;
+    }
+
+    /**
+     * @param stopHashes хранилище со стоп-хешами или null, если предел не задан
+     */
+    public static PostingDistributionResponse fromHistogram(PostingLengthHistogram histogram,
+                                                            StopHashFingerprintRepository stopHashes) {
+        return new PostingDistributionResponse(
+                histogram.hashCount(),
+                histogram.postingCount(),
+                stopHashes == null ? null : stopHashes.maxPostings(),
+                stopHashes == null ? 0 : stopHashes.droppedPostings(),
+                stopHashes == null ? 0 : stopHashes.skippedLookups(),
+                histogram.buckets().stream()
+                        .map(bucket -> new Bucket(bucket.minLength(), bucket.maxLength(), bucket.hashes(), bucket.postings()))
+                        .toList(),
+                histogram.heaviest().stream()
+                        .map(heavy -> new HeavyHash(String.format("0x%016x", heavy.hash()), heavy.postings()))
+                        .toList()
+        );
+    }
+
+    public long getHashCount() { return hashCount; }
+    public long getPostingCount() { return postingCount; }
+    public Integer getMaxPostingsPerHash() { return maxPostingsPerHash; }
+    public long getDroppedPostings() { return droppedPostings; }
+    public long getSkippedLookups() { return skippedLookups; }
+    public List<Bucket> getBuckets() { return buckets; }
+    public List<HeavyHash> getHeaviest() { return heaviest; }
+
+    public static class Bucket {
+        private final int minLength;
+        private final int maxLength;
+        private final long hashes;
+        private final long postings;
+
+        public Bucket(int minLength, int maxLength, long hashes, long postings) {
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            this.hashes = hashes;
+            this.postings = postings;
+        }
+
+        public int getMinLength() { return minLength; }
+        public int getMaxLength() { return maxLength; }
+        public long getHashes() { return hashes; }
+        public long getPostings() { return postings; }
+    }
+
+    public static class HeavyHash {
+        private final String hash;
+        private final int postings;
+
+        public HeavyHash(String hash, int postings) {
+            this.hash = hash;
+            this.postings = postings;
+        }
+
+        public String getHash() { return hash; }
+        public int getPostings() { return postings; }
+    }
+}
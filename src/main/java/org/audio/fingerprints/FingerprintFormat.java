@@ -0,0 +1,108 @@
+package org.audio.fingerprints;
+
+import org.audio.AudioConfig;
+import org.audio.utils.FftPlan;
+
+/**
+ * Формат отпечатков: частота дискретизации, на которой строится спектрограмма, и
+ * масштабированные под неё окно и шаг. Разрешение по частоте (частота / окно) и по
+ * времени (шаг / частота) во всех форматах одинаковое, меняется только размер БПФ.
+ * Полоса частот — до 11000 Гц, но не выше частоты Найквиста: формат 11025 Гц теряет
+ * диапазон 5,5–11 кГц, и полосы отбора пиков делят только 20–5512 Гц.
+ *
+ * <p>Версия формата записывается в старшие биты каждого хеша (биты 48–55), поэтому хеши
+ * разных форматов никогда не совпадают и индексы, построенные в разных режимах,
+ * не смешиваются. У исходного формата 44100 Гц версия 0, его хеши не изменились.
+ */
+public enum FingerprintFormat {
+    SR_44100(0, 1),
+    SR_22050(1, 2),
+    SR_11025(2, 4);
+
+    /**
+     * Число битов содержимого хеша под тегом формата; расстояние Хэмминга считается только по ним.
+     */
+    public static final int CONTENT_BITS = 48;
+    public static final long CONTENT_MASK = (1L << CONTENT_BITS) - 1;
+
+    private static final int VERSION_SHIFT = CONTENT_BITS;
+
+    private final int version;
+    private final int decimation;
+    private final FftPlan windowPlan;
+
+    FingerprintFormat(int version, int decimation) {
+        this.version = version;
+        this.decimation = decimation;
+        this.windowPlan = FftPlan.forSize(FingerprintGenerator.WINDOW_SIZE / decimation);
+    }
+
+    /**
+     * Возвращает формат для частоты 44100, 22050 или 11025 Гц.
+     *
+     * @throws IllegalArgumentException для других частот
+     */
+    public static FingerprintFormat forSampleRate(int sampleRate) {
+        for (FingerprintFormat format : values()) {
+            if (format.sampleRate() == sampleRate) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported fingerprint sample rate: " + sampleRate);
+    }
+
+    /**
+     * Возвращает формат по версии из хеша или заголовка файла.
+     *
+     * @throws IllegalArgumentException для неизвестной версии
+     */
+    public static FingerprintFormat forVersion(int version) {
+        for (FingerprintFormat format : values()) {
+            if (format.version == version) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown fingerprint format version: " + version);
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Во сколько раз прореживается входной сигнал {@link AudioConfig#SAMPLE_RATE}.
+     */
+    public int decimation() {
+        return decimation;
+    }
+
+    public int sampleRate() {
+        return AudioConfig.SAMPLE_RATE / decimation;
+    }
+
+    public int windowSize() {
+        return FingerprintGenerator.WINDOW_SIZE / decimation;
+    }
+
+    public int hopSize() {
+        return FingerprintGenerator.OVERLAP / decimation;
+    }
+
+    /**
+     * Версия формата в позиции, в которой она входит в хеш.
+     */
+    public long hashTag() {
+        return (long) version << VERSION_SHIFT;
+    }
+
+    /**
+     * Версия формата, записанная в хеше.
+     */
+    public static int versionOf(long hash) {
+        return (int) (hash >>> VERSION_SHIFT) & 0xFF;
+    }
+
+    FftPlan windowPlan() {
+        return windowPlan;
+    }
+}
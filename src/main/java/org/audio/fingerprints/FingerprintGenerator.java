@@ -1,7 +1,10 @@
 package org.audio.fingerprints;
 
-import org.audio.AudioConfig;
+import org.audio.utils.AudioKernels;
+import org.audio.utils.Decimator;
 import org.audio.utils.FFT;
+import org.audio.utils.FftPlan;
+import org.audio.utils.LongArray;
 
 import org.audio.models.Peak;
 
@@ -9,55 +12,219 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.stream.*;
 
-@SuppressWarnings("unchecked")
 public class FingerprintGenerator {
-    private static final int WINDOW_SIZE = 4096;
-    private static final int OVERLAP = 2048;
+    static final int WINDOW_SIZE = 4096;
+    static final int OVERLAP = 2048;
     private static final int TARGET_ZONE_SIZE = 5;
     private static final int NUM_PEAKS = 5;
     private static final double MIN_MAGNITUDE_THRESHOLD = 0.02;
-    private static final int FREQ_BINS = 30;
+    private static final double MIN_POWER_THRESHOLD = MIN_MAGNITUDE_THRESHOLD * MIN_MAGNITUDE_THRESHOLD;
+    private static final int PEAKS_PER_BAND = 2;
+    static final int FREQ_BINS = 30;
     private static final double MIN_FREQ = 20;
     private static final double MAX_FREQ = 11000.0;
-    private static final double SILENCE_THRESHOLD = 0.02;
-    private static final double TARGET_RMS = 0.15;
+    static final double SILENCE_THRESHOLD = 0.02;
+    static final double TARGET_RMS = 0.15;
+
+    private static final int WINDOWS_PER_TASK = 32;
+
+    private static final AudioKernels KERNELS = AudioKernels.get();
+    private static final ThreadLocal<FingerprintWorkspace> WORKSPACE =
+            ThreadLocal.withInitial(() -> newWorkspace(FingerprintPrecision.DOUBLE));
+    private static final ThreadLocal<FingerprintWorkspace> FLOAT_WORKSPACE =
+            ThreadLocal.withInitial(() -> newWorkspace(FingerprintPrecision.FLOAT));
 
     private static final ExecutorService executor = Executors.newWorkStealingPool();
 
+    static FingerprintWorkspace newWorkspace() {
+        return newWorkspace(FingerprintPrecision.DOUBLE);
+    }
+
+    static FingerprintWorkspace newWorkspace(FingerprintPrecision precision) {
+        return new FingerprintWorkspace(precision, WINDOW_SIZE, FREQ_BINS, PEAKS_PER_BAND, NUM_PEAKS);
+    }
+
+    public static LongArray generateFingerprintHashes(double[] audioData) {
+        return generateFingerprintHashes(audioData, FingerprintFormat.SR_44100);
+    }
+
+    /**
+     * Строит хеши в заданном формате. Для форматов с пониженной частотой сигнал сначала
+     * фильтруется и прореживается в новый массив, иначе нормализуется на месте.
+     */
+    public static LongArray generateFingerprintHashes(double[] audioData, FingerprintFormat format) {
+        if (format.decimation() > 1) {
+            audioData = Decimator.decimate(audioData, format.decimation());
+        }
+        double[] samples = audioData;
+        normalizeVolume(samples);
+        boolean[] activeRegions = detectActiveRegions(samples.length, format, (start, end) -> {
+            double sum = 0;
+            for (int j = start; j < end; j++) {
+                sum += Math.abs(samples[j]);
+            }
+            return sum;
+        });
+        return processAudioWindows(samples.length, activeRegions, frameSource(samples), format, WORKSPACE);
+    }
+
+    /**
+     * Вариант {@link #generateFingerprintHashes(double[])} одинарной точности: сигнал, окно,
+     * спектр и мощности хранятся во float. Массив нормализуется на месте.
+     */
+    public static LongArray generateFingerprintHashes(float[] audioData) {
+        return generateFingerprintHashes(audioData, FingerprintFormat.SR_44100);
+    }
+
+    public static LongArray generateFingerprintHashes(float[] audioData, FingerprintFormat format) {
+        if (format.decimation() > 1) {
+            audioData = Decimator.decimate(audioData, format.decimation());
+        }
+        float[] samples = audioData;
+        normalizeVolume(samples);
+        boolean[] activeRegions = detectActiveRegions(samples.length, format, (start, end) -> {
+            double sum = 0;
+            for (int j = start; j < end; j++) {
+                sum += Math.abs(samples[j]);
+            }
+            return sum;
+        });
+        return processAudioWindows(samples.length, activeRegions,
+                (start, length, workspace) -> System.arraycopy(samples, start, workspace.floatFrame, 0, length),
+                format, FLOAT_WORKSPACE);
+    }
+
+    /**
+     * Хеши массива, совпадающие с хешами {@link StreamingFingerprinter} той же точности и
+     * формата: громкость каждого блока длиной в шаг окна нормализуется по RMS всех отсчётов
+     * до его конца, активность блока оценивается после нормализации. Бегущая сумма квадратов
+     * считается одним последовательным проходом, а нормализация блоков и анализ окон идут
+     * параллельно, как в {@link #generateFingerprintHashes(double[], FingerprintFormat)}.
+     * Вход не меняется.
+     */
+    public static LongArray generateStreamingHashes(double[] audioData, FingerprintPrecision precision,
+                                                    FingerprintFormat format) {
+        if (format.hopSize() * 2 != format.windowSize()) {
+            throw new IllegalStateException("Streaming requires a hop of half a window");
+        }
+        // Потоковый режим прореживает в double при любой точности
+        double[] samples = format.decimation() > 1 ? Decimator.decimate(audioData, format.decimation()) : audioData;
+        int hop = format.hopSize();
+        int blockCount = (samples.length + hop - 1) / hop;
+        double[] gains = runningGains(samples, hop, blockCount);
+        boolean[] activeRegions = new boolean[samples.length];
+
+        if (precision == FingerprintPrecision.FLOAT) {
+            float[] normalized = new float[samples.length];
+            IntStream.range(0, blockCount).parallel().forEach(b -> {
+                int start = b * hop;
+                int end = Math.min(start + hop, samples.length);
+                double gain = gains[b];
+                float floatGain = (float) gain;
+                double sum = 0;
+                for (int i = start; i < end; i++) {
+                    float sample = (float) samples[i];
+                    if (gain != 1.0) {
+                        sample = Math.min(Math.max(sample * floatGain, -1.0f), 1.0f);
+                    }
+                    normalized[i] = sample;
+                    sum += Math.abs(sample);
+                }
+                Arrays.fill(activeRegions, start, end, (sum / (end - start)) > SILENCE_THRESHOLD);
+            });
+            return processAudioWindows(normalized.length, activeRegions,
+                    (start, length, workspace) -> System.arraycopy(normalized, start, workspace.floatFrame, 0, length),
+                    format, FLOAT_WORKSPACE);
+        }
+
+        double[] normalized = new double[samples.length];
+        IntStream.range(0, blockCount).parallel().forEach(b -> {
+            int start = b * hop;
+            int end = Math.min(start + hop, samples.length);
+            double gain = gains[b];
+            double sum = 0;
+            for (int i = start; i < end; i++) {
+                double sample = gain == 1.0 ? samples[i] : Math.min(Math.max(samples[i] * gain, -1.0), 1.0);
+                normalized[i] = sample;
+                sum += Math.abs(sample);
+            }
+            Arrays.fill(activeRegions, start, end, (sum / (end - start)) > SILENCE_THRESHOLD);
+        });
+        return processAudioWindows(normalized.length, activeRegions, frameSource(normalized), format, WORKSPACE);
+    }
+
+    /**
+     * Усиление каждого блока по RMS отсчётов от начала сигнала до конца блока; сумма
+     * квадратов накапливается в том же порядке, что и в {@link StreamingFingerprinter}.
+     */
+    private static double[] runningGains(double[] samples, int hop, int blockCount) {
+        double[] gains = new double[blockCount];
+        double sumOfSquares = 0;
+        for (int b = 0; b < blockCount; b++) {
+            int end = Math.min((b + 1) * hop, samples.length);
+            for (int i = b * hop; i < end; i++) {
+                sumOfSquares += samples[i] * samples[i];
+            }
+            double rms = Math.sqrt(sumOfSquares / end);
+            gains[b] = rms < 0.001 ? 1.0 : TARGET_RMS / rms;
+        }
+        return gains;
+    }
+
+    /**
+     * Упакованный вариант {@link #generateFingerprintHashes(double[])} для старых вызовов.
+     */
     public static List<Long> generateFingerprints(double[] audioData) {
-        normalizeVolume(audioData);
-        boolean[] activeRegions = detectActiveRegions(audioData);
-        return processAudioWindows(audioData, activeRegions);
+        return generateFingerprintHashes(audioData).asList();
     }
 
     private static void normalizeVolume(double[] audioData) {
-        double sum = 0;
-        for (double sample : audioData) {
-            sum += sample * sample;
-        }
+        double sum = KERNELS.sumOfSquares(audioData, 0, audioData.length);
         double rms = Math.sqrt(sum / audioData.length);
 
         if (rms < 0.001) return;
 
         double gain = TARGET_RMS / rms;
-        for (int i = 0; i < audioData.length; i++) {
-            audioData[i] = Math.min(Math.max(audioData[i] * gain, -1.0), 1.0);
-        }
+        KERNELS.scaleAndClamp(audioData, audioData.length, gain);
     }
 
-    private static boolean[] detectActiveRegions(double[] audioData) {
-        boolean[] active = new boolean[audioData.length];
-        int regionSize = WINDOW_SIZE / 2;
-        int numRegions = (audioData.length + regionSize - 1) / regionSize;
+    private static void normalizeVolume(float[] audioData) {
+        double sum = KERNELS.sumOfSquares(audioData, 0, audioData.length);
+        double rms = Math.sqrt(sum / audioData.length);
+
+        if (rms < 0.001) return;
+
+        float gain = (float) (TARGET_RMS / rms);
+        KERNELS.scaleAndClamp(audioData, audioData.length, gain);
+    }
+
+    /**
+     * Сумма модулей отсчётов [start, end); отдельная реализация на каждый тип массива.
+     */
+    private interface AbsoluteSum {
+        double sum(int start, int end);
+    }
+
+    /**
+     * Копирует length отсчётов сигнала, начиная со start, в кадр рабочего пространства.
+     */
+    private interface FrameSource {
+        void copy(int start, int length, FingerprintWorkspace workspace);
+    }
+
+    private static FrameSource frameSource(double[] audioData) {
+        return (start, length, workspace) -> System.arraycopy(audioData, start, workspace.frame, 0, length);
+    }
+
+    private static boolean[] detectActiveRegions(int sampleCount, FingerprintFormat format, AbsoluteSum absoluteSum) {
+        boolean[] active = new boolean[sampleCount];
+        int regionSize = format.windowSize() / 2;
+        int numRegions = (sampleCount + regionSize - 1) / regionSize;
 
         IntStream.range(0, numRegions).parallel().forEach(i -> {
             int start = i * regionSize;
-            int end = Math.min(start + regionSize, audioData.length);
-            double sum = 0;
-
-            for (int j = start; j < end; j++) {
-                sum += Math.abs(audioData[j]);
-            }
+            int end = Math.min(start + regionSize, sampleCount);
+            double sum = absoluteSum.sum(start, end);
 
             boolean isActive = (sum / (end - start)) > SILENCE_THRESHOLD;
             Arrays.fill(active, start, end, isActive);
@@ -66,23 +233,58 @@ public class FingerprintGenerator {
         return active;
     }
 
-    private static List<Long> processAudioWindows(double[] audioData, boolean[] activeRegions) {
-        double[] hannWindow = precomputeHannWindow(WINDOW_SIZE);
+    private static LongArray processAudioWindows(int sampleCount, boolean[] activeRegions, FrameSource source,
+                                                 FingerprintFormat format,
+                                                 ThreadLocal<FingerprintWorkspace> workspaces) {
+        int hop = format.hopSize();
+        int windowCount = (sampleCount + hop - 1) / hop;
+        int taskCount = (windowCount + WINDOWS_PER_TASK - 1) / WINDOWS_PER_TASK;
 
-        return IntStream.range(0, (audioData.length + OVERLAP - 1) / OVERLAP)
+        long[][] taskHashes = new long[taskCount][];
+        IntStream.range(0, taskCount)
                 .parallel()
-                .mapToObj(i -> {
-                    int start = i * OVERLAP;
-                    int end = Math.min(start + WINDOW_SIZE, audioData.length);
+                .forEach(task -> {
+                    int first = task * WINDOWS_PER_TASK;
+                    int last = Math.min(first + WINDOWS_PER_TASK, windowCount);
+                    taskHashes[task] = processWindowRange(sampleCount, activeRegions, source, format, first, last,
+                            workspaces.get());
+                });
+
+        int total = 0;
+        for (long[] hashes : taskHashes) {
+            total += hashes.length;
+        }
+        LongArray result = new LongArray(total);
+        for (long[] hashes : taskHashes) {
+            result.addAll(hashes);
+        }
+        return result;
+    }
 
-                    if (!isRegionActive(activeRegions, start, end)) {
-                        return Collections.<Long>emptyList();
-                    }
+    /**
+     * Обрабатывает окна [first, last) в буферах рабочего пространства.
+     * Выделяется только итоговый массив хешей диапазона.
+     */
+    static long[] processWindowRange(double[] audioData, boolean[] activeRegions,
+                                     int first, int last, FingerprintWorkspace workspace) {
+        return processWindowRange(audioData.length, activeRegions, frameSource(audioData), FingerprintFormat.SR_44100,
+                first, last, workspace);
+    }
 
-                    return processWindow(Arrays.copyOfRange(audioData, start, end), hannWindow, start);
-                })
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
+    private static long[] processWindowRange(int sampleCount, boolean[] activeRegions, FrameSource source,
+                                             FingerprintFormat format, int first, int last,
+                                             FingerprintWorkspace workspace) {
+        for (int i = first; i < last; i++) {
+            int start = i * format.hopSize();
+            int end = Math.min(start + format.windowSize(), sampleCount);
+
+            if (isRegionActive(activeRegions, start, end)) {
+                source.copy(start, end - start, workspace);
+                analyzeFrame(end - start, start, format, workspace);
+                generateHashesFromPeaks(format, workspace);
+            }
+        }
+        return workspace.drainHashes();
     }
 
     private static boolean isRegionActive(boolean[] activeRegions, int start, int end) {
@@ -94,99 +296,188 @@ public class FingerprintGenerator {
         return false;
     }
 
-    private static List<Long> processWindow(double[] window, double[] hannWindow, int windowOffset) {
-        applyWindow(window, hannWindow);
-        FFT.Complex[] fftOutput = computeFFT(window);
-        List<Peak> peaks = findSignificantPeaks(fftOutput, windowOffset);
-        return generateHashesFromPeaks(peaks);
+    private static void computeWindowPeaks(double[] audioData, int start, int end, FingerprintWorkspace workspace) {
+        System.arraycopy(audioData, start, workspace.frame, 0, end - start);
+        analyzeFrame(end - start, start, FingerprintFormat.SR_44100, workspace);
     }
 
-    private static FFT.Complex[] computeFFT(double[] window) {
-        FFT.Complex[] fftInput = new FFT.Complex[window.length];
-        for (int i = 0; i < window.length; i++) {
-            fftInput[i] = new FFT.Complex(window[i], 0);
+    /**
+     * Применяет окно Ханна к первым length отсчётам кадра рабочего пространства и выбирает
+     * пики в половине спектра, дополненного нулями до степени двойки. Кадр, спектр и
+     * мощности берутся в точности рабочего пространства.
+     *
+     * @param windowOffset индекс первого отсчёта окна в сигнале с частотой формата
+     */
+    static void analyzeFrame(int length, int windowOffset, FingerprintFormat format, FingerprintWorkspace workspace) {
+        FftPlan windowPlan = format.windowPlan();
+        FftPlan plan = length == windowPlan.size() ? windowPlan : FftPlan.forSize(FFT.nextPowerOfTwo(length));
+        int n = plan.size();
+        double sampleRate = format.sampleRate();
+
+        if (workspace.precision == FingerprintPrecision.FLOAT) {
+            float[] frame = workspace.floatFrame;
+            windowPlan.applyHannWindow(frame, length);
+            FFT.realFft(frame, length, plan, workspace.floatRe, workspace.floatIm);
+            KERNELS.power(workspace.floatRe, workspace.floatIm, workspace.floatPower, n / 2);
+            collectBandPeaks(workspace.floatPower, n, sampleRate, workspace);
+        } else {
+            double[] frame = workspace.frame;
+            windowPlan.applyHannWindow(frame, length);
+            FFT.realFft(frame, length, plan, workspace.re, workspace.im);
+            KERNELS.power(workspace.re, workspace.im, workspace.power, n / 2);
+            collectBandPeaks(workspace.power, n, sampleRate, workspace);
         }
-        return FFT.fftWithPadding(fftInput);
+        selectWindowPeaks(n, windowOffset, format.sampleRate(), workspace);
     }
 
-    private static List<Peak> findSignificantPeaks(FFT.Complex[] spectrum, int windowOffset) {
-        List<Peak>[] bandPeaks = new List[FREQ_BINS];
-        Arrays.setAll(bandPeaks, i -> new ArrayList<>());
+    /**
+     * Оставляет до {@code PEAKS_PER_BAND} сильнейших локальных максимумов мощности в каждой полосе.
+     * Вставка по строгому неравенству сохраняет порядок равных пиков, как стабильная сортировка.
+     */
+    private static void collectBandPeaks(double[] power, int n, double sampleRate, FingerprintWorkspace workspace) {
+        int bins = n / 2;
+        int[] bandBins = workspace.bandBins;
+        float[] bandAmplitudes = workspace.bandAmplitudes;
+        Arrays.fill(bandBins, -1);
 
-        for (int i = 1; i < spectrum.length / 2 - 1; i++) {
-            double freq = i * (double) AudioConfig.SAMPLE_RATE / spectrum.length;
-            if (freq < MIN_FREQ || freq > MAX_FREQ) continue;
+        double maxFreq = maxFrequency(sampleRate);
 
-            double mag = spectrum[i].abs();
-            if (mag < MIN_MAGNITUDE_THRESHOLD) continue;
+        for (int i = 1; i < bins - 1; i++) {
+            double freq = i * sampleRate / n;
+            if (freq < MIN_FREQ || freq > maxFreq) continue;
 
-            if (mag > spectrum[i-1].abs() && mag > spectrum[i+1].abs()) {
-                int band = (int)((freq - MIN_FREQ) / (MAX_FREQ - MIN_FREQ) * FREQ_BINS);
-                band = Math.min(Math.max(band, 0), FREQ_BINS - 1);
+            double p = power[i];
+            if (p < MIN_POWER_THRESHOLD) continue;
 
-
-                float timeInSeconds = (float)(windowOffset + i) / AudioConfig.SAMPLE_RATE;
-                bandPeaks[band].add(new Peak((float)freq, (float)mag, timeInSeconds));
+            if (p > power[i - 1] && p > power[i + 1]) {
+                insertTop(bandBins, bandAmplitudes, bandOf(freq, maxFreq) * PEAKS_PER_BAND, PEAKS_PER_BAND, i, (float) Math.sqrt(p));
             }
         }
+    }
 
-        List<Peak> significantPeaks = new ArrayList<>();
-        for (List<Peak> band : bandPeaks) {
-            if (!band.isEmpty()) {
-                band.sort(Comparator.comparingDouble(Peak::getAmplitude).reversed());
-                significantPeaks.addAll(band.subList(0, Math.min(2, band.size())));
+    private static void collectBandPeaks(float[] power, int n, double sampleRate, FingerprintWorkspace workspace) {
+        int bins = n / 2;
+        int[] bandBins = workspace.bandBins;
+        float[] bandAmplitudes = workspace.bandAmplitudes;
+        Arrays.fill(bandBins, -1);
+
+        double maxFreq = maxFrequency(sampleRate);
+
+        for (int i = 1; i < bins - 1; i++) {
+            double freq = i * sampleRate / n;
+            if (freq < MIN_FREQ || freq > maxFreq) continue;
+
+            float p = power[i];
+            if (p < MIN_POWER_THRESHOLD) continue;
+
+            if (p > power[i - 1] && p > power[i + 1]) {
+                insertTop(bandBins, bandAmplitudes, bandOf(freq, maxFreq) * PEAKS_PER_BAND, PEAKS_PER_BAND, i, (float) Math.sqrt(p));
             }
         }
-
-        significantPeaks.sort(Comparator.comparingDouble(Peak::getAmplitude).reversed());
-        return significantPeaks.subList(0, Math.min(NUM_PEAKS, significantPeaks.size()));
     }
 
-    private static List<Long> generateHashesFromPeaks(List<Peak> peaks) {
-        List<Long> hashes = new ArrayList<>();
-        int peakCount = peaks.size();
+    /**
+     * Верхняя граница полос: {@code MAX_FREQ}, но не выше частоты Найквиста. В формате
+     * 11025 Гц полосы делят 20–5512 Гц, иначе половина из них лежала бы выше Найквиста
+     * и никогда не получала пиков.
+     */
+    static double maxFrequency(double sampleRate) {
+        return Math.min(MAX_FREQ, sampleRate / 2);
+    }
 
-        for (int i = 0; i < peakCount; i++) {
-            Peak anchor = peaks.get(i);
-            int end = Math.min(i + TARGET_ZONE_SIZE, peakCount);
+    static int bandOf(double freq, double maxFreq) {
+        int band = (int)((freq - MIN_FREQ) / (maxFreq - MIN_FREQ) * FREQ_BINS);
+        return Math.min(Math.max(band, 0), FREQ_BINS - 1);
+    }
 
-            for (int j = i + 1; j < end; j++) {
-                Peak point = peaks.get(j);
-                long hash = ((long)(anchor.getFrequency() / 10) & 0xFFFF) << 32 |
-                        ((long)(point.getFrequency() / 10) & 0xFFFF) << 16 |
-                        ((long)((point.getTime() - anchor.getTime()) * 1000) & 0xFFFF);
-                hashes.add(hash);
+    /**
+     * Выбирает до {@code NUM_PEAKS} сильнейших пиков окна из лучших пиков полос.
+     * Отбор идёт вставкой в массивы фиксированного размера без сортировок и объектов.
+     */
+    private static void selectWindowPeaks(int n, int windowOffset, int sampleRate, FingerprintWorkspace workspace) {
+        int[] bandBins = workspace.bandBins;
+        float[] bandAmplitudes = workspace.bandAmplitudes;
+        long[] peaks = workspace.peaks;
+        float[] peakAmplitudes = workspace.peakAmplitudes;
+        int peakCount = 0;
+        for (int slot = 0; slot < bandBins.length; slot++) {
+            int bin = bandBins[slot];
+            if (bin < 0) continue;
+
+            float amplitude = bandAmplitudes[slot];
+            int pos = peakCount;
+            while (pos > 0 && amplitude > peakAmplitudes[pos - 1]) {
+                pos--;
             }
-        }
+            if (pos >= NUM_PEAKS) continue;
 
-        return hashes;
+            int moved = Math.min(peakCount, NUM_PEAKS - 1) - pos;
+            System.arraycopy(peaks, pos, peaks, pos + 1, moved);
+            System.arraycopy(peakAmplitudes, pos, peakAmplitudes, pos + 1, moved);
+
+            float freq = (float) (bin * (double) sampleRate / n);
+            float timeInSeconds = (float)(windowOffset + bin) / sampleRate;
+            peaks[pos] = FingerprintWorkspace.packPeak(freq, timeInSeconds);
+            peakAmplitudes[pos] = amplitude;
+            peakCount = Math.min(peakCount + 1, NUM_PEAKS);
+        }
+        workspace.peakCount = peakCount;
     }
 
-    private static double[] precomputeHannWindow(int size) {
-        double[] window = new double[size];
-        for (int i = 0; i < size; i++) {
-            window[i] = 0.5 * (1 - Math.cos(2 * Math.PI * i / (size - 1)));
+    /**
+     * Вставляет бин в отсортированный по убыванию амплитуды участок [from, from + size),
+     * вытесняя последний элемент. Пустые слоты помечены бином -1.
+     */
+    private static void insertTop(int[] bins, float[] amplitudes, int from, int size, int bin, float amplitude) {
+        int end = from + size;
+        for (int pos = from; pos < end; pos++) {
+            if (bins[pos] < 0 || amplitude > amplitudes[pos]) {
+                for (int k = end - 1; k > pos; k--) {
+                    bins[k] = bins[k - 1];
+                    amplitudes[k] = amplitudes[k - 1];
+                }
+                bins[pos] = bin;
+                amplitudes[pos] = amplitude;
+                return;
+            }
         }
-        return window;
     }
 
-    private static void applyWindow(double[] window, double[] hannWindow) {
-        for (int i = 0; i < window.length; i++) {
-            window[i] *= hannWindow[i];
+    static void generateHashesFromPeaks(FingerprintFormat format, FingerprintWorkspace workspace) {
+        long tag = format.hashTag();
+        long[] peaks = workspace.peaks;
+        int peakCount = workspace.peakCount;
+
+        for (int i = 0; i < peakCount; i++) {
+            float anchorFrequency = FingerprintWorkspace.peakFrequency(peaks[i]);
+            float anchorTime = FingerprintWorkspace.peakTime(peaks[i]);
+            int end = Math.min(i + TARGET_ZONE_SIZE, peakCount);
+
+            for (int j = i + 1; j < end; j++) {
+                float pointFrequency = FingerprintWorkspace.peakFrequency(peaks[j]);
+                float pointTime = FingerprintWorkspace.peakTime(peaks[j]);
+                long hash = tag |
+                        ((long)(anchorFrequency / 10) & 0xFFFF) << 32 |
+                        ((long)(pointFrequency / 10) & 0xFFFF) << 16 |
+                        ((long)((pointTime - anchorTime) * 1000) & 0xFFFF);
+                workspace.addHash(hash);
+            }
         }
     }
 
     public static List<Peak> extractPeaks(double[] audioData) {
-        double[] hannWindow = precomputeHannWindow(WINDOW_SIZE);
+        FingerprintWorkspace workspace = WORKSPACE.get();
         List<Peak> allPeaks = new ArrayList<>();
         for (int i = 0; i < (audioData.length + OVERLAP - 1) / OVERLAP; i++) {
             int start = i * OVERLAP;
             int end = Math.min(start + WINDOW_SIZE, audioData.length);
-            double[] window = Arrays.copyOfRange(audioData, start, end);
-            applyWindow(window, hannWindow);
-            FFT.Complex[] fftOutput = computeFFT(window);
-            allPeaks.addAll(findSignificantPeaks(fftOutput, start));
+            computeWindowPeaks(audioData, start, end, workspace);
+            for (int k = 0; k < workspace.peakCount; k++) {
+                long peak = workspace.peaks[k];
+                allPeaks.add(new Peak(FingerprintWorkspace.peakFrequency(peak), workspace.peakAmplitudes[k],
+                        FingerprintWorkspace.peakTime(peak)));
+            }
         }
         return allPeaks;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package org.audio.fingerprints;
+
+/**
+ * Точность вычислений конвейера отпечатков: отсчёты, окно, спектр и мощности бинов.
+ * {@link #FLOAT} вдвое уменьшает память под сигнал и буферы окна; хеши совпадают
+ * с {@link #DOUBLE}, кроме редких пиков на границе порога или с почти равными амплитудами.
+ */
+public enum FingerprintPrecision {
+    DOUBLE,
+    FLOAT
+}
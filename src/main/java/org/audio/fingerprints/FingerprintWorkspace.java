@@ -0,0 +1,104 @@
+package org.audio.fingerprints;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Переиспользуемые буферы для обработки окон одним потоком: кадр, половина спектра,
+ * мощности бинов, лучшие пики по полосам, выбранные пики окна и накопитель хешей.
+ * Буферы сигнала и спектра создаются только для выбранной точности, вторая пара равна null.
+ * Экземпляр не потокобезопасен — каждый рабочий поток получает свой через
+ * {@link FingerprintGenerator}.
+ */
+final class FingerprintWorkspace {
+    final FingerprintPrecision precision;
+
+    final double[] frame;
+    final double[] re;
+    final double[] im;
+    final double[] power;
+
+    final float[] floatFrame;
+    final float[] floatRe;
+    final float[] floatIm;
+    final float[] floatPower;
+
+    // Два лучших пика каждой полосы: бин и амплитуда, -1 в бине означает пустой слот
+    final int[] bandBins;
+    final float[] bandAmplitudes;
+
+    // Выбранные пики окна в порядке убывания амплитуды, упакованные через packPeak
+    final long[] peaks;
+    final float[] peakAmplitudes;
+    int peakCount;
+
+    private long[] hashes = new long[256];
+    private int hashCount;
+
+    FingerprintWorkspace(FingerprintPrecision precision, int windowSize, int freqBins, int peaksPerBand, int maxPeaks) {
+        this.precision = precision;
+        int bins = windowSize / 2 + 1;
+        boolean useFloat = precision == FingerprintPrecision.FLOAT;
+
+        this.frame = useFloat ? null : new double[windowSize];
+        this.re = useFloat ? null : new double[bins];
+        this.im = useFloat ? null : new double[bins];
+        this.power = useFloat ? null : new double[bins];
+
+        this.floatFrame = useFloat ? new float[windowSize] : null;
+        this.floatRe = useFloat ? new float[bins] : null;
+        this.floatIm = useFloat ? new float[bins] : null;
+        this.floatPower = useFloat ? new float[bins] : null;
+
+        this.bandBins = new int[freqBins * peaksPerBand];
+        this.bandAmplitudes = new float[freqBins * peaksPerBand];
+        this.peaks = new long[maxPeaks];
+        this.peakAmplitudes = new float[maxPeaks];
+    }
+
+    /**
+     * Упаковывает частоту и время пика в один long: биты float частоты в старшей половине,
+     * биты float времени в младшей.
+     */
+    static long packPeak(float frequency, float time) {
+        return (long) Float.floatToRawIntBits(frequency) << 32 | (Float.floatToRawIntBits(time) & 0xFFFFFFFFL);
+    }
+
+    static float peakFrequency(long peak) {
+        return Float.intBitsToFloat((int) (peak >>> 32));
+    }
+
+    static float peakTime(long peak) {
+        return Float.intBitsToFloat((int) peak);
+    }
+
+    void addHash(long hash) {
+        if (hashCount == hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashCount * 2);
+        }
+        hashes[hashCount++] = hash;
+    }
+
+    int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Передаёт накопленные хеши потребителю и очищает накопитель без выделения памяти.
+     */
+    void drainHashes(LongConsumer sink) {
+        for (int i = 0; i < hashCount; i++) {
+            sink.accept(hashes[i]);
+        }
+        hashCount = 0;
+    }
+
+    /**
+     * Возвращает накопленные хеши копией и очищает накопитель.
+     */
+    long[] drainHashes() {
+        long[] result = Arrays.copyOf(hashes, hashCount);
+        hashCount = 0;
+        return result;
+    }
+}
@@ -0,0 +1,259 @@
+package org.audio.fingerprints;
+
+import org.audio.utils.Decimator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+import static org.audio.fingerprints.FingerprintGenerator.SILENCE_THRESHOLD;
+import static org.audio.fingerprints.FingerprintGenerator.TARGET_RMS;
+
+/**
+ * Потоковое построение отпечатков по 16-битному PCM (little-endian, моно).
+ * Отсчёты накапливаются блоками по шагу формата, в кольцевом буфере размером
+ * с окно хранятся два последних блока; каждое заполненное окно сразу
+ * превращается в хеши и отдаётся потребителю. Память — O(окна), а не O(трека).
+ * Для форматов с пониженной частотой вход предварительно проходит через {@link Decimator}.
+ *
+ * <p>В отличие от {@link FingerprintGenerator#generateFingerprintHashes(double[])},
+ * громкость нормализуется по бегущему RMS всех уже прочитанных отсчётов, а активность
+ * блока оценивается сразу после его нормализации. Поэтому на тихих участках хеши могут
+ * немного отличаться от пакетного режима; индекс и запросы должны строиться одним способом.
+ * Для массива в памяти те же хеши параллельно строит
+ * {@link FingerprintGenerator#generateStreamingHashes(double[], FingerprintPrecision, FingerprintFormat)}.
+ *
+ * <p>В режиме {@link FingerprintPrecision#FLOAT} блок, кольцевой буфер и буферы окна
+ * хранятся во float.
+ *
+ * <p>Экземпляр не потокобезопасен и рассчитан на один поток данных.
+ */
+public final class StreamingFingerprinter {
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+
+    private final LongConsumer sink;
+    private final FingerprintWorkspace workspace;
+    private final FingerprintFormat format;
+    private final int blockSize;
+
+    // null для формата без прореживания
+    private final Decimator decimator;
+
+    // Заполнена одна пара буферов — по точности рабочего пространства
+    private final double[] block;
+    private final float[] floatBlock;
+    private int blockFill;
+
+    // Два последних нормализованных блока; блок с номером b лежит в половине b % 2
+    private final double[] ring;
+    private final float[] floatRing;
+    private final boolean[] ringActive = new boolean[2];
+    private long completedBlocks;
+
+    private double sumOfSquares;
+    private long filteredSamples;
+    private long samplesSeen;
+
+    private int pendingLowByte = -1;
+    private boolean finished;
+
+    public StreamingFingerprinter(LongConsumer sink) {
+        this(sink, FingerprintPrecision.DOUBLE);
+    }
+
+    public StreamingFingerprinter(LongConsumer sink, FingerprintPrecision precision) {
+        this(sink, precision, FingerprintFormat.SR_44100);
+    }
+
+    public StreamingFingerprinter(LongConsumer sink, FingerprintPrecision precision, FingerprintFormat format) {
+        if (format.hopSize() * 2 != format.windowSize()) {
+            throw new IllegalStateException("Streaming requires a hop of half a window");
+        }
+        this.sink = sink;
+        this.workspace = FingerprintGenerator.newWorkspace(precision);
+        this.format = format;
+        this.blockSize = format.hopSize();
+        this.decimator = format.decimation() > 1 ? new Decimator(format.decimation(), this::acceptFiltered) : null;
+
+        boolean useFloat = precision == FingerprintPrecision.FLOAT;
+        this.block = useFloat ? null : new double[blockSize];
+        this.ring = useFloat ? null : new double[format.windowSize()];
+        this.floatBlock = useFloat ? new float[blockSize] : null;
+        this.floatRing = useFloat ? new float[format.windowSize()] : null;
+    }
+
+    /**
+     * Читает поток до конца и отдаёт хеши в sink.
+     *
+     * @return число прочитанных отсчётов
+     */
+    public static long fingerprint(InputStream pcm, LongConsumer sink) throws IOException {
+        return fingerprint(pcm, sink, FingerprintPrecision.DOUBLE);
+    }
+
+    public static long fingerprint(InputStream pcm, LongConsumer sink, FingerprintPrecision precision)
+            throws IOException {
+        return fingerprint(pcm, sink, precision, FingerprintFormat.SR_44100);
+    }
+
+    public static long fingerprint(InputStream pcm, LongConsumer sink, FingerprintPrecision precision,
+                                   FingerprintFormat format) throws IOException {
+        StreamingFingerprinter fingerprinter = new StreamingFingerprinter(sink, precision, format);
+        byte[] buffer = new byte[READ_BUFFER_BYTES];
+        int read;
+        while ((read = pcm.read(buffer)) != -1) {
+            fingerprinter.write(buffer, 0, read);
+        }
+        fingerprinter.finish();
+        return fingerprinter.samplesSeen;
+    }
+
+    /**
+     * Принимает очередную порцию байтов PCM; нечётный байт в конце порции
+     * дожидается пары из следующей.
+     */
+    public void write(byte[] pcm, int offset, int length) {
+        ensureOpen();
+        int i = offset;
+        int end = offset + length;
+
+        if (pendingLowByte >= 0 && i < end) {
+            accept(decode(pendingLowByte, pcm[i++]));
+            pendingLowByte = -1;
+        }
+        for (; i + 1 < end; i += 2) {
+            accept(decode(pcm[i], pcm[i + 1]));
+        }
+        if (i < end) {
+            pendingLowByte = pcm[i] & 0xff;
+        }
+    }
+
+    /**
+     * Принимает один отсчёт в диапазоне [-1, 1] с исходной частотой дискретизации.
+     */
+    public void accept(double sample) {
+        ensureOpen();
+        samplesSeen++;
+        if (decimator != null) {
+            decimator.push(sample);
+        } else {
+            acceptFiltered(sample);
+        }
+    }
+
+    /**
+     * Принимает отсчёт с частотой формата.
+     */
+    private void acceptFiltered(double sample) {
+        if (block != null) {
+            block[blockFill++] = sample;
+        } else {
+            floatBlock[blockFill++] = (float) sample;
+        }
+        sumOfSquares += sample * sample;
+        filteredSamples++;
+
+        if (blockFill == blockSize) {
+            completeBlock(blockSize);
+            blockFill = 0;
+            if (completedBlocks >= 2) {
+                emitWindow(completedBlocks - 2, 2 * blockSize);
+            }
+        }
+    }
+
+    /**
+     * Обрабатывает хвост потока: окна, начинающиеся до конца данных, но не
+     * заполненные целиком, как и в пакетном режиме.
+     */
+    public void finish() {
+        ensureOpen();
+        finished = true;
+        if (decimator != null) {
+            decimator.flush();
+        }
+
+        if (blockFill > 0) {
+            completeBlock(blockFill);
+            if (completedBlocks >= 2) {
+                emitWindow(completedBlocks - 2, blockSize + blockFill);
+            }
+            emitWindow(completedBlocks - 1, blockFill);
+        } else if (completedBlocks >= 1) {
+            emitWindow(completedBlocks - 1, blockSize);
+        }
+    }
+
+    public long samplesSeen() {
+        return samplesSeen;
+    }
+
+    private void completeBlock(int length) {
+        double gain = currentGain();
+        int half = (int) (completedBlocks & 1) * blockSize;
+
+        double sum = 0;
+        if (block != null) {
+            for (int i = 0; i < length; i++) {
+                double sample = gain == 1.0 ? block[i] : Math.min(Math.max(block[i] * gain, -1.0), 1.0);
+                ring[half + i] = sample;
+                sum += Math.abs(sample);
+            }
+        } else {
+            float floatGain = (float) gain;
+            for (int i = 0; i < length; i++) {
+                float sample = gain == 1.0 ? floatBlock[i] : Math.min(Math.max(floatBlock[i] * floatGain, -1.0f), 1.0f);
+                floatRing[half + i] = sample;
+                sum += Math.abs(sample);
+            }
+        }
+
+        ringActive[(int) (completedBlocks & 1)] = (sum / length) > SILENCE_THRESHOLD;
+        completedBlocks++;
+    }
+
+    private double currentGain() {
+        double rms = Math.sqrt(sumOfSquares / filteredSamples);
+        return rms < 0.001 ? 1.0 : TARGET_RMS / rms;
+    }
+
+    /**
+     * Собирает окно, начинающееся с блока firstBlock, из кольцевого буфера в кадр
+     * рабочего пространства и отдаёт его хеши.
+     */
+    private void emitWindow(long firstBlock, int length) {
+        int first = (int) (firstBlock & 1);
+        boolean active = ringActive[first] || (length > blockSize && ringActive[first ^ 1]);
+        if (!active) {
+            return;
+        }
+
+        Object source = ring != null ? ring : floatRing;
+        Object frame = ring != null ? workspace.frame : workspace.floatFrame;
+        int head = Math.min(length, blockSize);
+        System.arraycopy(source, first * blockSize, frame, 0, head);
+        if (length > blockSize) {
+            System.arraycopy(source, (first ^ 1) * blockSize, frame, blockSize, length - blockSize);
+        }
+
+        FingerprintGenerator.analyzeFrame(length, (int) (firstBlock * blockSize), format, workspace);
+        FingerprintGenerator.generateHashesFromPeaks(format, workspace);
+        workspace.drainHashes(sink);
+    }
+
+    private void ensureOpen() {
+        if (finished) {
+            throw new IllegalStateException("Stream is already finished");
+        }
+    }
+
+    private static double decode(int low, byte high) {
+        short sample = (short) ((high << 8) | (low & 0xff));
+        return sample / 32768.0;
+    }
+
+    private static double decode(byte low, byte high) {
+        return decode(low & 0xff, high);
+    }
+}
@@ -9,31 +9,55 @@ public class AudioProcessingResult {
     private final TrackMatch[] matches;
     private final int samplesProcessed;
     private final int audioDurationMs;
+    private final int hashesConsumed;
 
     private AudioProcessingResult(boolean success, String errorMessage,
                                   TrackMatch[] matches, int samplesProcessed,
-                                  int audioDurationMs) {
+                                  int audioDurationMs, int hashesConsumed) {
         this.success = success;
         this.errorMessage = errorMessage;
         this.matches = matches;
         this.samplesProcessed = samplesProcessed;
         this.audioDurationMs = audioDurationMs;
+        this.hashesConsumed = hashesConsumed;
     }
 
     public static AudioProcessingResult success(TrackMatch match, int samplesProcessed, int durationMs) {
-        return new AudioProcessingResult(true, null, new TrackMatch[]{match}, samplesProcessed, durationMs);
+        return success(match, samplesProcessed, durationMs, 0);
+    }
+
+    /**
+     * @param hashesConsumed сколько хешей запроса просмотрено до решения
+     */
+    public static AudioProcessingResult success(TrackMatch match, int samplesProcessed, int durationMs,
+                                                int hashesConsumed) {
+        return new AudioProcessingResult(true, null, new TrackMatch[]{match}, samplesProcessed, durationMs,
+                hashesConsumed);
     }
 
     public static AudioProcessingResult multipleMatches(TrackMatch[] matches, int samplesProcessed, int durationMs) {
-        return new AudioProcessingResult(true, null, matches, samplesProcessed, durationMs);
+        return multipleMatches(matches, samplesProcessed, durationMs, 0);
+    }
+
+    public static AudioProcessingResult multipleMatches(TrackMatch[] matches, int samplesProcessed, int durationMs,
+                                                        int hashesConsumed) {
+        return new AudioProcessingResult(true, null, matches, samplesProcessed, durationMs, hashesConsumed);
     }
 
     public static AudioProcessingResult noMatch() {
-        return new AudioProcessingResult(true, null, new TrackMatch[0], 0, 0);
+        return noMatch(0, 0, 0);
+    }
+
+    /**
+     * Запрос обработан, но трек не найден; hashesConsumed нужен и здесь — без совпадения
+     * запрос обычно просмотрен целиком.
+     */
+    public static AudioProcessingResult noMatch(int samplesProcessed, int durationMs, int hashesConsumed) {
+        return new AudioProcessingResult(true, null, new TrackMatch[0], samplesProcessed, durationMs, hashesConsumed);
     }
 
     public static AudioProcessingResult error(String message) {
-        return new AudioProcessingResult(false, message, null, 0, 0);
+        return new AudioProcessingResult(false, message, null, 0, 0, 0);
     }
 
     // Getters
@@ -42,5 +66,7 @@ public class AudioProcessingResult {
     public TrackMatch[] getMatches() { return matches; }
     public int getSamplesProcessed() { return samplesProcessed; }
     public int getAudioDurationMs() { return audioDurationMs; }
+    /** Сколько хешей запроса просмотрено до решения; 0, если неизвестно. */
+    public int getHashesConsumed() { return hashesConsumed; }
     public boolean hasMatches() { return matches != null && matches.length > 0; }
 }
\ No newline at end of file
@@ -11,9 +11,18 @@ public class TrackMatch implements Comparable<TrackMatch> {
     private final int matchScore;
     private final float confidence;
     private final long offsetMs;
+    private final int hashesConsumed;
 
     public TrackMatch(String trackId, String trackTitle,
                       int matchScore, float confidence, long offsetMs) {
+        this(trackId, trackTitle, matchScore, confidence, offsetMs, 0);
+    }
+
+    /**
+     * @param hashesConsumed сколько хешей запроса просмотрено до решения; 0, если неизвестно
+     */
+    public TrackMatch(String trackId, String trackTitle,
+                      int matchScore, float confidence, long offsetMs, int hashesConsumed) {
         if (confidence < 0 || confidence > 1) {
             throw new IllegalArgumentException("Confidence must be between 0 and 1");
         }
@@ -22,6 +31,7 @@ public class TrackMatch implements Comparable<TrackMatch> {
         this.matchScore = matchScore;
         this.confidence = confidence;
         this.offsetMs = offsetMs;
+        this.hashesConsumed = hashesConsumed;
     }
 
     public String getTrackId() {
@@ -44,6 +54,10 @@ public class TrackMatch implements Comparable<TrackMatch> {
         return offsetMs;
     }
 
+    public int getHashesConsumed() {
+        return hashesConsumed;
+    }
+
     @Override
     public int compareTo(TrackMatch other) {
         int scoreComparison = Integer.compare(other.matchScore, this.matchScore);
@@ -57,11 +71,16 @@ public class TrackMatch implements Comparable<TrackMatch> {
         return confidence >= minConfidence;
     }
 
+    /**
+     * Уверенность — доля совпавших среди просмотренных хешей запроса.
+     *
+     * @param totalHashes сколько хешей запроса просмотрено
+     */
     public static TrackMatch create(String trackId, String trackTitle,
                                     int matches, int totalHashes, long offset) {
         float confidence = totalHashes > 0 ? (float) matches / totalHashes : 0;
         confidence = Math.max(0, Math.min(1, confidence));
-        return new TrackMatch(trackId, trackTitle, matches, confidence, offset);
+        return new TrackMatch(trackId, trackTitle, matches, confidence, offset, totalHashes);
     }
 
     @Override
@@ -3,10 +3,13 @@ package org.audio.services;
 import org.audio.db.FingerprintDatabase;
 import org.audio.models.AudioProcessingResult;
 import org.audio.models.TrackMatch;
+import org.audio.utils.AudioKernels;
+import org.audio.utils.LongArray;
 
-import java.util.Arrays;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Optional;
+import java.util.function.Function;
 
 public class AudioMatchingService implements  IAudioMatchingService {
     private static final int SAMPLE_RATE = 44100; // 44.1 kHz
@@ -32,17 +35,18 @@ public class AudioMatchingService implements  IAudioMatchingService {
 
         try {
             double[] samples = transformAudioToSamples(audioData);
-            List<Long> queryHashes = fingerprintService.generateFingerprints(samples);
+            LongArray queryHashes = fingerprintService.generateFingerprintHashes(samples);
 
             Optional<TrackMatch> match = fingerprintDatabase.findBestMatch(queryHashes);
 
+            int sampleCount = audioData.length / BYTES_PER_SAMPLE;
+            int durationMs = calculateAudioDurationMs(sampleCount);
+            int consumed = hashesConsumed(match, queryHashes);
             if (match.isPresent()) {
-                int sampleCount = audioData.length / BYTES_PER_SAMPLE;
-                int durationMs = calculateAudioDurationMs(sampleCount);
-                return AudioProcessingResult.success(match.get(), sampleCount, durationMs);
+                return AudioProcessingResult.success(match.get(), sampleCount, durationMs, consumed);
             }
 
-            return AudioProcessingResult.noMatch();
+            return AudioProcessingResult.noMatch(sampleCount, durationMs, consumed);
         } catch (Exception e) {
             return AudioProcessingResult.error("Error processing audio: " + e.getMessage());
         }
@@ -59,13 +63,13 @@ public class AudioMatchingService implements  IAudioMatchingService {
 
         try {
             double[] samples = transformAudioToSamples(audioData);
-            List<Long> queryHashes = fingerprintService.generateFingerprints(samples);
+            LongArray queryHashes = fingerprintService.generateFingerprintHashes(samples);
 
             TrackMatch[] matches = fingerprintDatabase.bestMatches(queryHashes, maxResults, minConfidence);
             int sampleCount = audioData.length / BYTES_PER_SAMPLE;
             int durationMs = calculateAudioDurationMs(sampleCount);
 
-            return AudioProcessingResult.multipleMatches(matches, sampleCount, durationMs);
+            return AudioProcessingResult.multipleMatches(matches, sampleCount, durationMs, queryHashes.size());
         } catch (Exception e) {
             return AudioProcessingResult.error("Error processing audio: " + e.getMessage());
         }
@@ -81,18 +85,120 @@ public class AudioMatchingService implements  IAudioMatchingService {
         }
 
         double[] samples = transformAudioToSamples(audioData);
-        List<Long> fingerprints = fingerprintService.generateFingerprints(samples);
+        LongArray fingerprints = fingerprintService.generateFingerprintHashes(samples);
         fingerprintDatabase.addTrack(trackId, title, fingerprints);
     }
 
-    private double[] transformAudioToSamples(byte[] audioData) {
-        double[] samples = new double[audioData.length / 2];
+    /**
+     * Идентифицирует трек по потоку PCM, не загружая его в память целиком.
+     */
+    @Override
+    public AudioProcessingResult identifyTrack(InputStream audioStream) {
+        return identifyTrack(audioStream, fingerprintDatabase::findBestMatch);
+    }
+
+    /**
+     * Идентифицирует трек по потоку PCM с заданным допуском по Хэммингу.
+     */
+    @Override
+    public AudioProcessingResult identifyTrack(InputStream audioStream, int maxHammingDistance) {
+        return identifyTrack(audioStream, queryHashes -> fingerprintDatabase.findBestMatch(queryHashes, maxHammingDistance));
+    }
+
+    /**
+     * Находит лучшие совпадения по потоку PCM.
+     */
+    @Override
+    public AudioProcessingResult findBestMatches(InputStream audioStream, int maxResults, float minConfidence) {
+        return findBestMatches(audioStream,
+                queryHashes -> fingerprintDatabase.bestMatches(queryHashes, maxResults, minConfidence));
+    }
+
+    /**
+     * Находит лучшие совпадения по потоку PCM с заданным допуском по Хэммингу.
+     */
+    @Override
+    public AudioProcessingResult findBestMatches(InputStream audioStream, int maxResults, float minConfidence,
+                                                 int maxHammingDistance) {
+        return findBestMatches(audioStream, queryHashes ->
+                fingerprintDatabase.bestMatches(queryHashes, maxResults, minConfidence, maxHammingDistance));
+    }
 
-        for (int i = 0; i < samples.length; i++) {
-            short sample = (short) ((audioData[2*i+1] << 8) | (audioData[2*i] & 0xff));
-            samples[i] = sample / 32768.0;
+    /**
+     * Регистрирует трек по потоку PCM; в памяти держатся только хеши, а не сэмплы.
+     */
+    @Override
+    public void registerTrack(String trackId, String title, InputStream audioStream) throws IOException {
+        if (trackId == null || title == null || audioStream == null) {
+            throw new IllegalArgumentException("Parameters cannot be null");
         }
 
+        LongArray fingerprints = new LongArray();
+        fingerprintService.streamFingerprints(audioStream, fingerprints::add);
+        fingerprintDatabase.addTrack(trackId, title, fingerprints);
+    }
+
+    private AudioProcessingResult identifyTrack(InputStream audioStream,
+                                                Function<LongArray, Optional<TrackMatch>> matcher) {
+        if (audioStream == null) {
+            return AudioProcessingResult.error("Audio data is empty");
+        }
+
+        try {
+            LongArray queryHashes = new LongArray();
+            int sampleCount = (int) fingerprintService.streamFingerprints(audioStream, queryHashes::add);
+            if (sampleCount == 0) {
+                return AudioProcessingResult.error("Audio data is empty");
+            }
+
+            Optional<TrackMatch> match = matcher.apply(queryHashes);
+            int durationMs = calculateAudioDurationMs(sampleCount);
+            int consumed = hashesConsumed(match, queryHashes);
+
+            if (match.isPresent()) {
+                return AudioProcessingResult.success(match.get(), sampleCount, durationMs, consumed);
+            }
+
+            return AudioProcessingResult.noMatch(sampleCount, durationMs, consumed);
+        } catch (Exception e) {
+            return AudioProcessingResult.error("Error processing audio: " + e.getMessage());
+        }
+    }
+
+    private AudioProcessingResult findBestMatches(InputStream audioStream, Function<LongArray, TrackMatch[]> matcher) {
+        if (audioStream == null) {
+            return AudioProcessingResult.error("Audio data is empty");
+        }
+
+        try {
+            LongArray queryHashes = new LongArray();
+            int sampleCount = (int) fingerprintService.streamFingerprints(audioStream, queryHashes::add);
+            if (sampleCount == 0) {
+                return AudioProcessingResult.error("Audio data is empty");
+            }
+
+            TrackMatch[] matches = matcher.apply(queryHashes);
+            return AudioProcessingResult.multipleMatches(matches, sampleCount, calculateAudioDurationMs(sampleCount),
+                    queryHashes.size());
+        } catch (Exception e) {
+            return AudioProcessingResult.error("Error processing audio: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Сколько хешей запроса просмотрено. Досрочно обход останавливается, только найдя
+     * лидера, поэтому без совпадения запрос просмотрен целиком; совпадение без этого
+     * числа (0) тоже считается просмотревшим весь запрос.
+     */
+    private static int hashesConsumed(Optional<TrackMatch> match, LongArray queryHashes) {
+        return match.map(TrackMatch::getHashesConsumed)
+                .filter(consumed -> consumed > 0)
+                .orElse(queryHashes.size());
+    }
+
+    private double[] transformAudioToSamples(byte[] audioData) {
+        double[] samples = new double[audioData.length / 2];
+        AudioKernels.get().decodePcm16(audioData, 0, samples, samples.length);
         return samples;
     }
 
@@ -1,23 +1,60 @@
 package org.audio.services;
 
+import org.audio.fingerprints.FingerprintFormat;
 import org.audio.fingerprints.FingerprintGenerator;
+import org.audio.fingerprints.FingerprintPrecision;
+import org.audio.fingerprints.StreamingFingerprinter;
 import org.audio.models.Peak;
+import org.audio.utils.LongArray;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 public class FingerprintService extends FingerprintServiceBase {
     private final FingerprintGenerator fingerprintGenerator;
+    private final FingerprintPrecision precision;
+    private final FingerprintFormat format;
 
     public FingerprintService() {
+        this(FingerprintPrecision.DOUBLE);
+    }
+
+    public FingerprintService(FingerprintPrecision precision) {
+        this(precision, FingerprintFormat.SR_44100);
+    }
+
+    public FingerprintService(FingerprintPrecision precision, FingerprintFormat format) {
         this.fingerprintGenerator = new FingerprintGenerator();
+        this.precision = precision;
+        this.format = format;
+    }
+
+    public FingerprintPrecision getPrecision() {
+        return precision;
+    }
+
+    public FingerprintFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Генерирует аудиоотпечатки для массива сэмплов, обрабатывая окна параллельно.
+     * Нормализация по бегущему RMS та же, что у {@link #streamFingerprints}, и хеши совпадают,
+     * поэтому трек, зарегистрированный одним путём, находится запросом по другому.
+     */
+    @Override
+    public LongArray generateFingerprintHashes(double[] audioSamples) {
+        return FingerprintGenerator.generateStreamingHashes(audioSamples, precision, format);
     }
 
     /**
-     * Генерирует аудиоотпечатки для массива сэмплов.
+     * Строит отпечатки потоково, держа в памяти только текущее окно.
      */
     @Override
-    public List<Long> generateFingerprints(double[] audioSamples) {
-        return FingerprintGenerator.generateFingerprints(audioSamples);
+    public long streamFingerprints(InputStream pcm, LongConsumer sink) throws IOException {
+        return StreamingFingerprinter.fingerprint(pcm, sink, precision, format);
     }
 
     /**
@@ -1,10 +1,40 @@
 package org.audio.services;
 
 import org.audio.models.Peak;
+import org.audio.utils.AudioKernels;
+import org.audio.utils.LongArray;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 public abstract class FingerprintServiceBase {
-    public abstract List<Long> generateFingerprints(double[] audioSamples);
+    public abstract LongArray generateFingerprintHashes(double[] audioSamples);
     public abstract List<Peak> extractPeaks(double[] audioSamples);
+
+    /**
+     * Упакованный адаптер над {@link #generateFingerprintHashes(double[])}.
+     */
+    public List<Long> generateFingerprints(double[] audioSamples) {
+        return generateFingerprintHashes(audioSamples).asList();
+    }
+
+    /**
+     * Строит отпечатки по потоку 16-битного PCM и отдаёт хеши в sink по мере готовности.
+     * Базовая реализация читает поток целиком; наследники могут обрабатывать его по частям.
+     *
+     * @return число прочитанных отсчётов
+     */
+    public long streamFingerprints(InputStream pcm, LongConsumer sink) throws IOException {
+        byte[] audioData = pcm.readAllBytes();
+        double[] samples = new double[audioData.length / 2];
+        AudioKernels.get().decodePcm16(audioData, 0, samples, samples.length);
+
+        LongArray hashes = generateFingerprintHashes(samples);
+        for (int i = 0; i < hashes.size(); i++) {
+            sink.accept(hashes.get(i));
+        }
+        return samples.length;
+    }
 }
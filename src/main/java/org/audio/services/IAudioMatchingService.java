@@ -2,8 +2,18 @@ package org.audio.services;
 
 import org.audio.models.AudioProcessingResult;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 public interface IAudioMatchingService {
     AudioProcessingResult identifyTrack(byte[] audioData);
     AudioProcessingResult findBestMatches(byte[] audioData, int maxResults, float minConfidence);
     void registerTrack(String trackId, String title, byte[] audioData);
+
+    AudioProcessingResult identifyTrack(InputStream audioStream);
+    AudioProcessingResult findBestMatches(InputStream audioStream, int maxResults, float minConfidence);
+    AudioProcessingResult identifyTrack(InputStream audioStream, int maxHammingDistance);
+    AudioProcessingResult findBestMatches(InputStream audioStream, int maxResults, float minConfidence,
+                                          int maxHammingDistance);
+    void registerTrack(String trackId, String title, InputStream audioStream) throws IOException;
 }
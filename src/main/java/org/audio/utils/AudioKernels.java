@@ -0,0 +1,88 @@
+package org.audio.utils;
+
+/**
+ * Плотные циклы аудиоконвейера над примитивными массивами: энергия сигнала,
+ * усиление с ограничением, оконное умножение, мощность спектра и декодирование PCM.
+ * Каждый цикл есть в вариантах для double и float; суммы float-массивов
+ * накапливаются в double.
+ *
+ * <p>Реализация выбирается один раз при старте системным свойством {@code audio.simd}:
+ * {@code true} — векторная через {@code jdk.incubator.vector}, {@code false} — скалярная,
+ * по умолчанию векторная, если модуль подключён ({@code --add-modules jdk.incubator.vector}).
+ * Обе реализации дают одинаковые поэлементные результаты; суммы отличаются только
+ * порядком округления.
+ */
+public interface AudioKernels {
+    String SIMD_PROPERTY = "audio.simd";
+
+    /**
+     * Сумма квадратов x[from..to).
+     */
+    double sumOfSquares(double[] x, int from, int to);
+
+    /**
+     * x[i] = min(max(x[i] * gain, -1), 1) для i &lt; length.
+     */
+    void scaleAndClamp(double[] x, int length, double gain);
+
+    /**
+     * x[i] *= window[i] для i &lt; length.
+     */
+    void multiply(double[] x, double[] window, int length);
+
+    /**
+     * out[i] = re[i]² + im[i]² для i &lt; length.
+     */
+    void power(double[] re, double[] im, double[] out, int length);
+
+    /**
+     * Декодирует count отсчётов 16-битного PCM (little-endian) начиная с байта offset в [-1, 1).
+     */
+    void decodePcm16(byte[] pcm, int offset, double[] out, int count);
+
+    double sumOfSquares(float[] x, int from, int to);
+
+    void scaleAndClamp(float[] x, int length, float gain);
+
+    void multiply(float[] x, float[] window, int length);
+
+    void power(float[] re, float[] im, float[] out, int length);
+
+    void decodePcm16(byte[] pcm, int offset, float[] out, int count);
+
+    static AudioKernels get() {
+        return Holder.INSTANCE;
+    }
+
+    final class Holder {
+        private static final AudioKernels INSTANCE = select();
+
+        private Holder() {
+        }
+
+        private static AudioKernels select() {
+            String mode = System.getProperty(SIMD_PROPERTY, "auto");
+            boolean vectorAvailable = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+            if ("false".equalsIgnoreCase(mode) || !vectorAvailable) {
+                if ("true".equalsIgnoreCase(mode)) {
+                    throw new IllegalStateException(
+                            "audio.simd=true requires --add-modules jdk.incubator.vector");
+                }
+                return new ScalarAudioKernels();
+            }
+
+            // Векторная реализация грузится только при наличии модуля
+            try {
+                return (AudioKernels) Class.forName("org.audio.utils.VectorAudioKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                if ("true".equalsIgnoreCase(mode)) {
+                    throw new IllegalStateException("Vector kernels are unavailable", e);
+                }
+                return new ScalarAudioKernels();
+            }
+        }
+    }
+}
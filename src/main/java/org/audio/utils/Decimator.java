@@ -0,0 +1,233 @@
+package org.audio.utils;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Понижение частоты дискретизации в 2^k раз каскадом полуполосных КИХ-фильтров
+ * (sinc с окном Блэкмана) с прореживанием вдвое на каждом звене. У полуполосного фильтра
+ * все чётные коэффициенты, кроме центрального, равны нулю, а остальные симметричны,
+ * поэтому звено стоит около восьми умножений на входной отсчёт.
+ * Фильтр с нулевой фазой: выходной отсчёт j центрирован на входном 2j, края
+ * сигнала дополняются нулями.
+ *
+ * <p>Пакетный режим — статические {@code decimate}. Потоковый режим — экземпляр с
+ * потребителем выходных отсчётов: {@link #push} и {@link #flush} выдают те же значения,
+ * что и пакетный, с задержкой в половину фильтра. Экземпляр не потокобезопасен.
+ */
+public final class Decimator {
+    // Половина длины фильтра; нечётная, чтобы крайние коэффициенты были ненулевыми
+    private static final int HALF_TAPS = 31;
+    // Центральный коэффициент и коэффициенты при нечётных сдвигах 1, 3, ..., HALF_TAPS
+    private static final double CENTER;
+    private static final double[] TAPS;
+    private static final float FLOAT_CENTER;
+    private static final float[] FLOAT_TAPS;
+
+    static {
+        double[] taps = new double[HALF_TAPS + 1];
+        int length = 2 * HALF_TAPS + 1;
+        double sum = 0;
+        for (int k = 0; k <= HALF_TAPS; k++) {
+            // Срез на половине входной частоты Найквиста, то есть на выходной частоте Найквиста
+            double sinc = k == 0 ? 0.5 : (k % 2 == 0 ? 0 : Math.sin(Math.PI * k / 2) / (Math.PI * k));
+            int i = k + HALF_TAPS;
+            double window = 0.42 - 0.5 * Math.cos(2 * Math.PI * i / (length - 1))
+                    + 0.08 * Math.cos(4 * Math.PI * i / (length - 1));
+            taps[k] = sinc * window;
+            sum += k == 0 ? taps[k] : 2 * taps[k];
+        }
+
+        CENTER = taps[0] / sum;
+        TAPS = new double[(HALF_TAPS + 1) / 2];
+        for (int t = 0; t < TAPS.length; t++) {
+            TAPS[t] = taps[2 * t + 1] / sum;
+        }
+        FLOAT_CENTER = (float) CENTER;
+        FLOAT_TAPS = new float[TAPS.length];
+        for (int t = 0; t < TAPS.length; t++) {
+            FLOAT_TAPS[t] = (float) TAPS[t];
+        }
+    }
+
+    private final DoubleConsumer output;
+    // Первое звено каскада; null при factor = 1
+    private final Stage first;
+
+    /**
+     * Потоковый дециматор.
+     *
+     * @param factor степень двойки, не меньше 1
+     * @param output получатель выходных отсчётов
+     * @throws IllegalArgumentException если factor не степень двойки
+     */
+    public Decimator(int factor, DoubleConsumer output) {
+        checkFactor(factor);
+        this.output = output;
+
+        Stage stage = null;
+        for (int f = factor; f > 1; f >>= 1) {
+            Stage next = stage;
+            stage = new Stage(next == null ? output : next::push, next);
+        }
+        this.first = stage;
+    }
+
+    /**
+     * Число выходных отсчётов для входа длины length.
+     */
+    public static int outputLength(int length, int factor) {
+        checkFactor(factor);
+        for (int f = factor; f > 1; f >>= 1) {
+            length = (length + 1) / 2;
+        }
+        return length;
+    }
+
+    /**
+     * Возвращает новый массив; вход не меняется.
+     */
+    public static double[] decimate(double[] input, int factor) {
+        checkFactor(factor);
+        if (factor == 1) {
+            return input.clone();
+        }
+        double[] result = input;
+        for (int f = factor; f > 1; f >>= 1) {
+            result = halve(result);
+        }
+        return result;
+    }
+
+    public static float[] decimate(float[] input, int factor) {
+        checkFactor(factor);
+        if (factor == 1) {
+            return input.clone();
+        }
+        float[] result = input;
+        for (int f = factor; f > 1; f >>= 1) {
+            result = halve(result);
+        }
+        return result;
+    }
+
+    /**
+     * Принимает очередной входной отсчёт.
+     */
+    public void push(double sample) {
+        if (first == null) {
+            output.accept(sample);
+        } else {
+            first.push(sample);
+        }
+    }
+
+    /**
+     * Отдаёт оставшиеся выходные отсчёты, считая входы после последнего нулями.
+     */
+    public void flush() {
+        if (first != null) {
+            first.flush();
+        }
+    }
+
+    private static void checkFactor(int factor) {
+        if (factor < 1 || (factor & (factor - 1)) != 0) {
+            throw new IllegalArgumentException("Decimation factor must be a power of 2");
+        }
+    }
+
+    private static double[] halve(double[] x) {
+        int n = x.length;
+        double[] y = new double[(n + 1) / 2];
+        for (int j = 0; j < y.length; j++) {
+            int c = 2 * j;
+            double sum = CENTER * x[c];
+            if (c >= HALF_TAPS && c + HALF_TAPS < n) {
+                for (int t = 0, k = 1; t < TAPS.length; t++, k += 2) {
+                    sum += TAPS[t] * (x[c - k] + x[c + k]);
+                }
+            } else {
+                for (int t = 0, k = 1; t < TAPS.length; t++, k += 2) {
+                    double left = c - k >= 0 ? x[c - k] : 0;
+                    double right = c + k < n ? x[c + k] : 0;
+                    sum += TAPS[t] * (left + right);
+                }
+            }
+            y[j] = sum;
+        }
+        return y;
+    }
+
+    private static float[] halve(float[] x) {
+        int n = x.length;
+        float[] y = new float[(n + 1) / 2];
+        for (int j = 0; j < y.length; j++) {
+            int c = 2 * j;
+            float sum = FLOAT_CENTER * x[c];
+            if (c >= HALF_TAPS && c + HALF_TAPS < n) {
+                for (int t = 0, k = 1; t < FLOAT_TAPS.length; t++, k += 2) {
+                    sum += FLOAT_TAPS[t] * (x[c - k] + x[c + k]);
+                }
+            } else {
+                for (int t = 0, k = 1; t < FLOAT_TAPS.length; t++, k += 2) {
+                    float left = c - k >= 0 ? x[c - k] : 0;
+                    float right = c + k < n ? x[c + k] : 0;
+                    sum += FLOAT_TAPS[t] * (left + right);
+                }
+            }
+            y[j] = sum;
+        }
+        return y;
+    }
+
+    /**
+     * Звено каскада: хранит последние 2 · HALF_TAPS + 1 входов и выдаёт отсчёт с
+     * центром на каждом чётном входе, как только пришёл его правый край.
+     */
+    private static final class Stage {
+        private static final int HISTORY = 2 * HALF_TAPS + 1;
+
+        private final DoubleConsumer output;
+        // Следующее звено каскада, в которое пишет output; null для последнего
+        private final Stage next;
+        private final double[] history = new double[HISTORY];
+        private long inputs;
+        private long outputs;
+
+        Stage(DoubleConsumer output, Stage next) {
+            this.output = output;
+            this.next = next;
+        }
+
+        void push(double sample) {
+            history[(int) (inputs % HISTORY)] = sample;
+            inputs++;
+            while (2 * outputs + HALF_TAPS < inputs) {
+                output.accept(filterAt(2 * outputs));
+                outputs++;
+            }
+        }
+
+        void flush() {
+            while (2 * outputs < inputs) {
+                output.accept(filterAt(2 * outputs));
+                outputs++;
+            }
+            if (next != null) {
+                next.flush();
+            }
+        }
+
+        private double filterAt(long c) {
+            double sum = CENTER * sample(c);
+            for (int t = 0, k = 1; t < TAPS.length; t++, k += 2) {
+                sum += TAPS[t] * (sample(c - k) + sample(c + k));
+            }
+            return sum;
+        }
+
+        private double sample(long index) {
+            return index >= 0 && index < inputs ? history[(int) (index % HISTORY)] : 0;
+        }
+    }
+}
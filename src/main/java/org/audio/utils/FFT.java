@@ -15,41 +15,274 @@ public class FFT {
         }
 
         int n = x.length;
+        double[] re = new double[n];
+        double[] im = new double[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = x[i].re;
+            im[i] = x[i].im;
+        }
+
+        fft(re, im);
+
+        Complex[] result = new Complex[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = new Complex(re[i], im[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Вычисляет БПФ на месте над массивами действительных и мнимых частей.
+     * Итеративный radix-2: перестановка по бит-реверсу индексов, затем log2(n)
+     * проходов бабочек. Без рекурсии и без создания объектов на каждую бабочку.
+     *
+     * @param re действительные части, перезаписываются результатом
+     * @param im мнимые части, перезаписываются результатом
+     * @throws IllegalArgumentException если массивы null, разной длины или длина не степень двойки
+     */
+    public static void fft(double[] re, double[] im) {
+        if (re == null || im == null) {
+            throw new IllegalArgumentException("Input array cannot be null");
+        }
+        if (re.length != im.length) {
+            throw new IllegalArgumentException("Real and imaginary parts must have the same length");
+        }
 
+        int n = re.length;
 
         if ((n & (n - 1)) != 0) {
             throw new IllegalArgumentException("Array length must be a power of 2");
         }
 
+        if (n < 2) {
+            return;
+        }
+
+        transform(re, im, FftPlan.forSize(n));
+    }
+
+    /**
+     * Вычисляет спектр действительного сигнала длины n через комплексное БПФ длины n/2:
+     * чётные отсчёты упаковываются в действительную часть, нечётные в мнимую, после чего
+     * спектр разделяется. Возвращается только неизбыточная половина спектра,
+     * бины 0..n/2 включительно.
+     *
+     * @param input  действительный сигнал; отсчёты с индексом length и дальше считаются нулями
+     * @param length число значимых отсчётов во входном массиве
+     * @param n      размер преобразования, степень двойки не меньше length
+     * @param re     действительные части бинов 0..n/2, длина не меньше n/2 + 1
+     * @param im     мнимые части бинов 0..n/2, длина не меньше n/2 + 1
+     * @throws IllegalArgumentException если n не степень двойки или массивы слишком короткие
+     */
+    public static void realFft(double[] input, int length, int n, double[] re, double[] im) {
+        realFft(input, length, FftPlan.forSize(n), re, im);
+    }
+
+    /**
+     * То же, что {@link #realFft(double[], int, int, double[], double[])}, с заранее
+     * полученным планом размера преобразования.
+     */
+    public static void realFft(double[] input, int length, FftPlan plan, double[] re, double[] im) {
+        if (input == null || re == null || im == null) {
+            throw new IllegalArgumentException("Input array cannot be null");
+        }
+
+        int n = plan.size();
+        if (length > n || length > input.length) {
+            throw new IllegalArgumentException("Input is longer than the transform size");
+        }
+
+        int half = n / 2;
+        if (re.length < half + 1 || im.length < half + 1) {
+            throw new IllegalArgumentException("Output arrays must hold n/2 + 1 bins");
+        }
+
+        if (n == 1) {
+            re[0] = length > 0 ? input[0] : 0;
+            im[0] = 0;
+            return;
+        }
+
+        for (int k = 0; k < half; k++) {
+            int even = 2 * k;
+            re[k] = even < length ? input[even] : 0;
+            im[k] = even + 1 < length ? input[even + 1] : 0;
+        }
+
+        transform(re, im, plan.half());
+
+        double z0r = re[0];
+        double z0i = im[0];
+        re[0] = z0r + z0i;
+        im[0] = 0;
+        re[half] = z0r - z0i;
+        im[half] = 0;
+
+        double[] cos = plan.cos;
+        double[] sin = plan.sin;
+        for (int k = 1, m = half - 1; k <= m; k++, m--) {
+            double wr = cos[k];
+            double wi = sin[k];
+
+            // Чётная и нечётная части спектра: Fe = (Z[k] + conj Z[m]) / 2, Fo = (Z[k] - conj Z[m]) / 2i
+            double evenRe = (re[k] + re[m]) * 0.5;
+            double evenIm = (im[k] - im[m]) * 0.5;
+            double oddRe = (im[k] + im[m]) * 0.5;
+            double oddIm = (re[m] - re[k]) * 0.5;
+
+            double pr = wr * oddRe - wi * oddIm;
+            double pi = wr * oddIm + wi * oddRe;
+
+            // X[k] = Fe + W^k Fo, X[n/2 - k] = conj(Fe - W^k Fo)
+            re[k] = evenRe + pr;
+            im[k] = evenIm + pi;
+            re[m] = evenRe - pr;
+            im[m] = pi - evenIm;
+        }
+    }
+
+    /**
+     * Вариант {@link #realFft(double[], int, FftPlan, double[], double[])} одинарной точности:
+     * вдвое меньше памяти под кадр и спектр, множители берутся из float-таблиц плана.
+     */
+    public static void realFft(float[] input, int length, FftPlan plan, float[] re, float[] im) {
+        if (input == null || re == null || im == null) {
+            throw new IllegalArgumentException("Input array cannot be null");
+        }
+
+        int n = plan.size();
+        if (length > n || length > input.length) {
+            throw new IllegalArgumentException("Input is longer than the transform size");
+        }
+
+        int half = n / 2;
+        if (re.length < half + 1 || im.length < half + 1) {
+            throw new IllegalArgumentException("Output arrays must hold n/2 + 1 bins");
+        }
 
         if (n == 1) {
-            return new Complex[]{x[0]};
+            re[0] = length > 0 ? input[0] : 0;
+            im[0] = 0;
+            return;
+        }
+
+        for (int k = 0; k < half; k++) {
+            int even = 2 * k;
+            re[k] = even < length ? input[even] : 0;
+            im[k] = even + 1 < length ? input[even + 1] : 0;
         }
 
+        transform(re, im, plan.half());
+
+        float z0r = re[0];
+        float z0i = im[0];
+        re[0] = z0r + z0i;
+        im[0] = 0;
+        re[half] = z0r - z0i;
+        im[half] = 0;
+
+        float[] cos = plan.cosFloat;
+        float[] sin = plan.sinFloat;
+        for (int k = 1, m = half - 1; k <= m; k++, m--) {
+            float wr = cos[k];
+            float wi = sin[k];
+
+            float evenRe = (re[k] + re[m]) * 0.5f;
+            float evenIm = (im[k] - im[m]) * 0.5f;
+            float oddRe = (im[k] + im[m]) * 0.5f;
+            float oddIm = (re[m] - re[k]) * 0.5f;
+
+            float pr = wr * oddRe - wi * oddIm;
+            float pi = wr * oddIm + wi * oddRe;
 
-        Complex[] even = new Complex[n/2];
-        Complex[] odd = new Complex[n/2];
-        for (int k = 0; k < n/2; k++) {
-            even[k] = x[2*k];
-            odd[k] = x[2*k + 1];
+            re[k] = evenRe + pr;
+            im[k] = evenIm + pi;
+            re[m] = evenRe - pr;
+            im[m] = pi - evenIm;
         }
+    }
 
+    private static void transform(double[] re, double[] im, FftPlan plan) {
+        int n = plan.size();
+        if (n < 2) {
+            return;
+        }
 
-        Complex[] evenFFT = fft(even);
-        Complex[] oddFFT = fft(odd);
+        int[] bitReverse = plan.bitReverse;
+        for (int i = 1; i < n; i++) {
+            int j = bitReverse[i];
+            if (i < j) {
+                double tmp = re[i];
+                re[i] = re[j];
+                re[j] = tmp;
+                tmp = im[i];
+                im[i] = im[j];
+                im[j] = tmp;
+            }
+        }
 
+        // Таблицы плана построены для полного размера; этап размера size берёт каждый (n / size)-й множитель
+        double[] cos = plan.cos;
+        double[] sin = plan.sin;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0, t = 0; k < half; k++, t += step) {
+                    int even = start + k;
+                    int odd = even + half;
+                    double wr = cos[t];
+                    double wi = sin[t];
+                    double pr = wr * re[odd] - wi * im[odd];
+                    double pi = wr * im[odd] + wi * re[odd];
+                    re[odd] = re[even] - pr;
+                    im[odd] = im[even] - pi;
+                    re[even] += pr;
+                    im[even] += pi;
+                }
+            }
+        }
+    }
 
-        Complex[] result = new Complex[n];
-        for (int k = 0; k < n/2; k++) {
-            double angle = -2 * Math.PI * k / n;
-            Complex wk = new Complex(Math.cos(angle), Math.sin(angle)); // Поворачивающий множитель
+    private static void transform(float[] re, float[] im, FftPlan plan) {
+        int n = plan.size();
+        if (n < 2) {
+            return;
+        }
 
-            Complex product = wk.times(oddFFT[k]);
-            result[k] = evenFFT[k].plus(product);
-            result[k + n/2] = evenFFT[k].minus(product);
+        int[] bitReverse = plan.bitReverse;
+        for (int i = 1; i < n; i++) {
+            int j = bitReverse[i];
+            if (i < j) {
+                float tmp = re[i];
+                re[i] = re[j];
+                re[j] = tmp;
+                tmp = im[i];
+                im[i] = im[j];
+                im[j] = tmp;
+            }
         }
 
-        return result;
+        float[] cos = plan.cosFloat;
+        float[] sin = plan.sinFloat;
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0, t = 0; k < half; k++, t += step) {
+                    int even = start + k;
+                    int odd = even + half;
+                    float wr = cos[t];
+                    float wi = sin[t];
+                    float pr = wr * re[odd] - wi * im[odd];
+                    float pi = wr * im[odd] + wi * re[odd];
+                    re[odd] = re[even] - pr;
+                    im[odd] = im[even] - pi;
+                    re[even] += pr;
+                    im[even] += pi;
+                }
+            }
+        }
     }
 
     public static Complex[] fftWithPadding(Complex[] x) {
@@ -75,7 +308,7 @@ public class FFT {
         return fft(x);
     }
 
-    private static int nextPowerOfTwo(int n) {
+    public static int nextPowerOfTwo(int n) {
         int power = 1;
         while (power < n) {
             power <<= 1;
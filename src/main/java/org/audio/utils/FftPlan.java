@@ -0,0 +1,120 @@
+package org.audio.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Предвычисленные таблицы для БПФ фиксированного размера: поворачивающие множители,
+ * перестановка бит-реверса и окно Ханна, множители и окно — в double и во float.
+ * Планы кешируются по размеру и после создания не меняются, поэтому один экземпляр
+ * безопасно разделяется между потоками.
+ */
+public final class FftPlan {
+    private static final Map<Integer, FftPlan> PLANS = new ConcurrentHashMap<>();
+
+    private final int size;
+    final double[] cos;        // cos(-2πk/n), k < n/2
+    final double[] sin;        // sin(-2πk/n), k < n/2
+    final float[] cosFloat;
+    final float[] sinFloat;
+    final int[] bitReverse;
+    private final double[] hannWindow;
+    private final float[] hannWindowFloat;
+    private final FftPlan half;
+
+    private FftPlan(int size) {
+        this.size = size;
+
+        int halfSize = size / 2;
+        this.cos = new double[halfSize];
+        this.sin = new double[halfSize];
+        for (int k = 0; k < halfSize; k++) {
+            double angle = -2 * Math.PI * k / size;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+        this.cosFloat = toFloats(cos);
+        this.sinFloat = toFloats(sin);
+
+        this.bitReverse = new int[size];
+        for (int i = 1, j = 0; i < size; i++) {
+            int bit = size >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            bitReverse[i] = j;
+        }
+
+        this.hannWindow = new double[size];
+        if (size == 1) {
+            hannWindow[0] = 1.0;
+        } else {
+            for (int i = 0; i < size; i++) {
+                hannWindow[i] = 0.5 * (1 - Math.cos(2 * Math.PI * i / (size - 1)));
+            }
+        }
+        this.hannWindowFloat = toFloats(hannWindow);
+
+        // План половинного размера нужен для БПФ действительного сигнала
+        this.half = size > 1 ? forSize(halfSize) : null;
+    }
+
+    /**
+     * Возвращает общий план для заданного размера, создавая его при первом обращении.
+     *
+     * @throws IllegalArgumentException если размер не положительная степень двойки
+     */
+    public static FftPlan forSize(int size) {
+        if (size < 1 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("Array length must be a power of 2");
+        }
+
+        FftPlan plan = PLANS.get(size);
+        if (plan == null) {
+            // Не computeIfAbsent: конструктор рекурсивно запрашивает план половинного размера
+            plan = new FftPlan(size);
+            FftPlan existing = PLANS.putIfAbsent(size, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    FftPlan half() {
+        return half;
+    }
+
+    /**
+     * Умножает первые length отсчётов кадра на окно Ханна этого размера.
+     */
+    public void applyHannWindow(double[] frame, int length) {
+        if (length > size) {
+            throw new IllegalArgumentException("Frame is longer than the window");
+        }
+        AudioKernels.get().multiply(frame, hannWindow, length);
+    }
+
+    /**
+     * Вариант {@link #applyHannWindow(double[], int)} для float-кадра.
+     */
+    public void applyHannWindow(float[] frame, int length) {
+        if (length > size) {
+            throw new IllegalArgumentException("Frame is longer than the window");
+        }
+        AudioKernels.get().multiply(frame, hannWindowFloat, length);
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+}
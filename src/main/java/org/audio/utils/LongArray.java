@@ -0,0 +1,132 @@
+package org.audio.utils;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Растущий массив примитивных long: буфер плюс число занятых элементов.
+ * Используется для передачи хешей отпечатков без упаковки в {@link Long}.
+ * Не потокобезопасен.
+ */
+public final class LongArray {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values;
+    private int size;
+
+    public LongArray() {
+        this.values = EMPTY;
+    }
+
+    public LongArray(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+        this.values = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+    }
+
+    private LongArray(long[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Оборачивает первые size элементов массива без копирования.
+     */
+    public static LongArray wrap(long[] values, int size) {
+        if (size < 0 || size > values.length) {
+            throw new IllegalArgumentException("Size is out of array bounds");
+        }
+        return new LongArray(values, size);
+    }
+
+    public static LongArray of(long... values) {
+        return new LongArray(values.clone(), values.length);
+    }
+
+    /**
+     * Переводит упакованный список в примитивный массив; адаптер для старого API.
+     */
+    public static LongArray fromList(List<Long> values) {
+        long[] copy = new long[values.size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = values.get(i);
+        }
+        return new LongArray(copy, copy.length);
+    }
+
+    public void add(long value) {
+        if (size == values.length) {
+            grow(size + 1);
+        }
+        values[size++] = value;
+    }
+
+    public void addAll(long[] source, int offset, int length) {
+        if (size + length > values.length) {
+            grow(size + length);
+        }
+        System.arraycopy(source, offset, values, size, length);
+        size += length;
+    }
+
+    public void addAll(long[] source) {
+        addAll(source, 0, source.length);
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Внутренний буфер; значимы только первые {@link #size()} элементов.
+     */
+    public long[] array() {
+        return values;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Упакованное представление только для чтения; элементы упаковываются при обращении.
+     */
+    public List<Long> asList() {
+        return new BoxedView();
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, Math.max(16, values.length + (values.length >> 1)));
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    private final class BoxedView extends AbstractList<Long> implements RandomAccess {
+        @Override
+        public Long get(int index) {
+            return LongArray.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.audio.utils;
+
+/**
+ * Скалярная реализация {@link AudioKernels}; используется, когда Vector API недоступен.
+ */
+public final class ScalarAudioKernels implements AudioKernels {
+
+    @Override
+    public double sumOfSquares(double[] x, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += x[i] * x[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void scaleAndClamp(double[] x, int length, double gain) {
+        for (int i = 0; i < length; i++) {
+            x[i] = Math.min(Math.max(x[i] * gain, -1.0), 1.0);
+        }
+    }
+
+    @Override
+    public void multiply(double[] x, double[] window, int length) {
+        for (int i = 0; i < length; i++) {
+            x[i] *= window[i];
+        }
+    }
+
+    @Override
+    public void power(double[] re, double[] im, double[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public void decodePcm16(byte[] pcm, int offset, double[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            int at = offset + 2 * i;
+            short sample = (short) ((pcm[at + 1] << 8) | (pcm[at] & 0xff));
+            out[i] = sample / 32768.0;
+        }
+    }
+
+    @Override
+    public double sumOfSquares(float[] x, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += x[i] * x[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void scaleAndClamp(float[] x, int length, float gain) {
+        for (int i = 0; i < length; i++) {
+            x[i] = Math.min(Math.max(x[i] * gain, -1.0f), 1.0f);
+        }
+    }
+
+    @Override
+    public void multiply(float[] x, float[] window, int length) {
+        for (int i = 0; i < length; i++) {
+            x[i] *= window[i];
+        }
+    }
+
+    @Override
+    public void power(float[] re, float[] im, float[] out, int length) {
+        for (int i = 0; i < length; i++) {
+            out[i] = re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public void decodePcm16(byte[] pcm, int offset, float[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            int at = offset + 2 * i;
+            short sample = (short) ((pcm[at + 1] << 8) | (pcm[at] & 0xff));
+            out[i] = sample / 32768.0f;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.audio.utils;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Реализация {@link AudioKernels} на Vector API. Хвосты короче одного вектора
+ * обрабатываются скалярно. Загружается только через {@link AudioKernels#get()}.
+ */
+final class VectorAudioKernels implements AudioKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final int LANES = DOUBLES.length();
+    private static final int PCM_CHUNK = 4096;
+
+    // Short-вектор с тем же числом линий; самая короткая форма — 64 бита, то есть 4 линии
+    private static final VectorSpecies<Short> SHORTS = LANES * Short.SIZE >= 64
+            ? VectorSpecies.of(short.class, VectorShape.forBitSize(LANES * Short.SIZE))
+            : null;
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final int FLOAT_LANES = FLOATS.length();
+    private static final VectorSpecies<Short> FLOAT_SHORTS = FLOAT_LANES * Short.SIZE >= 64
+            ? VectorSpecies.of(short.class, VectorShape.forBitSize(FLOAT_LANES * Short.SIZE))
+            : null;
+
+    // Сумма в float-линиях сбрасывается в double каждые SUM_CHUNK элементов, чтобы не терять точность
+    private static final int SUM_CHUNK = 1024;
+
+    private final ScalarAudioKernels scalar = new ScalarAudioKernels();
+
+    @Override
+    public double sumOfSquares(double[] x, int from, int to) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = from;
+        int bound = from + DOUBLES.loopBound(to - from);
+        for (; i < bound; i += LANES) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, x, i);
+            acc = acc.add(v.mul(v));
+        }
+        return acc.reduceLanes(VectorOperators.ADD) + scalar.sumOfSquares(x, i, to);
+    }
+
+    @Override
+    public void scaleAndClamp(double[] x, int length, double gain) {
+        int i = 0;
+        int bound = DOUBLES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector.fromArray(DOUBLES, x, i)
+                    .mul(gain)
+                    .max(-1.0)
+                    .min(1.0)
+                    .intoArray(x, i);
+        }
+        for (; i < length; i++) {
+            x[i] = Math.min(Math.max(x[i] * gain, -1.0), 1.0);
+        }
+    }
+
+    @Override
+    public void multiply(double[] x, double[] window, int length) {
+        int i = 0;
+        int bound = DOUBLES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector.fromArray(DOUBLES, x, i)
+                    .mul(DoubleVector.fromArray(DOUBLES, window, i))
+                    .intoArray(x, i);
+        }
+        for (; i < length; i++) {
+            x[i] *= window[i];
+        }
+    }
+
+    @Override
+    public void power(double[] re, double[] im, double[] out, int length) {
+        int i = 0;
+        int bound = DOUBLES.loopBound(length);
+        for (; i < bound; i += LANES) {
+            DoubleVector r = DoubleVector.fromArray(DOUBLES, re, i);
+            DoubleVector m = DoubleVector.fromArray(DOUBLES, im, i);
+            r.mul(r).add(m.mul(m)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public void decodePcm16(byte[] pcm, int offset, double[] out, int count) {
+        if (SHORTS == null) {
+            scalar.decodePcm16(pcm, offset, out, count);
+            return;
+        }
+
+        // Байты собираются в short[] пакетным копированием буфера, преобразование в double — векторами
+        short[] chunk = new short[Math.min(count, PCM_CHUNK)];
+        ByteBuffer buffer = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+        double scale = 1.0 / 32768.0;
+
+        for (int done = 0; done < count; done += chunk.length) {
+            int length = Math.min(chunk.length, count - done);
+            buffer.position(offset + 2 * done);
+            buffer.asShortBuffer().get(chunk, 0, length);
+
+            int i = 0;
+            int bound = DOUBLES.loopBound(length);
+            for (; i < bound; i += LANES) {
+                ((DoubleVector) ShortVector.fromArray(SHORTS, chunk, i)
+                        .convertShape(VectorOperators.S2D, DOUBLES, 0))
+                        .mul(scale)
+                        .intoArray(out, done + i);
+            }
+            for (; i < length; i++) {
+                out[done + i] = chunk[i] * scale;
+            }
+        }
+    }
+
+    @Override
+    public double sumOfSquares(float[] x, int from, int to) {
+        double sum = 0;
+        int i = from;
+        while (to - i >= FLOAT_LANES) {
+            int bound = i + FLOATS.loopBound(Math.min(to - i, SUM_CHUNK));
+            FloatVector acc = FloatVector.zero(FLOATS);
+            for (; i < bound; i += FLOAT_LANES) {
+                FloatVector v = FloatVector.fromArray(FLOATS, x, i);
+                acc = v.fma(v, acc);
+            }
+            sum += acc.reduceLanes(VectorOperators.ADD);
+        }
+        return sum + scalar.sumOfSquares(x, i, to);
+    }
+
+    @Override
+    public void scaleAndClamp(float[] x, int length, float gain) {
+        int i = 0;
+        int bound = FLOATS.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOATS, x, i)
+                    .mul(gain)
+                    .max(-1.0f)
+                    .min(1.0f)
+                    .intoArray(x, i);
+        }
+        for (; i < length; i++) {
+            x[i] = Math.min(Math.max(x[i] * gain, -1.0f), 1.0f);
+        }
+    }
+
+    @Override
+    public void multiply(float[] x, float[] window, int length) {
+        int i = 0;
+        int bound = FLOATS.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector.fromArray(FLOATS, x, i)
+                    .mul(FloatVector.fromArray(FLOATS, window, i))
+                    .intoArray(x, i);
+        }
+        for (; i < length; i++) {
+            x[i] *= window[i];
+        }
+    }
+
+    @Override
+    public void power(float[] re, float[] im, float[] out, int length) {
+        int i = 0;
+        int bound = FLOATS.loopBound(length);
+        for (; i < bound; i += FLOAT_LANES) {
+            FloatVector r = FloatVector.fromArray(FLOATS, re, i);
+            FloatVector m = FloatVector.fromArray(FLOATS, im, i);
+            r.mul(r).add(m.mul(m)).intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    @Override
+    public void decodePcm16(byte[] pcm, int offset, float[] out, int count) {
+        if (FLOAT_SHORTS == null) {
+            scalar.decodePcm16(pcm, offset, out, count);
+            return;
+        }
+
+        short[] chunk = new short[Math.min(count, PCM_CHUNK)];
+        ByteBuffer buffer = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+        float scale = 1.0f / 32768.0f;
+
+        for (int done = 0; done < count; done += chunk.length) {
+            int length = Math.min(chunk.length, count - done);
+            buffer.position(offset + 2 * done);
+            buffer.asShortBuffer().get(chunk, 0, length);
+
+            int i = 0;
+            int bound = FLOATS.loopBound(length);
+            for (; i < bound; i += FLOAT_LANES) {
+                ((FloatVector) ShortVector.fromArray(FLOAT_SHORTS, chunk, i)
+                        .convertShape(VectorOperators.S2F, FLOATS, 0))
+                        .mul(scale)
+                        .intoArray(out, done + i);
+            }
+            for (; i < length; i++) {
+                out[done + i] = chunk[i] * scale;
+            }
+        }
+    }
+}
@@ -1,41 +1,31 @@
 package org.audio.db;
 
 import org.audio.db.repo.FingerprintRepository;
-import org.audio.db.repo.SongRepository;
+import org.audio.db.repo.InMemoryFingerprintRepository;
+import org.audio.db.repo.InMemorySongRepository;
+import org.audio.db.repo.IndexedPostingVisitor;
 import org.audio.models.TrackMatch;
+import org.audio.utils.LongArray;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.lenient;
-import static org.mockito.Mockito.when;
 
-@ExtendWith(MockitoExtension.class)
 class InMemoryFingerprintDatabaseTest {
 
-    @Mock
-    private SongRepository songRepository;
-
-    @Mock
-    private FingerprintRepository fingerprintRepository;
-
-    @InjectMocks
     private InMemoryFingerprintDatabase db;
 
     @BeforeEach
     void setUp() {
-        lenient().when(songRepository.findById("id1")).thenReturn(Optional.of(new SongData("id1", "track1")));
-        lenient().when(songRepository.findById("id2")).thenReturn(Optional.of(new SongData("id2", "track2")));
+        db = new InMemoryFingerprintDatabase(new InMemorySongRepository(), new InMemoryFingerprintRepository());
     }
 
     @Test
@@ -43,19 +33,6 @@ class InMemoryFingerprintDatabaseTest {
         List<Long> fingerprints = List.of(1L, 2L, 3L, 4L, 5L);
         db.addTrack("id1", "track1", fingerprints);
 
-        List<SongMatch> matches = new ArrayList<>();
-        for (int i = 0; i < fingerprints.size(); i++) {
-            matches.add(new SongMatch("id1", i));
-        }
-
-        when(fingerprintRepository.findByHash(anyLong())).thenAnswer(invocation -> {
-            long hash = invocation.getArgument(0);
-            if (hash >= 1L && hash <= 5L) {
-                return List.of(new SongMatch("id1", (int) (hash - 1)));
-            }
-            return null;
-        });
-
         Optional<TrackMatch> match = db.findBestMatch(fingerprints);
         assertTrue(match.isPresent());
         assertEquals("id1", match.get().getTrackId());
@@ -64,31 +41,345 @@ class InMemoryFingerprintDatabaseTest {
 
     @Test
     void bestMatchesReturnsMultiple() {
-        when(fingerprintRepository.findByHash(anyLong())).thenAnswer(invocation -> {
-            long hash = invocation.getArgument(0);
-            if (hash == 2L) {
-                return List.of(new SongMatch("id1", 1), new SongMatch("id2", 0));
-            }
-            if (hash == 3L) {
-                return List.of(new SongMatch("id1", 2), new SongMatch("id2", 1));
-            }
-            if (hash == 4L) {
-                return List.of(new SongMatch("id2", 2));
-            }
-            return null;
-        });
-
+        // Хеш 0xF00 далёк от запроса, поэтому у id1 совпадают только 2 и 3 со сдвигом 1
+        db.addTrack("id1", "track1", List.of(0xF00L, 2L, 3L));
+        db.addTrack("id2", "track2", List.of(2L, 3L, 4L));
 
         TrackMatch[] matches = db.bestMatches(List.of(2L, 3L, 4L), 2, 0.1f);
         assertEquals(2, matches.length);
         assertEquals("id2", matches[0].getTrackId());
+        assertEquals("track2", matches[0].getTrackTitle());
         assertEquals("id1", matches[1].getTrackId());
     }
 
     @Test
     void findBestMatchReturnsEmptyIfNoMatch() {
-        when(fingerprintRepository.findByHash(anyLong())).thenReturn(null);
         Optional<TrackMatch> match = db.findBestMatch(List.of(10L, 20L));
         assertTrue(match.isEmpty());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void hammingDistanceIsChosenPerQuery() {
+        List<Long> fingerprints = List.of(1000L, 2000L, 3000L, 4000L, 5000L);
+        db.addTrack("id1", "track1", fingerprints);
+        // Каждый хеш запроса отличается от хеша трека в двух младших битах
+        LongArray query = new LongArray();
+        fingerprints.forEach(hash -> query.add(hash ^ 0b11));
+
+        assertTrue(db.findBestMatch(query, 1).isEmpty());
+        Optional<TrackMatch> match = db.findBestMatch(query, 2);
+        assertTrue(match.isPresent());
+        assertEquals(5, match.get().getMatchScore());
+        assertEquals(1, db.bestMatches(query, 1, 0.1f, 2).length);
+    }
+
+    @Test
+    void rejectsHammingDistanceOutOfRange() {
+        LongArray query = LongArray.of(1L);
+        assertThrows(IllegalArgumentException.class, () -> db.findBestMatch(query, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> db.bestMatches(query, 1, 0.1f, FingerprintDatabase.MAX_HAMMING_DISTANCE + 1));
+    }
+
+    @Test
+    void adaptiveSearchStopsOnConclusiveExactMatch() {
+        InMemoryFingerprintDatabase adaptive = new InMemoryFingerprintDatabase(
+                new InMemorySongRepository(), new InMemoryFingerprintRepository(), 2.0);
+        List<Long> fingerprints = List.of(1000L, 2000L, 3000L, 4000L, 5000L);
+        adaptive.addTrack("id1", "track1", fingerprints);
+
+        Optional<TrackMatch> match = adaptive.findBestMatch(fingerprints);
+        assertTrue(match.isPresent());
+        assertEquals(5, match.get().getMatchScore());
+
+        HammingTierStats stats = adaptive.tierStats();
+        assertEquals(1, stats.runs(0));
+        assertEquals(1, stats.finished(0));
+        assertEquals(0, stats.runs(1));
+    }
+
+    @Test
+    void adaptiveSearchWidensWhenInconclusive() {
+        InMemoryFingerprintDatabase adaptive = new InMemoryFingerprintDatabase(
+                new InMemorySongRepository(), new InMemoryFingerprintRepository(), 2.0);
+        List<Long> fingerprints = List.of(1000L, 2000L, 3000L, 4000L, 5000L);
+        adaptive.addTrack("id1", "track1", fingerprints);
+        // Точные хеши запроса не найдены, соседние на расстоянии 1 — найдены
+        LongArray query = new LongArray();
+        fingerprints.forEach(hash -> query.add(hash ^ 1));
+
+        assertEquals(5, adaptive.findBestMatch(query).orElseThrow().getMatchScore());
+        // Два трека с одинаковым числом совпадений: точного поиска недостаточно
+        adaptive.addTrack("id2", "track2", fingerprints);
+        assertEquals(2, adaptive.bestMatches(LongArray.of(1000L, 2000L, 3000L, 4000L, 5000L), 2, 0.1f).length);
+
+        HammingTierStats stats = adaptive.tierStats();
+        assertEquals(2, stats.runs(0));
+        assertEquals(0, stats.finished(0));
+        assertEquals(2, stats.runs(1));
+        assertEquals(2, stats.finished(1));
+    }
+
+    @Test
+    void nonAdaptiveSearchRunsOnlyRequestedDistance() {
+        db.addTrack("id1", "track1", List.of(1L, 2L, 3L, 4L, 5L));
+        db.findBestMatch(LongArray.of(1L, 2L, 3L, 4L, 5L));
+
+        assertEquals(0, db.tierStats().runs(0));
+        assertEquals(1, db.tierStats().finished(FingerprintDatabase.DEFAULT_HAMMING_DISTANCE));
+    }
+
+    @Test
+    void rejectsAdaptiveMarginBelowOne() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryFingerprintDatabase(
+                new InMemorySongRepository(), new InMemoryFingerprintRepository(), 0.5));
+    }
+
+    @Test
+    void candidateLimitKeepsTracksWithMostMatches() {
+        InMemoryFingerprintDatabase limited = new InMemoryFingerprintDatabase(
+                new InMemorySongRepository(), new InMemoryFingerprintRepository(), Double.POSITIVE_INFINITY, 1);
+        // Частый хеш 7 есть в десяти треках, но совпадения с одним сдвигом набирает только target
+        for (int track = 0; track < 10; track++) {
+            limited.addTrack("common" + track, "common", List.of(7L));
+        }
+        limited.addTrack("target", "target", List.of(1L, 2L, 3L, 4L, 5L));
+        LongArray query = LongArray.of(7L, 1L, 2L, 3L, 4L, 5L);
+
+        Optional<TrackMatch> match = limited.findBestMatch(query, 0);
+        assertTrue(match.isPresent());
+        assertEquals("target", match.get().getTrackId());
+        assertEquals(5, match.get().getMatchScore());
+
+        // Запрошенных результатов больше, чем кандидатов: список расширяется до limit
+        TrackMatch[] matches = limited.bestMatches(query, 3, 0f, 0);
+        assertEquals(3, matches.length);
+        assertEquals("target", matches[0].getTrackId());
+        assertEquals(1, matches[2].getMatchScore());
+    }
+
+    @Test
+    void rejectsNonPositiveCandidateLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryFingerprintDatabase(
+                new InMemorySongRepository(), new InMemoryFingerprintRepository(), Double.POSITIVE_INFINITY, 0));
+    }
+
+    @Test
+    void parallelQueryMatchesSequentialQuery() {
+        InMemorySongRepository songs = new InMemorySongRepository();
+        InMemoryFingerprintRepository fingerprints = new InMemoryFingerprintRepository();
+        InMemoryFingerprintDatabase sequential = new InMemoryFingerprintDatabase(
+                songs, fingerprints, Double.POSITIVE_INFINITY, 10, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            InMemoryFingerprintDatabase parallel = new InMemoryFingerprintDatabase(
+                    songs, fingerprints, Double.POSITIVE_INFINITY, 10, pool, 1);
+            Random random = new Random(3);
+            LongArray query = new LongArray();
+            for (int track = 0; track < 50; track++) {
+                LongArray hashes = new LongArray();
+                for (int i = 0; i < 2_000; i++) {
+                    hashes.add(random.nextInt(5_000));
+                }
+                sequential.addTrack("id" + track, "track" + track, hashes);
+                if (track == 20) {
+                    for (int i = 500; i < 1_500; i++) {
+                        query.add(hashes.get(i));
+                    }
+                }
+            }
+
+            for (int distance = 0; distance <= 1; distance++) {
+                assertEquals(sequential.findBestMatch(query, distance).map(TrackMatch::toString),
+                        parallel.findBestMatch(query, distance).map(TrackMatch::toString));
+                assertEquals(Arrays.toString(sequential.bestMatches(query, 5, 0f, distance)),
+                        Arrays.toString(parallel.bestMatches(query, 5, 0f, distance)));
+            }
+            assertEquals("id20", parallel.findBestMatch(query, 0).orElseThrow().getTrackId());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void sortedLookupMatchesPerHashLookup() {
+        InMemorySongRepository songs = new InMemorySongRepository();
+        InMemoryFingerprintRepository fingerprints = new InMemoryFingerprintRepository();
+        SortedRepository sorted = new SortedRepository(fingerprints);
+        InMemoryFingerprintDatabase perHash = new InMemoryFingerprintDatabase(
+                songs, fingerprints, Double.POSITIVE_INFINITY, 10, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            InMemoryFingerprintDatabase batched = new InMemoryFingerprintDatabase(
+                    songs, sorted, Double.POSITIVE_INFINITY, 10, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+            InMemoryFingerprintDatabase parallel = new InMemoryFingerprintDatabase(
+                    songs, sorted, Double.POSITIVE_INFINITY, 10, pool, 300);
+            Random random = new Random(5);
+            LongArray query = new LongArray();
+            for (int track = 0; track < 50; track++) {
+                LongArray hashes = new LongArray();
+                for (int i = 0; i < 2_000; i++) {
+                    hashes.add(random.nextInt(5_000));
+                }
+                perHash.addTrack("id" + track, "track" + track, hashes);
+                if (track == 30) {
+                    for (int i = 200; i < 1_200; i++) {
+                        query.add(hashes.get(i));
+                    }
+                }
+            }
+
+            // Пакет приходит в порядке хешей, а не запроса; хеши запроса повторяются
+            for (InMemoryFingerprintDatabase db : List.of(batched, parallel)) {
+                for (int distance = 0; distance <= 1; distance++) {
+                    assertEquals(perHash.findBestMatch(query, distance).map(TrackMatch::toString),
+                            db.findBestMatch(query, distance).map(TrackMatch::toString));
+                    assertEquals(Arrays.toString(perHash.bestMatches(query, 5, 0f, distance)),
+                            Arrays.toString(db.bestMatches(query, 5, 0f, distance)));
+                }
+            }
+            assertTrue(sorted.batches.get() > 0);
+            assertEquals("id30", batched.findBestMatch(query, 0).orElseThrow().getTrackId());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void hitLimitOverflowGivesSameMatches() {
+        InMemorySongRepository songs = new InMemorySongRepository();
+        InMemoryFingerprintRepository fingerprints = new InMemoryFingerprintRepository();
+        SortedRepository sorted = new SortedRepository(fingerprints);
+        InMemoryFingerprintDatabase full = new InMemoryFingerprintDatabase(
+                songs, fingerprints, Double.POSITIVE_INFINITY, 10, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Около 20 тысяч совпадений на запрос при пределе в 500
+            List<InMemoryFingerprintDatabase> limited = List.of(
+                    new InMemoryFingerprintDatabase(songs, fingerprints, Double.POSITIVE_INFINITY, 10,
+                            ForkJoinPool.commonPool(), Integer.MAX_VALUE, false, 500),
+                    new InMemoryFingerprintDatabase(songs, fingerprints, Double.POSITIVE_INFINITY, 10,
+                            pool, 300, false, 500),
+                    new InMemoryFingerprintDatabase(songs, sorted, Double.POSITIVE_INFINITY, 10,
+                            ForkJoinPool.commonPool(), Integer.MAX_VALUE, false, 500));
+            Random random = new Random(8);
+            LongArray query = new LongArray();
+            for (int track = 0; track < 50; track++) {
+                LongArray hashes = new LongArray();
+                for (int i = 0; i < 2_000; i++) {
+                    hashes.add(random.nextInt(5_000));
+                }
+                full.addTrack("id" + track, "track" + track, hashes);
+                if (track == 10) {
+                    for (int i = 100; i < 1_100; i++) {
+                        query.add(hashes.get(i));
+                    }
+                }
+            }
+
+            for (InMemoryFingerprintDatabase db : limited) {
+                for (int distance = 0; distance <= 1; distance++) {
+                    assertEquals(full.findBestMatch(query, distance).map(TrackMatch::toString),
+                            db.findBestMatch(query, distance).map(TrackMatch::toString));
+                    assertEquals(Arrays.toString(full.bestMatches(query, 5, 0f, distance)),
+                            Arrays.toString(db.bestMatches(query, 5, 0f, distance)));
+                }
+            }
+            assertEquals("id10", limited.get(0).findBestMatch(query, 0).orElseThrow().getTrackId());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveHitLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryFingerprintDatabase(
+                new InMemorySongRepository(), new InMemoryFingerprintRepository(), Double.POSITIVE_INFINITY, 1,
+                ForkJoinPool.commonPool(), 1, false, 0));
+    }
+
+    /**
+     * Хранилище, объявляющее пакетный поиск; пакет проходится по одному хешу в порядке хешей.
+     */
+    private static final class SortedRepository implements FingerprintRepository {
+        private final FingerprintRepository delegate;
+        private final AtomicInteger batches = new AtomicInteger();
+
+        SortedRepository(FingerprintRepository delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void save(long hash, long posting) {
+            delegate.save(hash, posting);
+        }
+
+        @Override
+        public int forEachPosting(long hash, LongConsumer visitor) {
+            return delegate.forEachPosting(hash, visitor);
+        }
+
+        @Override
+        public void forEachHash(LongConsumer visitor) {
+            delegate.forEachHash(visitor);
+        }
+
+        @Override
+        public long forEachPostingSorted(long[] hashes, int count, IndexedPostingVisitor visitor) {
+            batches.incrementAndGet();
+            return FingerprintRepository.super.forEachPostingSorted(hashes, count, visitor);
+        }
+
+        @Override
+        public boolean supportsSortedLookup() {
+            return true;
+        }
+    }
+
+    @Test
+    void earlyExitHeuristicStopsOnceLeaderIsFarAhead() {
+        InMemoryFingerprintDatabase early = new InMemoryFingerprintDatabase(new InMemorySongRepository(),
+                new InMemoryFingerprintRepository(), Double.POSITIVE_INFINITY, 10, ForkJoinPool.commonPool(),
+                Integer.MAX_VALUE, true);
+        LongArray hashes = new LongArray();
+        for (int i = 0; i < 2_000; i++) {
+            hashes.add(10_000L + 4L * i);
+        }
+        early.addTrack("id1", "track1", hashes);
+        early.addTrack("id2", "track2", LongArray.of(10_000L, 10_004L, 10_008L));
+
+        TrackMatch match = early.findBestMatch(hashes, 0).orElseThrow();
+        assertEquals("id1", match.getTrackId());
+        // После первого блока у id1 256 совпадений, у id2 три: в таком темпе ему не догнать.
+        // Число совпадений и уверенность — по просмотренным 256 хешам, а не по всем 2000
+        assertEquals(256, match.getHashesConsumed());
+        assertEquals(256, match.getMatchScore());
+        assertEquals(1f, match.getConfidence());
+    }
+
+    @Test
+    void earlyExitHeuristicReadsWholeQueryWhenUndecided() {
+        InMemoryFingerprintDatabase early = new InMemoryFingerprintDatabase(new InMemorySongRepository(),
+                new InMemoryFingerprintRepository(), Double.POSITIVE_INFINITY, 10, ForkJoinPool.commonPool(),
+                Integer.MAX_VALUE, true);
+        LongArray hashes = new LongArray();
+        for (int i = 0; i < 1_000; i++) {
+            hashes.add(10_000L + 4L * i);
+        }
+        // Одинаковые треки: лидер не отрывается до конца запроса
+        early.addTrack("id1", "track1", hashes);
+        early.addTrack("id2", "track2", hashes);
+
+        TrackMatch match = early.findBestMatch(hashes, 0).orElseThrow();
+        assertEquals("id1", match.getTrackId());
+        assertEquals(1_000, match.getHashesConsumed());
+        assertEquals(1_000, match.getMatchScore());
+    }
+
+    @Test
+    void rejectsNonPositiveParallelThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryFingerprintDatabase(
+                new InMemorySongRepository(), new InMemoryFingerprintRepository(), Double.POSITIVE_INFINITY, 1,
+                ForkJoinPool.commonPool(), 0));
+    }
+}
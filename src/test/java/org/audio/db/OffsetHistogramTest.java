@@ -0,0 +1,297 @@
+package org.audio.db;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffsetHistogramTest {
+
+    @Test
+    void matchesBoxedCountsAcrossGrowthAndReuse() {
+        Random random = new Random(7);
+        OffsetHistogram histogram = new OffsetHistogram();
+        // Запросы разного размера: таблица растёт на больших и переиспользуется на малых
+        for (int query : new int[]{50, 20_000, 300, 100_000, 10}) {
+            int tracks = 1 + random.nextInt(500);
+            histogram.reset(tracks);
+            Map<Integer, Map<Integer, Integer>> expected = new HashMap<>();
+            for (int i = 0; i < query; i++) {
+                int ordinal = random.nextInt(tracks);
+                int delta = random.nextInt(400) - 200;
+                histogram.add(ordinal, delta);
+                expected.computeIfAbsent(ordinal, k -> new HashMap<>()).merge(delta, 1, Integer::sum);
+            }
+
+            histogram.align(Integer.MAX_VALUE);
+            assertEquals(expected.size(), histogram.matchedTracks());
+            assertEquals(expected.size(), histogram.candidateCount());
+            int previous = -1;
+            for (int i = 0; i < histogram.candidateCount(); i++) {
+                int ordinal = histogram.trackAt(i);
+                assertTrue(ordinal > previous);
+                previous = ordinal;
+                Map<Integer, Integer> deltas = expected.get(ordinal);
+                int best = deltas.values().stream().max(Integer::compare).orElseThrow();
+                assertEquals(deltas.values().stream().mapToInt(Integer::intValue).sum(), histogram.matchCount(ordinal));
+                assertEquals(best, histogram.alignedScore(ordinal));
+                assertEquals(best, (int) deltas.get(histogram.bestDelta(ordinal)));
+            }
+        }
+    }
+
+    @Test
+    void resetForgetsPreviousQuery() {
+        OffsetHistogram histogram = new OffsetHistogram();
+        histogram.reset(4);
+        histogram.add(3, -5);
+        histogram.add(3, -5);
+
+        histogram.reset(4);
+        assertEquals(0, histogram.matchedTracks());
+        histogram.add(3, 7);
+        histogram.align(1);
+        assertEquals(1, histogram.matchCount(3));
+        assertEquals(1, histogram.alignedScore(3));
+        assertEquals(7, histogram.bestDelta(3));
+    }
+
+    @Test
+    void visitorAppliesQueryOffset() {
+        OffsetHistogram histogram = new OffsetHistogram();
+        histogram.reset(2);
+        histogram.setQueryOffset(10);
+        histogram.accept(SongMatch.posting(1, 15));
+        histogram.setQueryOffset(20);
+        histogram.accept(SongMatch.posting(1, 25));
+        histogram.accept(SongMatch.posting(1, 3));
+        histogram.align(1);
+
+        assertEquals(3, histogram.matchCount(1));
+        assertEquals(2, histogram.alignedScore(1));
+        assertEquals(5, histogram.bestDelta(1));
+    }
+
+    @Test
+    void ignoresTracksAddedAfterQueryStarted() {
+        OffsetHistogram histogram = new OffsetHistogram();
+        histogram.reset(2);
+        histogram.add(2, 0);
+        assertEquals(0, histogram.matchedTracks());
+    }
+
+    @Test
+    void alignsOnlyTracksWithMostMatches() {
+        OffsetHistogram histogram = new OffsetHistogram();
+        histogram.reset(6);
+        // Совпадения треков 0..5: 3, 1, 5, 3, 3, 2
+        int[] hits = {3, 1, 5, 3, 3, 2};
+        for (int ordinal = hits.length - 1; ordinal >= 0; ordinal--) {
+            for (int i = 0; i < hits[ordinal]; i++) {
+                histogram.add(ordinal, 0);
+            }
+        }
+
+        histogram.align(3);
+        assertEquals(6, histogram.matchedTracks());
+        assertEquals(3, histogram.candidateCount());
+        // Трек 2 по числу совпадений, из равных треков 0, 3 и 4 — с меньшими номерами
+        assertEquals(0, histogram.trackAt(0));
+        assertEquals(2, histogram.trackAt(1));
+        assertEquals(3, histogram.trackAt(2));
+        assertEquals(5, histogram.alignedScore(2));
+        assertEquals(3, histogram.alignedScore(0));
+        assertEquals(0, histogram.alignedScore(4));
+        assertEquals(3, histogram.matchCount(4));
+    }
+
+    @Test
+    void candidatesMatchSortedSelection() {
+        Random random = new Random(11);
+        OffsetHistogram histogram = new OffsetHistogram();
+        for (int round = 0; round < 50; round++) {
+            int tracks = 1 + random.nextInt(300);
+            int limit = 1 + random.nextInt(tracks);
+            histogram.reset(tracks);
+            int[] hits = new int[tracks];
+            for (int i = 0; i < 2_000; i++) {
+                // Мало различных значений, чтобы на пороге часто были равные треки
+                int ordinal = random.nextInt(tracks);
+                if (hits[ordinal] < 8) {
+                    hits[ordinal]++;
+                    histogram.add(ordinal, i);
+                }
+            }
+            histogram.align(limit);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int ordinal = 0; ordinal < tracks; ordinal++) {
+                if (hits[ordinal] > 0) {
+                    expected.add(ordinal);
+                }
+            }
+            expected.sort(Comparator.comparingInt((Integer ordinal) -> -hits[ordinal]).thenComparingInt(ordinal -> ordinal));
+            expected = new ArrayList<>(expected.subList(0, Math.min(limit, expected.size())));
+            Collections.sort(expected);
+
+            assertEquals(expected.size(), histogram.candidateCount());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals((int) expected.get(i), histogram.trackAt(i));
+            }
+        }
+    }
+
+    @Test
+    void mergedPartsMatchSingleHistogram() {
+        Random random = new Random(5);
+        OffsetHistogram whole = new OffsetHistogram();
+        OffsetHistogram merged = new OffsetHistogram();
+        whole.reset(100);
+        merged.reset(100);
+        PartialHistogram[] partials = merged.partials(4);
+        for (PartialHistogram partial : partials) {
+            for (int i = 0; i < 3_000; i++) {
+                int ordinal = random.nextInt(100);
+                int delta = random.nextInt(50);
+                whole.add(ordinal, delta);
+                partial.add(ordinal, delta);
+            }
+        }
+        for (PartialHistogram partial : partials) {
+            merged.merge(partial);
+        }
+        whole.align(20);
+        merged.align(20);
+
+        assertEquals(whole.matchedTracks(), merged.matchedTracks());
+        assertEquals(whole.candidateCount(), merged.candidateCount());
+        for (int i = 0; i < whole.candidateCount(); i++) {
+            int ordinal = whole.trackAt(i);
+            assertEquals(ordinal, merged.trackAt(i));
+            assertEquals(whole.matchCount(ordinal), merged.matchCount(ordinal));
+            assertEquals(whole.alignedScore(ordinal), merged.alignedScore(ordinal));
+            assertEquals(whole.bestDelta(ordinal), merged.bestDelta(ordinal));
+        }
+    }
+
+    @Test
+    void recountAfterOverflowMatchesBufferedCounts() {
+        Random random = new Random(9);
+        long[] postings = new long[5_000];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = SongMatch.posting(random.nextInt(100), random.nextInt(60));
+        }
+        OffsetHistogram buffered = new OffsetHistogram();
+        OffsetHistogram limited = new OffsetHistogram(1_000);
+        for (OffsetHistogram histogram : List.of(buffered, limited)) {
+            histogram.reset(100);
+            feed(histogram, postings);
+            histogram.align(20);
+        }
+        assertFalse(buffered.needsRecount());
+        assertTrue(limited.needsRecount());
+        limited.startRecount();
+        feed(limited, postings);
+        limited.finishRecount();
+
+        assertEquals(buffered.candidateCount(), limited.candidateCount());
+        for (int i = 0; i < buffered.candidateCount(); i++) {
+            int ordinal = buffered.trackAt(i);
+            assertEquals(ordinal, limited.trackAt(i));
+            assertEquals(buffered.matchCount(ordinal), limited.matchCount(ordinal));
+            assertEquals(buffered.alignedScore(ordinal), limited.alignedScore(ordinal));
+            assertEquals(buffered.bestDelta(ordinal), limited.bestDelta(ordinal));
+        }
+
+        // Следующий запрос снова хранит пары в буфере
+        limited.reset(100);
+        limited.add(1, 2);
+        limited.align(20);
+        assertFalse(limited.needsRecount());
+        assertEquals(1, limited.alignedScore(1));
+    }
+
+    @Test
+    void mergeOverflowsWhenPartsExceedLimit() {
+        // Каждой из трёх частей достаётся по 4 совпадения из 12, вместе их 12
+        OffsetHistogram merged = new OffsetHistogram(12);
+        merged.reset(4);
+        PartialHistogram[] partials = merged.partials(3);
+        for (int part = 0; part < 3; part++) {
+            for (int i = 0; i < 4; i++) {
+                partials[part].add(part, i);
+            }
+            assertFalse(partials[part].overflowed());
+        }
+        partials[2].add(3, 0);
+        assertTrue(partials[2].overflowed());
+        for (int part = 0; part < 3; part++) {
+            merged.merge(partials[part]);
+        }
+        merged.align(4);
+        assertTrue(merged.needsRecount());
+        assertEquals(4, merged.matchCount(2));
+        assertEquals(1, merged.matchCount(3));
+    }
+
+    @Test
+    void partialsAreReusedAndCountSparseTracks() {
+        OffsetHistogram histogram = new OffsetHistogram();
+        histogram.reset(1_000_000);
+        PartialHistogram[] first = histogram.partials(2);
+        PartialHistogram partial = first[1];
+        // Больше треков, чем в начальной таблице частичной гистограммы
+        for (int ordinal = 0; ordinal < 500; ordinal++) {
+            partial.add(999_999 - ordinal, 0);
+            partial.add(999_999 - ordinal, 1);
+        }
+        partial.add(1_000_000, 0);
+        assertEquals(500, partial.matchedTracks());
+        assertEquals(999_999, partial.trackAt(0));
+        assertEquals(2, partial.matchCountAt(0));
+        assertEquals(1_000, partial.hitCount());
+
+        histogram.reset(1_000_000);
+        PartialHistogram[] second = histogram.partials(2);
+        assertSame(partial, second[1]);
+        assertEquals(0, partial.matchedTracks());
+        assertEquals(0, partial.hitCount());
+    }
+
+    /**
+     * Вхождения по 10 на хеш запроса, как при обходе хранилища.
+     */
+    private static void feed(OffsetHistogram histogram, long[] postings) {
+        for (int i = 0; i < postings.length; i++) {
+            histogram.setQueryOffset(i / 10);
+            histogram.accept(postings[i]);
+        }
+    }
+
+    @Test
+    void realignsAfterMoreMatches() {
+        OffsetHistogram histogram = new OffsetHistogram();
+        histogram.reset(3);
+        histogram.add(0, 4);
+        histogram.add(0, 4);
+        histogram.add(1, 9);
+        histogram.align(1);
+        assertEquals(2, histogram.alignedScore(0));
+
+        // Трек 1 обгоняет трек 0: кандидат меняется, прежние счётчики не остаются
+        histogram.add(1, 9);
+        histogram.add(1, 9);
+        histogram.align(1);
+        assertEquals(1, histogram.candidateCount());
+        assertEquals(1, histogram.trackAt(0));
+        assertEquals(3, histogram.alignedScore(1));
+        assertEquals(0, histogram.alignedScore(0));
+    }
+}
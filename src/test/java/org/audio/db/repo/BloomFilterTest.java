@@ -0,0 +1,47 @@
+package org.audio.db.repo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void neverRejectsAddedKeys() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (long key = 0; key < 50_000; key++) {
+            filter.put(key * 31);
+        }
+        for (long key = 0; key < 50_000; key++) {
+            assertTrue(filter.mightContain(key * 31));
+        }
+        assertTrue(filter.layerCount() > 1);
+    }
+
+    @Test
+    void keepsFalsePositiveRateWhileGrowing() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            filter.put(random.nextLong() & 0x00FF_FFFF_FFFF_FFFFL);
+        }
+
+        int falsePositives = 0;
+        int probes = 200_000;
+        for (int i = 0; i < probes; i++) {
+            // Другой тег формата в битах 48–55: таких ключей в фильтре нет
+            if (filter.mightContain(random.nextLong() | 0x0100_0000_0000_0000L)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < probes * 0.015, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1.0));
+    }
+}
@@ -0,0 +1,59 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilteredFingerprintRepositoryTest {
+
+    @Test
+    void rejectsAbsentHashesAndCountsProbes() {
+        FilteredFingerprintRepository repository =
+                new FilteredFingerprintRepository(new PackedFingerprintRepository(), 1_000, 0.01);
+        for (int i = 0; i < 500; i++) {
+            repository.save(i * 1_000L, SongMatch.posting(0, i));
+        }
+
+        int found = 0;
+        for (long hash = 0; hash < 500_000; hash++) {
+            found += repository.forEachPosting(hash, posting -> { });
+        }
+
+        assertEquals(500, found);
+        assertEquals(500_000, repository.probes());
+        assertEquals(500_000 - 500, repository.rejected() + repository.falsePositives());
+        assertTrue(repository.rejectionRate() > 0.97);
+        assertTrue(repository.falsePositiveRate() < 0.02);
+    }
+
+    @Test
+    void sortedBatch_skipsRejectedHashesAndKeepsIndexes() {
+        FilteredFingerprintRepository repository =
+                new FilteredFingerprintRepository(new PackedFingerprintRepository(), 1_000, 0.01);
+        for (int i = 0; i < 500; i++) {
+            repository.save(i * 1_000L, SongMatch.posting(0, i));
+        }
+
+        long[] hashes = new long[5_000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = i * 100L;
+        }
+        long found = repository.forEachPostingSorted(hashes, hashes.length,
+                (index, posting) -> assertEquals(SongMatch.posting(0, index / 10), posting));
+
+        assertEquals(500, found);
+        assertEquals(5_000, repository.probes());
+        assertEquals(5_000 - 500, repository.rejected() + repository.falsePositives());
+    }
+
+    @Test
+    void fillsFilterFromExistingIndex() {
+        InMemoryFingerprintRepository existing = new InMemoryFingerprintRepository();
+        existing.save(42L, SongMatch.posting(3, 7));
+
+        FilteredFingerprintRepository repository = new FilteredFingerprintRepository(existing, 10, 0.01);
+        assertEquals(1, repository.forEachPosting(42L, posting -> assertEquals(SongMatch.posting(3, 7), posting)));
+        assertEquals(0, repository.rejected());
+    }
+}
@@ -0,0 +1,76 @@
+package org.audio.db.repo;
+
+import org.audio.fingerprints.FingerprintFormat;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HammingIndexTest {
+
+    @Test
+    void findsExactlyTheHashesWithinDistance() {
+        Random random = new Random(3);
+        List<Long> hashes = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            // Как в отпечатках: заняты младшие биты трёх 16-битных полей
+            hashes.add(random.nextLong() & 0x07FF_07FF_003FL);
+        }
+        for (int blocks = 1; blocks <= 4; blocks++) {
+            HammingIndex index = new HammingIndex(blocks);
+            hashes.forEach(index::add);
+
+            for (int query = 0; query < 200; query++) {
+                long hash = hashes.get(random.nextInt(hashes.size())) ^ (1L << random.nextInt(12));
+                for (int distance = 0; distance <= 3; distance++) {
+                    Set<Long> expected = new HashSet<>();
+                    for (long candidate : hashes) {
+                        if (Long.bitCount(candidate ^ hash) <= distance) {
+                            expected.add(candidate);
+                        }
+                    }
+                    List<Long> found = new ArrayList<>();
+                    int count = index.forEachWithin(hash, distance, found::add);
+
+                    assertEquals(expected.size(), count);
+                    assertEquals(expected.size(), found.size(), "every hash is reported once");
+                    assertEquals(expected, new HashSet<>(found), "blocks=" + blocks + ", distance=" + distance);
+                }
+            }
+        }
+    }
+
+    @Test
+    void addsEachHashOnce() {
+        HammingIndex index = new HammingIndex(2);
+        assertTrue(index.add(0L));
+        assertFalse(index.add(0L));
+        assertTrue(index.add(1L));
+        assertEquals(2, index.size());
+
+        List<Long> found = new ArrayList<>();
+        index.forEachWithin(0L, 1, found::add);
+        assertEquals(List.of(0L, 1L), found.stream().sorted().toList());
+    }
+
+    @Test
+    void neverCrossesFormatTag() {
+        HammingIndex index = new HammingIndex(2);
+        long hash = 0x0123_4567_89ABL;
+        index.add(hash | FingerprintFormat.SR_22050.hashTag());
+
+        assertEquals(0, index.forEachWithin(hash, 3, found -> fail()));
+        assertEquals(1, index.forEachWithin(hash ^ 0b101 | FingerprintFormat.SR_22050.hashTag(), 2, found -> { }));
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new HammingIndex(0));
+        assertThrows(IllegalArgumentException.class, () -> new HammingIndex(2).forEachWithin(0L, -1, found -> { }));
+    }
+}
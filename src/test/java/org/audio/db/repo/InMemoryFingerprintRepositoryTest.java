@@ -0,0 +1,115 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryFingerprintRepositoryTest {
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int POSTINGS_PER_WRITER = 100_000;
+    // Мало хешей: писатели постоянно дописывают одни и те же списки и растят их массивы
+    private static final int HASHES = 257;
+
+    @Test
+    void concurrentWritersLoseNoPostings() throws Exception {
+        stress(InMemoryFingerprintRepository::new);
+    }
+
+    @Test
+    void packedRepositoryPassesSameStressTest() throws Exception {
+        stress(PackedFingerprintRepository::new);
+    }
+
+    @Test
+    void countPostingsFollowsSaves() {
+        InMemoryFingerprintRepository repository = new InMemoryFingerprintRepository();
+        assertEquals(0, repository.countPostings(1L));
+        for (int i = 0; i < 5; i++) {
+            repository.save(1L, SongMatch.posting(i, i));
+        }
+        assertEquals(5, repository.countPostings(1L));
+        assertEquals(5, repository.forEachPosting(1L, posting -> { }));
+    }
+
+    private static void stress(Supplier<FingerprintRepository> factory) throws Exception {
+        FingerprintRepository repository = factory.get();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                int ordinal = writer + 1;
+                writers.add(pool.submit(() -> {
+                    start.await();
+                    for (int offset = 0; offset < POSTINGS_PER_WRITER; offset++) {
+                        repository.save(offset % HASHES, SongMatch.posting(ordinal, offset));
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < READERS; reader++) {
+                readers.add(pool.submit(() -> {
+                    start.await();
+                    int[] lastCounts = new int[HASHES];
+                    while (writing.get()) {
+                        for (int hash = 0; hash < HASHES; hash++) {
+                            int expectedHash = hash;
+                            // Недописанное вхождение было бы нулём или чужим хешем
+                            int count = repository.forEachPosting(hash, posting -> {
+                                assertTrue(SongMatch.ordinalOf(posting) >= 1);
+                                assertEquals(expectedHash, SongMatch.offsetOf(posting) % HASHES);
+                            });
+                            assertTrue(count >= lastCounts[hash], "list never shrinks");
+                            lastCounts[hash] = count;
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BitSet[] seen = new BitSet[WRITERS + 1];
+        for (int ordinal = 1; ordinal <= WRITERS; ordinal++) {
+            seen[ordinal] = new BitSet(POSTINGS_PER_WRITER);
+        }
+        long total = 0;
+        for (int hash = 0; hash < HASHES; hash++) {
+            total += repository.forEachPosting(hash, posting -> {
+                BitSet offsets = seen[SongMatch.ordinalOf(posting)];
+                int offset = SongMatch.offsetOf(posting);
+                assertFalse(offsets.get(offset), "posting stored twice");
+                offsets.set(offset);
+            });
+        }
+        assertEquals((long) WRITERS * POSTINGS_PER_WRITER, total);
+        for (int ordinal = 1; ordinal <= WRITERS; ordinal++) {
+            assertEquals(POSTINGS_PER_WRITER, seen[ordinal].cardinality());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemorySongRepositoryTest {
+
+    @Test
+    void assignsDenseStableOrdinals() {
+        InMemorySongRepository repository = new InMemorySongRepository();
+        repository.save(new SongData("a", "Track A"));
+        repository.save(new SongData("b", "Track B"));
+        repository.save(new SongData("a", "Track A, remaster"));
+
+        assertEquals(0, repository.ordinalOf("a"));
+        assertEquals(1, repository.ordinalOf("b"));
+        assertEquals(2, repository.ordinalCount());
+        assertEquals("Track A, remaster", repository.findByOrdinal(0).orElseThrow().name);
+        assertEquals("b", repository.findByOrdinal(1).orElseThrow().id);
+    }
+
+    @Test
+    void findByOrdinal_isEmptyForUnknownOrUnsavedSongs() {
+        InMemorySongRepository repository = new InMemorySongRepository();
+        assertEquals(0, repository.ordinalOf("pending"));
+
+        assertTrue(repository.findByOrdinal(0).isEmpty());
+        assertTrue(repository.findByOrdinal(1).isEmpty());
+        assertTrue(repository.findByOrdinal(-1).isEmpty());
+    }
+}
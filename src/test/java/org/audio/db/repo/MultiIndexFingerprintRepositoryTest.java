@@ -0,0 +1,55 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiIndexFingerprintRepositoryTest {
+
+    @Test
+    void matchesNeighborEnumeration() {
+        PackedFingerprintRepository base = new PackedFingerprintRepository();
+        Random random = new Random(5);
+        long[] hashes = new long[5_000];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong() & 0x03FF_03FF_001FL;
+            base.save(hashes[i], SongMatch.posting(i % 7, i));
+        }
+        // Часть хешей есть до создания мультииндекса, часть добавляется через него
+        MultiIndexFingerprintRepository repository = new MultiIndexFingerprintRepository(base, 2);
+        for (int i = 0; i < 1_000; i++) {
+            repository.save(hashes[i] ^ 0x10000L, SongMatch.posting(8, i));
+        }
+
+        for (int query = 0; query < 100; query++) {
+            long hash = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(10));
+            for (int distance = 0; distance <= 3; distance++) {
+                List<Long> expected = new ArrayList<>();
+                int expectedCount = base.forEachPostingWithin(hash, distance, expected::add);
+                List<Long> actual = new ArrayList<>();
+                int count = repository.forEachPostingWithin(hash, distance, actual::add);
+
+                assertEquals(expectedCount, count);
+                assertEquals(expected.stream().sorted().toList(), actual.stream().sorted().toList());
+            }
+        }
+        assertEquals(base.hashCount(), repository.index().size());
+    }
+
+    @Test
+    void delegatesExactLookups() {
+        InMemoryFingerprintRepository base = new InMemoryFingerprintRepository();
+        MultiIndexFingerprintRepository repository = new MultiIndexFingerprintRepository(base, 2);
+        repository.save(42L, SongMatch.posting(1, 2));
+
+        assertEquals(1, repository.forEachPosting(42L, posting -> { }));
+        assertEquals(1, base.forEachPosting(42L, posting -> { }));
+        assertEquals(0, repository.forEachPostingWithin(43L, 0, posting -> { }));
+        assertEquals(1, repository.forEachPostingWithin(43L, 1, posting -> { }));
+    }
+}
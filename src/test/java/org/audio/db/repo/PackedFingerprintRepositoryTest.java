@@ -0,0 +1,92 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.audio.utils.LongArray;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedFingerprintRepositoryTest {
+
+    @Test
+    void findByHash_returnsNullForUnknownHash() {
+        PackedFingerprintRepository repository = new PackedFingerprintRepository();
+        assertNull(repository.findByHash(42L));
+        assertTrue(repository.findByHashes(List.of(1L, 2L)).isEmpty());
+    }
+
+    @Test
+    void matchesMapRepositoryOnRandomIngest() {
+        PackedFingerprintRepository packed = new PackedFingerprintRepository();
+        InMemoryFingerprintRepository reference = new InMemoryFingerprintRepository();
+        Random random = new Random(7);
+
+        // Малый диапазон хешей даёт и одиночные вхождения, и длинные списки с переносом блоков
+        List<Long> hashes = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            long hash = random.nextInt(5_000) * 0x1_0001L;
+            SongMatch match = new SongMatch(random.nextInt(300), i);
+            packed.save(hash, match);
+            reference.save(hash, match);
+            hashes.add(hash);
+        }
+
+        for (long hash : hashes.subList(0, 2_000)) {
+            assertSameMatches(reference.findByHash(hash), packed.findByHash(hash));
+            assertEquals(reference.countPostings(hash), packed.countPostings(hash));
+
+            // Список длиннее предела не передаётся, но его длина возвращается
+            int count = packed.countPostings(hash);
+            for (FingerprintRepository repository : List.of(reference, packed)) {
+                int[] visited = {0};
+                assertEquals(count, repository.forEachPostingUpTo(hash, 10, posting -> visited[0]++));
+                assertEquals(count > 10 ? 0 : count, visited[0]);
+            }
+        }
+        assertSameMatches(reference.findByHashes(hashes.subList(0, 100)), packed.findByHashes(hashes.subList(0, 100)));
+        assertEquals(50_000, packed.postingCount());
+        assertTrue(packed.hashCount() <= 5_000);
+    }
+
+    @Test
+    void keepsNegativeHashesAndLargeOffsets() {
+        PackedFingerprintRepository repository = new PackedFingerprintRepository();
+        repository.save(-1L, new SongMatch(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        repository.save(0L, new SongMatch(1, -1));
+
+        List<SongMatch> matches = repository.findByHash(-1L);
+        assertEquals(1, matches.size());
+        assertEquals(Integer.MAX_VALUE, matches.get(0).songOrdinal);
+        assertEquals(Integer.MAX_VALUE, matches.get(0).offset);
+        assertEquals(1, repository.findByHash(0L).get(0).songOrdinal);
+        assertEquals(-1, repository.findByHash(0L).get(0).offset);
+    }
+
+    @Test
+    void forEachPosting_visitsPackedPostingsInInsertionOrder() {
+        PackedFingerprintRepository repository = new PackedFingerprintRepository();
+        for (int i = 0; i < 5; i++) {
+            repository.save(7L, SongMatch.posting(i, 10 * i));
+        }
+
+        LongArray visited = new LongArray();
+        assertEquals(5, repository.forEachPosting(7L, visited::add));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, SongMatch.ordinalOf(visited.get(i)));
+            assertEquals(10 * i, SongMatch.offsetOf(visited.get(i)));
+        }
+        assertEquals(0, repository.forEachPosting(8L, visited::add));
+    }
+
+    private static void assertSameMatches(List<SongMatch> expected, List<SongMatch> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).songOrdinal, actual.get(i).songOrdinal);
+            assertEquals(expected.get(i).offset, actual.get(i).offset);
+        }
+    }
+}
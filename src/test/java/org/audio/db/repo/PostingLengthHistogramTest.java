@@ -0,0 +1,52 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingLengthHistogramTest {
+
+    @Test
+    void groupsListLengthsByPowersOfTwo() {
+        InMemoryFingerprintRepository repository = new InMemoryFingerprintRepository();
+        // Длины списков: 1, 2, 3, 5 и 40
+        int[] lengths = {1, 2, 3, 5, 40};
+        for (int hash = 0; hash < lengths.length; hash++) {
+            for (int i = 0; i < lengths[hash]; i++) {
+                repository.save(hash, SongMatch.posting(i, hash));
+            }
+        }
+
+        PostingLengthHistogram histogram = PostingLengthHistogram.of(repository, 2);
+        assertEquals(5, histogram.hashCount());
+        assertEquals(51, histogram.postingCount());
+
+        List<PostingLengthHistogram.Bucket> buckets = histogram.buckets();
+        assertEquals(4, buckets.size());
+        assertEquals(1, buckets.get(0).minLength());
+        assertEquals(1, buckets.get(0).hashes());
+        assertEquals(2, buckets.get(1).minLength());
+        assertEquals(3, buckets.get(1).maxLength());
+        assertEquals(2, buckets.get(1).hashes());
+        assertEquals(5, buckets.get(1).postings());
+        assertEquals(32, buckets.get(3).minLength());
+        assertEquals(40, buckets.get(3).postings());
+
+        List<PostingLengthHistogram.HeavyHash> heaviest = histogram.heaviest();
+        assertEquals(2, heaviest.size());
+        assertEquals(4L, heaviest.get(0).hash());
+        assertEquals(40, heaviest.get(0).postings());
+        assertEquals(5, heaviest.get(1).postings());
+    }
+
+    @Test
+    void emptyRepositoryHasNoBuckets() {
+        PostingLengthHistogram histogram = PostingLengthHistogram.of(new PackedFingerprintRepository(), 10);
+        assertEquals(0, histogram.hashCount());
+        assertTrue(histogram.buckets().isEmpty());
+        assertTrue(histogram.heaviest().isEmpty());
+    }
+}
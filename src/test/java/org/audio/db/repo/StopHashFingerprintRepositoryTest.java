@@ -0,0 +1,73 @@
+package org.audio.db.repo;
+
+import org.audio.db.SongMatch;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StopHashFingerprintRepositoryTest {
+
+    @Test
+    void capsPostingsAndSkipsStopHashes() {
+        PackedFingerprintRepository base = new PackedFingerprintRepository();
+        StopHashFingerprintRepository repository = new StopHashFingerprintRepository(base, 3);
+        for (int i = 0; i < 10; i++) {
+            repository.save(1L, SongMatch.posting(i, 0));
+        }
+        repository.save(2L, SongMatch.posting(0, 1));
+
+        // Одно вхождение сверх предела остаётся, чтобы хеш узнавался как стоп-хеш
+        assertEquals(4, base.countPostings(1L));
+        assertEquals(4, repository.countPostings(1L));
+        assertEquals(6, repository.droppedPostings());
+        assertTrue(repository.isStopHash(1L));
+        assertFalse(repository.isStopHash(2L));
+
+        assertEquals(0, repository.forEachPosting(1L, posting -> fail()));
+        assertEquals(1, repository.forEachPosting(2L, posting -> { }));
+        assertEquals(1, repository.forEachPostingWithin(3L, 1, posting -> { }));
+        assertTrue(repository.skippedLookups() >= 2);
+    }
+
+    @Test
+    void lookupReadsPostingListOnce() {
+        int[] counts = {0};
+        PackedFingerprintRepository base = new PackedFingerprintRepository() {
+            @Override
+            public int countPostings(long hash) {
+                counts[0]++;
+                return super.countPostings(hash);
+            }
+        };
+        StopHashFingerprintRepository repository = new StopHashFingerprintRepository(base, 2);
+        for (int i = 0; i < 5; i++) {
+            repository.save(1L, SongMatch.posting(i, 0));
+        }
+        repository.save(2L, SongMatch.posting(0, 1));
+
+        counts[0] = 0;
+        assertEquals(0, repository.forEachPosting(1L, posting -> fail()));
+        assertEquals(1, repository.forEachPosting(2L, posting -> { }));
+        assertEquals(0, counts[0]);
+        assertEquals(1, repository.skippedLookups());
+    }
+
+    @Test
+    void isFoundInDecoratorChain() {
+        PackedFingerprintRepository base = new PackedFingerprintRepository();
+        StopHashFingerprintRepository stopHashes = new StopHashFingerprintRepository(
+                new FilteredFingerprintRepository(base, 100, 0.01), 10);
+        FingerprintRepository chain = new MultiIndexFingerprintRepository(stopHashes, 2);
+
+        assertSame(stopHashes, DelegatingFingerprintRepository.find(chain, StopHashFingerprintRepository.class).orElseThrow());
+        assertTrue(DelegatingFingerprintRepository.find(chain, FilteredFingerprintRepository.class).isPresent());
+        assertSame(base, DelegatingFingerprintRepository.find(chain, PackedFingerprintRepository.class).orElseThrow());
+        assertTrue(DelegatingFingerprintRepository.find(base, StopHashFingerprintRepository.class).isEmpty());
+    }
+
+    @Test
+    void rejectsNonPositiveCap() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new StopHashFingerprintRepository(new PackedFingerprintRepository(), 0));
+    }
+}
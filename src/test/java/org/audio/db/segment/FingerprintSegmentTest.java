@@ -0,0 +1,228 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongData;
+import org.audio.db.SongMatch;
+import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.InMemoryFingerprintRepository;
+import org.audio.db.repo.InMemorySongRepository;
+import org.audio.fingerprints.FingerprintFormat;
+import org.audio.utils.LongArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FingerprintSegmentTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip_matchesInMemoryRepository() throws IOException {
+        FingerprintSegmentWriter writer = new FingerprintSegmentWriter(FingerprintFormat.SR_22050);
+        InMemoryFingerprintRepository reference = new InMemoryFingerprintRepository();
+        Random random = new Random(11);
+        LongArray hashes = new LongArray();
+        for (int i = 0; i < 30_000; i++) {
+            // Отрицательные хеши проверяют знаковый порядок сортировки
+            long hash = (random.nextInt(4_000) - 500) * 0x1_0001L;
+            long posting = SongMatch.posting(random.nextInt(50), i);
+            writer.add(hash, posting);
+            reference.save(hash, posting);
+            hashes.add(hash);
+        }
+
+        Path path = dir.resolve("a.seg");
+        writer.write(path);
+        FingerprintSegment segment = FingerprintSegment.open(path);
+
+        assertEquals(FingerprintFormat.SR_22050, segment.format());
+        assertEquals(30_000, segment.postingCount());
+        // Несжатые хеши и вхождения заняли бы 8 байт на хеш и 8 на вхождение
+        assertTrue(segment.sizeBytes() < 8L * segment.hashCount() + 8L * segment.postingCount());
+        for (int i = 0; i < 3_000; i++) {
+            long hash = hashes.get(i);
+            assertArrayEquals(sortedPostings(reference, hash), sortedPostings(segment, hash));
+            assertEquals(reference.countPostings(hash), segment.countPostings(hash));
+            assertEquals(segment.countPostings(hash), segment.forEachPostingUpTo(hash, 0, posting -> fail()));
+        }
+        for (long missing : new long[]{Long.MIN_VALUE, -500 * 0x1_0001L - 1, 12345L, Long.MAX_VALUE}) {
+            assertEquals(0, segment.forEachPosting(missing, posting -> fail()));
+            assertEquals(0, segment.countPostings(missing));
+        }
+        assertNull(segment.findByHash(12345L));
+    }
+
+    @Test
+    void sortedBatch_matchesLookupPerHash() throws IOException {
+        FingerprintSegmentWriter writer = new FingerprintSegmentWriter(FingerprintFormat.SR_22050);
+        Random random = new Random(13);
+        for (int i = 0; i < 20_000; i++) {
+            writer.add((random.nextInt(6_000) - 1_000) * 0x1_0001L, SongMatch.posting(random.nextInt(50), i));
+        }
+        Path path = dir.resolve("batch.seg");
+        writer.write(path);
+        FingerprintSegment segment = FingerprintSegment.open(path);
+
+        // Пакеты разной плотности: от соседних хешей до редких, с повторами и хешами вне сегмента
+        for (int size : new int[]{1, 10, 500, 5_000}) {
+            long[] hashes = new long[size + 3];
+            for (int i = 0; i < size; i++) {
+                hashes[i] = (random.nextInt(8_000) - 1_500) * 0x1_0001L + (random.nextInt(10) == 0 ? 1 : 0);
+            }
+            hashes[size] = Long.MIN_VALUE;
+            hashes[size + 1] = Long.MAX_VALUE;
+            hashes[size + 2] = hashes[0];
+            Arrays.sort(hashes);
+
+            LongArray[] batch = new LongArray[hashes.length];
+            long total = segment.forEachPostingSorted(hashes, hashes.length, (index, posting) -> {
+                if (batch[index] == null) {
+                    batch[index] = new LongArray();
+                }
+                batch[index].add(posting);
+            });
+            long expectedTotal = 0;
+            for (int i = 0; i < hashes.length; i++) {
+                long[] expected = sortedPostings(segment, hashes[i]);
+                long[] actual = batch[i] == null ? new long[0] : batch[i].toArray();
+                Arrays.sort(actual);
+                assertArrayEquals(expected, actual);
+                expectedTotal += expected.length;
+            }
+            assertEquals(expectedTotal, total);
+        }
+    }
+
+    @Test
+    void sortedBatch_onlyCountsFirstHashes() throws IOException {
+        FingerprintSegmentWriter writer = new FingerprintSegmentWriter(FingerprintFormat.SR_22050);
+        writer.add(5L, SongMatch.posting(0, 1));
+        writer.add(9L, SongMatch.posting(1, 2));
+        Path path = dir.resolve("prefix.seg");
+        writer.write(path);
+        FingerprintSegment segment = FingerprintSegment.open(path);
+
+        assertEquals(1, segment.forEachPostingSorted(new long[]{5L, 9L}, 1,
+                (index, posting) -> assertEquals(SongMatch.posting(0, 1), posting)));
+    }
+
+    @Test
+    void storesSongsByOrdinal() throws IOException {
+        FingerprintSegmentWriter writer = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        writer.addSong(0, new SongData("a", "Track A"));
+        writer.addSong(2, new SongData("c", "Трек C"));
+        writer.add(1L, SongMatch.posting(2, 0));
+        Path path = dir.resolve("songs.seg");
+        writer.write(path);
+
+        FingerprintSegment segment = FingerprintSegment.open(path);
+        assertEquals(2, segment.songCount());
+        LongArray ordinals = new LongArray();
+        segment.forEachSong((song, ordinal) -> ordinals.add(ordinal));
+        assertArrayEquals(new long[]{0, 2}, ordinals.toArray());
+
+        InMemorySongRepository songs = new InMemorySongRepository();
+        segment.restoreSongs(songs);
+        assertEquals(2, songs.ordinalOf("c"));
+        assertEquals("Трек C", songs.findByOrdinal(2).orElseThrow().name);
+        assertTrue(songs.findByOrdinal(1).isEmpty());
+    }
+
+    @Test
+    void restoreSongs_combinesTablesOfSegments() throws IOException {
+        FingerprintSegmentWriter first = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        first.addSong(2, new SongData("c", "Track C"));
+        first.write(dir.resolve("1.seg"));
+        FingerprintSegmentWriter second = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        second.addSong(0, new SongData("a", "Track A"));
+        second.write(dir.resolve("2.seg"));
+
+        InMemorySongRepository songs = new InMemorySongRepository();
+        FingerprintSegment.restoreSongs(List.of(FingerprintSegment.open(dir.resolve("1.seg")),
+                FingerprintSegment.open(dir.resolve("2.seg"))), songs);
+        assertEquals(0, songs.ordinalOf("a"));
+        assertEquals(2, songs.ordinalOf("c"));
+        assertTrue(songs.findByOrdinal(1).isEmpty());
+    }
+
+    @Test
+    void restoreSongs_rejectsRepositoryWithOtherOrdinals() throws IOException {
+        FingerprintSegmentWriter writer = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        writer.addSong(0, new SongData("a", "Track A"));
+        Path path = dir.resolve("conflict.seg");
+        writer.write(path);
+
+        InMemorySongRepository songs = new InMemorySongRepository();
+        songs.save(new SongData("other", "Other"));
+        assertThrows(IllegalStateException.class, () -> FingerprintSegment.open(path).restoreSongs(songs));
+    }
+
+    @Test
+    void merge_combinesPostingsAndSongs() throws IOException {
+        FingerprintSegmentWriter first = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        FingerprintSegmentWriter second = new FingerprintSegmentWriter(FingerprintFormat.SR_44100);
+        InMemoryFingerprintRepository reference = new InMemoryFingerprintRepository();
+        Random random = new Random(3);
+        for (int i = 0; i < 5_000; i++) {
+            long hash = random.nextInt(800);
+            long posting = SongMatch.posting(i % 2, i);
+            (i % 2 == 0 ? first : second).add(hash, posting);
+            reference.save(hash, posting);
+        }
+        first.addSong(0, new SongData("a", "Track A"));
+        second.addSong(1, new SongData("b", "Track B"));
+        first.write(dir.resolve("1.seg"));
+        second.write(dir.resolve("2.seg"));
+
+        Path merged = dir.resolve("merged.seg");
+        FingerprintSegmentWriter.merge(List.of(FingerprintSegment.open(dir.resolve("1.seg")),
+                FingerprintSegment.open(dir.resolve("2.seg"))), merged, new long[]{1, 2});
+        FingerprintSegment segment = FingerprintSegment.open(merged);
+
+        assertEquals(5_000, segment.postingCount());
+        assertArrayEquals(new long[]{1, 2}, segment.replacedGenerations());
+        assertEquals(0, FingerprintSegment.open(dir.resolve("1.seg")).replacedGenerations().length);
+        for (long hash = 0; hash < 800; hash++) {
+            assertArrayEquals(sortedPostings(reference, hash), sortedPostings(segment, hash));
+        }
+        List<String> ids = new ArrayList<>();
+        segment.forEachSong((song, ordinal) -> ids.add(ordinal + ":" + song.id));
+        assertEquals(List.of("0:a", "1:b"), ids);
+    }
+
+    @Test
+    void emptySegment_hasNoPostings() throws IOException {
+        Path path = dir.resolve("empty.seg");
+        new FingerprintSegmentWriter(FingerprintFormat.SR_11025).write(path);
+
+        FingerprintSegment segment = FingerprintSegment.open(path);
+        assertEquals(0, segment.hashCount());
+        assertEquals(0, segment.forEachPosting(0L, posting -> fail()));
+        assertEquals(0, segment.forEachPostingSorted(new long[]{0L, 1L}, 2, (index, posting) -> fail()));
+        assertThrows(UnsupportedOperationException.class, () -> segment.save(0L, 0L));
+    }
+
+    @Test
+    void open_rejectsForeignFiles() throws IOException {
+        Path path = dir.resolve("garbage.seg");
+        Files.write(path, new byte[128]);
+        assertThrows(IOException.class, () -> FingerprintSegment.open(path));
+    }
+
+    private static long[] sortedPostings(FingerprintRepository repository, long hash) {
+        LongArray postings = new LongArray();
+        repository.forEachPosting(hash, postings::add);
+        long[] result = postings.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+}
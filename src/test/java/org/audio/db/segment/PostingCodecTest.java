@@ -0,0 +1,59 @@
+package org.audio.db.segment;
+
+import org.audio.db.SongMatch;
+import org.audio.utils.LongArray;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostingCodecTest {
+
+    @Test
+    void roundTrip_keepsSortedPostings() {
+        Random random = new Random(9);
+        long[] postings = new long[500];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = SongMatch.posting(random.nextInt(20), random.nextInt(100_000));
+        }
+        Arrays.sort(postings);
+
+        byte[] encoded = new byte[PostingCodec.maxEncodedLength(postings.length)];
+        int length = PostingCodec.encode(postings, 0, postings.length, encoded);
+        assertTrue(length < postings.length * 4, "bytes: " + length);
+
+        LongArray decoded = new LongArray();
+        assertEquals(postings.length, PostingCodec.decode(ByteBuffer.wrap(encoded), 0, decoded::add));
+        assertArrayEquals(postings, decoded.toArray());
+    }
+
+    @Test
+    void roundTrip_handlesExtremeValues() {
+        long[] postings = {
+                SongMatch.posting(0, 0),
+                SongMatch.posting(0, Integer.MAX_VALUE),
+                SongMatch.posting(0, -1),
+                SongMatch.posting(Integer.MAX_VALUE, -1)
+        };
+        byte[] encoded = new byte[PostingCodec.maxEncodedLength(postings.length)];
+        int length = PostingCodec.encode(postings, 0, postings.length, encoded);
+
+        LongArray decoded = new LongArray();
+        PostingCodec.decode(ByteBuffer.wrap(encoded, 0, length), 0, decoded::add);
+        assertArrayEquals(postings, decoded.toArray());
+    }
+
+    @Test
+    void varLong_roundTripsFullRange() {
+        byte[] buffer = new byte[10];
+        for (long value : new long[]{0, 1, 127, 128, 1L << 35, -1L, Long.MIN_VALUE}) {
+            int length = PostingCodec.writeVarLong(buffer, 0, value);
+            PostingCodec.Reader reader = new PostingCodec.Reader(ByteBuffer.wrap(buffer), 0);
+            assertEquals(value, reader.readVarLong());
+            assertEquals(length, reader.position);
+        }
+    }
+}
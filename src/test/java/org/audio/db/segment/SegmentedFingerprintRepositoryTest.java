@@ -0,0 +1,211 @@
+package org.audio.db.segment;
+
+import org.audio.db.InMemoryFingerprintDatabase;
+import org.audio.db.SongData;
+import org.audio.db.SongMatch;
+import org.audio.db.repo.FingerprintRepository;
+import org.audio.db.repo.InMemoryFingerprintRepository;
+import org.audio.db.repo.InMemorySongRepository;
+import org.audio.fingerprints.FingerprintFormat;
+import org.audio.models.TrackMatch;
+import org.audio.utils.LongArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedFingerprintRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void flushesAndMergesWithoutLosingPostings() throws IOException {
+        InMemoryFingerprintRepository reference = new InMemoryFingerprintRepository();
+        LongArray hashes = new LongArray();
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, new InMemorySongRepository(), 1_000, 3)) {
+            Random random = new Random(5);
+            for (int i = 0; i < 20_000; i++) {
+                long hash = random.nextInt(3_000);
+                long posting = SongMatch.posting(random.nextInt(40), i);
+                repository.save(hash, posting);
+                reference.save(hash, posting);
+                hashes.add(hash);
+            }
+            repository.flush();
+
+            assertEquals(0, repository.bufferedPostings());
+            assertTrue(repository.segmentCount() < 3, "segments: " + repository.segmentCount());
+            for (int i = 0; i < 2_000; i++) {
+                long hash = hashes.get(i);
+                assertArrayEquals(sortedPostings(reference, hash), sortedPostings(repository, hash));
+            }
+            // Пакетный поиск по всем частям находит те же вхождения, что и поиск по одному хешу
+            List<Long> batch = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                batch.add(hashes.get(i));
+            }
+            assertArrayEquals(sortedPostings(reference.findByHashes(batch)), sortedPostings(repository.findByHashes(batch)));
+        }
+    }
+
+    @Test
+    void merge_skipsSegmentsThatExceedSizeLimit() throws IOException {
+        InMemoryFingerprintRepository reference = new InMemoryFingerprintRepository();
+        Random random = new Random(11);
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, new InMemorySongRepository(), 100_000, 2, 2_000)) {
+            for (int part = 0; part < 3; part++) {
+                int count = part == 0 ? 5_000 : 10;
+                for (int i = 0; i < count; i++) {
+                    long hash = random.nextInt(1_000);
+                    long posting = SongMatch.posting(part, i);
+                    repository.save(hash, posting);
+                    reference.save(hash, posting);
+                }
+                repository.flush();
+            }
+
+            // Большой сегмент не помещается в предел ни с одним другим, маленькие сливаются между собой
+            assertEquals(2, repository.segmentCount());
+            List<Path> files = segmentFiles(dir);
+            assertEquals(5_000, FingerprintSegment.open(files.get(0)).postingCount());
+            assertEquals(20, FingerprintSegment.open(files.get(1)).postingCount());
+            for (long hash = 0; hash < 1_000; hash++) {
+                assertArrayEquals(sortedPostings(reference, hash), sortedPostings(repository, hash));
+            }
+        }
+    }
+
+    @Test
+    void reopen_restoresIndexAndSongs() throws IOException {
+        List<Long> fingerprints = List.of(11L, 12L, 13L, 14L, 15L, 16L);
+        InMemorySongRepository songs = new InMemorySongRepository();
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, songs, 4, 2)) {
+            InMemoryFingerprintDatabase db = new InMemoryFingerprintDatabase(songs, repository);
+            db.addTrack("a", "Track A", List.of(0x100L, 0x200L, 0x300L));
+            db.addTrack("b", "Track B", fingerprints);
+        }
+
+        InMemorySongRepository restoredSongs = new InMemorySongRepository();
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, restoredSongs, 4, 2)) {
+            assertEquals(1, restoredSongs.ordinalOf("b"));
+            Optional<TrackMatch> match = new InMemoryFingerprintDatabase(restoredSongs, repository)
+                    .findBestMatch(fingerprints);
+            assertTrue(match.isPresent());
+            assertEquals("b", match.get().getTrackId());
+            assertEquals("Track B", match.get().getTrackTitle());
+            assertEquals(6, match.get().getMatchScore());
+        }
+    }
+
+    @Test
+    void flush_writesOnlySongsOfSegmentPostings() throws IOException {
+        InMemorySongRepository songs = new InMemorySongRepository();
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, songs, 100, 10)) {
+            for (int ordinal = 0; ordinal < 3; ordinal++) {
+                songs.save(new SongData("t" + ordinal, "Track " + ordinal));
+                repository.save(ordinal, SongMatch.posting(ordinal, 0));
+                repository.flush();
+            }
+        }
+        List<Path> files = segmentFiles(dir);
+        assertEquals(3, files.size());
+        for (int i = 0; i < files.size(); i++) {
+            FingerprintSegment segment = FingerprintSegment.open(files.get(i));
+            assertEquals(1, segment.songCount());
+            int expected = i;
+            segment.forEachSong((song, ordinal) -> assertEquals(expected, ordinal));
+        }
+
+        InMemorySongRepository restored = new InMemorySongRepository();
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, restored, 100, 10)) {
+            assertEquals(2, restored.ordinalOf("t2"));
+            assertEquals("Track 1", restored.findByOrdinal(1).orElseThrow().name);
+        }
+    }
+
+    @Test
+    void reopen_skipsInputsThatSurvivedMerge() throws IOException {
+        InMemoryFingerprintRepository reference = new InMemoryFingerprintRepository();
+        Random random = new Random(9);
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, new InMemorySongRepository(), 1_000, 10)) {
+            for (int i = 0; i < 3_000; i++) {
+                long hash = random.nextInt(500);
+                long posting = SongMatch.posting(random.nextInt(20), i);
+                repository.save(hash, posting);
+                reference.save(hash, posting);
+            }
+        }
+        Path inputs = Files.createDirectories(dir.resolveSibling(dir.getFileName() + "-inputs"));
+        List<Path> inputFiles = segmentFiles(dir);
+        assertEquals(3, inputFiles.size());
+        for (Path file : inputFiles) {
+            Files.copy(file, inputs.resolve(file.getFileName()));
+        }
+
+        // Слияние при открытии удаляет входы; возвращённые входы изображают остановку до их удаления
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, new InMemorySongRepository(), 1_000, 3)) {
+            repository.flush();
+            assertEquals(1, repository.segmentCount());
+        }
+        for (Path file : inputFiles) {
+            Files.copy(inputs.resolve(file.getFileName()), file);
+        }
+        assertEquals(4, segmentFiles(dir).size());
+
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, new InMemorySongRepository(), 1_000, 10)) {
+            assertEquals(1, repository.segmentCount());
+            for (long hash = 0; hash < 500; hash++) {
+                assertArrayEquals(sortedPostings(reference, hash), sortedPostings(repository, hash));
+            }
+        }
+        assertEquals(1, segmentFiles(dir).size());
+    }
+
+    @Test
+    void open_rejectsSegmentsOfAnotherFormat() throws IOException {
+        try (SegmentedFingerprintRepository repository = new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_22050, new InMemorySongRepository(), 10, 2)) {
+            repository.save(1L, SongMatch.posting(0, 0));
+        }
+        assertThrows(IllegalStateException.class, () -> new SegmentedFingerprintRepository(
+                dir, FingerprintFormat.SR_44100, new InMemorySongRepository(), 10, 2));
+    }
+
+    private static long[] sortedPostings(FingerprintRepository repository, long hash) {
+        LongArray postings = new LongArray();
+        repository.forEachPosting(hash, postings::add);
+        long[] result = postings.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static long[] sortedPostings(List<SongMatch> matches) {
+        return matches.stream().mapToLong(SongMatch::toPosting).sorted().toArray();
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+}
@@ -31,6 +31,15 @@ class MatchResponseTest {
         assertNotNull(response.getStats());
     }
 
+    @Test
+    void fromProcessingResult_noMatchesKeepsHashesConsumed() {
+        AudioProcessingResult result = AudioProcessingResult.noMatch(44100, 1000, 900);
+        MatchResponse response = MatchResponse.fromProcessingResult(result);
+        assertNull(response.getMatches());
+        assertEquals(900, response.getStats().getHashesConsumed());
+        assertEquals(1000, response.getStats().getDurationMs());
+    }
+
     @Test
     void testTrackMatchDto() {
         MatchResponse.TrackMatchDto dto = new MatchResponse.TrackMatchDto("id", "t", 0.5f, 10, 100);
@@ -43,8 +52,9 @@ class MatchResponseTest {
 
     @Test
     void testProcessingStatsDto() {
-        MatchResponse.ProcessingStatsDto stats = new MatchResponse.ProcessingStatsDto(100, 2000);
+        MatchResponse.ProcessingStatsDto stats = new MatchResponse.ProcessingStatsDto(100, 2000, 300);
         assertEquals(100, stats.getSamplesProcessed());
         assertEquals(2000, stats.getDurationMs());
+        assertEquals(300, stats.getHashesConsumed());
     }
 } 
\ No newline at end of file
@@ -1,9 +1,12 @@
 package org.audio.fingerprints;
 
 import org.audio.models.Peak;
+import org.audio.utils.LongArray;
 import org.junit.jupiter.api.Test;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -35,4 +38,87 @@ class FingerprintGeneratorTest {
         assertNotNull(peaks);
         assertFalse(peaks.isEmpty());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void extractPeaks_keepsStrongestPeaksPerWindowInDescendingOrder() {
+        double[] audio = new double[4096];
+        for (int i = 0; i < audio.length; i++) {
+            audio[i] = 0.8 * Math.sin(2 * Math.PI * 440 * i / 44100.0)
+                    + 0.3 * Math.sin(2 * Math.PI * 2500 * i / 44100.0);
+        }
+        List<Peak> peaks = FingerprintGenerator.extractPeaks(audio);
+
+        assertTrue(peaks.size() <= 5 * 2); // два окна со сдвигом 2048, не больше 5 пиков в каждом
+        assertEquals(440, peaks.get(0).getFrequency(), 44100.0 / 4096);
+
+        float secondWindowStart = 2048f / 44100;
+        for (int i = 1; i < peaks.size(); i++) {
+            boolean sameWindow = (peaks.get(i - 1).getTime() < secondWindowStart) == (peaks.get(i).getTime() < secondWindowStart);
+            if (sameWindow) {
+                assertTrue(peaks.get(i - 1).getAmplitude() >= peaks.get(i).getAmplitude());
+            }
+        }
+    }
+
+    @Test
+    void decimatedFormats_keepFrequencyResolutionAndTagHashes() {
+        double[] audio = new double[44100 * 3];
+        for (int i = 0; i < audio.length; i++) {
+            double t = i / 44100.0;
+            audio[i] = 0.5 * Math.sin(2 * Math.PI * 440 * t)
+                    + 0.3 * Math.sin(2 * Math.PI * 1234 * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 3000 * t);
+        }
+
+        Set<Long> expectedPairs = frequencyPairs(FingerprintGenerator.generateFingerprintHashes(audio.clone()), 0);
+        for (FingerprintFormat format : new FingerprintFormat[]{FingerprintFormat.SR_22050, FingerprintFormat.SR_11025}) {
+            LongArray hashes = FingerprintGenerator.generateFingerprintHashes(audio.clone(), format);
+            Set<Long> pairs = frequencyPairs(hashes, format.version());
+
+            // Бины тех же частот при той же ширине бина дают те же поля частот
+            Set<Long> common = new HashSet<>(pairs);
+            common.retainAll(expectedPairs);
+            assertFalse(pairs.isEmpty(), format.name());
+            assertTrue(common.size() >= expectedPairs.size() * 0.8, format + ": " + common.size() + " of " + expectedPairs.size());
+        }
+    }
+
+    @Test
+    void bands_coverSpectrumUpToNyquistOfEachFormat() {
+        for (FingerprintFormat format : FingerprintFormat.values()) {
+            int n = format.windowSize();
+            double maxFreq = FingerprintGenerator.maxFrequency(format.sampleRate());
+            assertTrue(maxFreq <= format.sampleRate() / 2.0, format.name());
+
+            // Каждая полоса получает бины спектра: ни одна не лежит целиком выше Найквиста
+            int[] binsPerBand = new int[FingerprintGenerator.FREQ_BINS];
+            for (int bin = 1; bin < n / 2 - 1; bin++) {
+                double freq = bin * (double) format.sampleRate() / n;
+                if (freq >= 20 && freq <= maxFreq) {
+                    binsPerBand[FingerprintGenerator.bandOf(freq, maxFreq)]++;
+                }
+            }
+            for (int band = 0; band < binsPerBand.length; band++) {
+                assertTrue(binsPerBand[band] > 0, format + " band " + band);
+            }
+        }
+        assertEquals(11025 / 2.0, FingerprintGenerator.maxFrequency(FingerprintFormat.SR_11025.sampleRate()));
+    }
+
+    @Test
+    void formatForSampleRate_rejectsUnknownRates() {
+        assertEquals(FingerprintFormat.SR_22050, FingerprintFormat.forSampleRate(22050));
+        assertEquals(1024, FingerprintFormat.SR_11025.windowSize());
+        assertThrows(IllegalArgumentException.class, () -> FingerprintFormat.forSampleRate(48000));
+    }
+
+    private static Set<Long> frequencyPairs(LongArray hashes, int expectedVersion) {
+        Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < hashes.size(); i++) {
+            long hash = hashes.get(i);
+            assertEquals(expectedVersion, FingerprintFormat.versionOf(hash));
+            pairs.add((hash >>> 16) & 0xFFFFFFFFL);
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,98 @@
+package org.audio.fingerprints;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FingerprintWorkspaceTest {
+    private static final int WINDOW_SIZE = 4096;
+    private static final int OVERLAP = 2048;
+    private static final int WINDOWS = 200;
+
+    @Test
+    void drainHashes_returnsAccumulatedHashesAndResets() {
+        FingerprintWorkspace workspace = FingerprintGenerator.newWorkspace();
+        for (long i = 0; i < 1000; i++) {
+            workspace.addHash(i);
+        }
+        long[] hashes = workspace.drainHashes();
+        assertEquals(1000, hashes.length);
+        assertEquals(999L, hashes[999]);
+        assertEquals(0, workspace.hashCount());
+    }
+
+    @Test
+    void packPeak_roundTripsFrequencyAndTime() {
+        long peak = FingerprintWorkspace.packPeak(440.5f, 1.25f);
+        assertEquals(440.5f, FingerprintWorkspace.peakFrequency(peak));
+        assertEquals(1.25f, FingerprintWorkspace.peakTime(peak));
+    }
+
+    @Test
+    void reusedWorkspace_producesSameHashesAsFreshOne() {
+        double[] audio = signal();
+        boolean[] active = allActive(audio);
+        FingerprintWorkspace reused = FingerprintGenerator.newWorkspace();
+        for (int i = 0; i < 20; i++) {
+            long[] expected = FingerprintGenerator.processWindowRange(audio, active, i, i + 1,
+                    FingerprintGenerator.newWorkspace());
+            assertArrayEquals(expected, FingerprintGenerator.processWindowRange(audio, active, i, i + 1, reused));
+        }
+    }
+
+    @Test
+    void reusedWorkspace_allocatesFarLessPerWindow() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        double[] audio = signal();
+        boolean[] active = allActive(audio);
+        FingerprintWorkspace reused = FingerprintGenerator.newWorkspace();
+
+        // Прогрев: планы БПФ и JIT
+        processEachWindow(audio, active, reused, false);
+        processEachWindow(audio, active, reused, true);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        processEachWindow(audio, active, null, true);
+        long fresh = threads.getThreadAllocatedBytes(threadId) - before;
+
+        before = threads.getThreadAllocatedBytes(threadId);
+        processEachWindow(audio, active, reused, false);
+        long steady = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(steady * 10 < fresh,
+                "steady-state bytes/window " + steady / WINDOWS + " vs fresh buffers " + fresh / WINDOWS);
+    }
+
+    private static void processEachWindow(double[] audio, boolean[] active, FingerprintWorkspace workspace, boolean fresh) {
+        for (int i = 0; i < WINDOWS; i++) {
+            FingerprintWorkspace current = fresh ? FingerprintGenerator.newWorkspace() : workspace;
+            FingerprintGenerator.processWindowRange(audio, active, i, i + 1, current);
+        }
+    }
+
+    private static double[] signal() {
+        double[] audio = new double[WINDOWS * OVERLAP + WINDOW_SIZE];
+        for (int i = 0; i < audio.length; i++) {
+            double t = i / 44100.0;
+            audio[i] = 0.3 * Math.sin(2 * Math.PI * 440 * t) + 0.2 * Math.sin(2 * Math.PI * 1250 * t)
+                    + 0.1 * Math.sin(2 * Math.PI * (3000 + 500 * Math.sin(t)) * t);
+        }
+        return audio;
+    }
+
+    private static boolean[] allActive(double[] audio) {
+        boolean[] active = new boolean[audio.length];
+        Arrays.fill(active, true);
+        return active;
+    }
+}
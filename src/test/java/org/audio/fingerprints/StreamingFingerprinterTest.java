@@ -0,0 +1,113 @@
+package org.audio.fingerprints;
+
+import org.audio.utils.LongArray;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingFingerprinterTest {
+
+    @Test
+    void stationarySignal_matchesBatchFingerprints() {
+        // Периоды делят размер блока, поэтому бегущий RMS совпадает с RMS всего трека
+        double[] audio = periodicSignal(2048 * 40 + 512);
+
+        LongArray expected = FingerprintGenerator.generateFingerprintHashes(audio.clone());
+        LongArray actual = new LongArray();
+        StreamingFingerprinter fingerprinter = new StreamingFingerprinter(actual::add);
+        for (double sample : audio) {
+            fingerprinter.accept(sample);
+        }
+        fingerprinter.finish();
+
+        assertFalse(expected.isEmpty());
+        assertArrayEquals(expected.toArray(), actual.toArray());
+    }
+
+    @Test
+    void chunkBoundaries_doNotChangeHashes() throws IOException {
+        byte[] pcm = toPcm(periodicSignal(44100));
+
+        LongArray whole = new LongArray();
+        long samples = StreamingFingerprinter.fingerprint(new ByteArrayInputStream(pcm), whole::add);
+
+        LongArray chunked = new LongArray();
+        StreamingFingerprinter fingerprinter = new StreamingFingerprinter(chunked::add);
+        for (int offset = 0; offset < pcm.length; offset += 777) {
+            fingerprinter.write(pcm, offset, Math.min(777, pcm.length - offset));
+        }
+        fingerprinter.finish();
+
+        assertEquals(44100, samples);
+        assertEquals(samples, fingerprinter.samplesSeen());
+        assertArrayEquals(whole.toArray(), chunked.toArray());
+    }
+
+    @Test
+    void floatPrecision_matchesDoubleStreaming() throws IOException {
+        byte[] pcm = toPcm(periodicSignal(44100));
+
+        LongArray doubles = new LongArray();
+        StreamingFingerprinter.fingerprint(new ByteArrayInputStream(pcm), doubles::add);
+        LongArray floats = new LongArray();
+        StreamingFingerprinter.fingerprint(new ByteArrayInputStream(pcm), floats::add, FingerprintPrecision.FLOAT);
+
+        assertFalse(doubles.isEmpty());
+        assertArrayEquals(doubles.toArray(), floats.toArray());
+    }
+
+    @Test
+    void decimatedFormat_isChunkInvariantAndTagged() throws IOException {
+        byte[] pcm = toPcm(periodicSignal(44100));
+
+        LongArray whole = new LongArray();
+        StreamingFingerprinter.fingerprint(new ByteArrayInputStream(pcm), whole::add,
+                FingerprintPrecision.DOUBLE, FingerprintFormat.SR_22050);
+
+        LongArray chunked = new LongArray();
+        StreamingFingerprinter fingerprinter = new StreamingFingerprinter(chunked::add,
+                FingerprintPrecision.DOUBLE, FingerprintFormat.SR_22050);
+        for (int offset = 0; offset < pcm.length; offset += 1001) {
+            fingerprinter.write(pcm, offset, Math.min(1001, pcm.length - offset));
+        }
+        fingerprinter.finish();
+
+        assertFalse(whole.isEmpty());
+        assertEquals(44100, fingerprinter.samplesSeen());
+        assertArrayEquals(whole.toArray(), chunked.toArray());
+        for (long hash : whole.toArray()) {
+            assertEquals(FingerprintFormat.SR_22050.version(), FingerprintFormat.versionOf(hash));
+        }
+    }
+
+    @Test
+    void finish_closesStream() {
+        StreamingFingerprinter fingerprinter = new StreamingFingerprinter(hash -> { });
+        fingerprinter.finish();
+        assertThrows(IllegalStateException.class, () -> fingerprinter.accept(0.1));
+        assertThrows(IllegalStateException.class, fingerprinter::finish);
+    }
+
+    private static double[] periodicSignal(int length) {
+        double[] audio = new double[length];
+        for (int i = 0; i < length; i++) {
+            audio[i] = 0.4 * Math.sin(2 * Math.PI * i / 64.0)
+                    + 0.2 * Math.sin(2 * Math.PI * i / 16.0)
+                    + 0.1 * Math.sin(2 * Math.PI * i / 256.0);
+        }
+        return audio;
+    }
+
+    private static byte[] toPcm(double[] audio) {
+        byte[] pcm = new byte[audio.length * 2];
+        for (int i = 0; i < audio.length; i++) {
+            short sample = (short) Math.round(audio[i] * 32767);
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+}
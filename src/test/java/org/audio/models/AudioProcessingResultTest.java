@@ -14,9 +14,24 @@ class AudioProcessingResultTest {
         assertEquals(1, result.getMatches().length);
         assertEquals(100, result.getSamplesProcessed());
         assertEquals(2000, result.getAudioDurationMs());
+        assertEquals(0, result.getHashesConsumed());
         assertTrue(result.hasMatches());
     }
 
+    @Test
+    void testHashesConsumedIsPassedExplicitly() {
+        TrackMatch match = TrackMatch.create("id", "t", 50, 400, 0);
+        assertEquals(400, AudioProcessingResult.success(match, 100, 2000, 400).getHashesConsumed());
+        assertEquals(0, AudioProcessingResult.success(match, 100, 2000).getHashesConsumed());
+
+        // Без совпадений число просмотренных хешей не теряется
+        AudioProcessingResult noMatch = AudioProcessingResult.noMatch(44100, 1000, 900);
+        assertFalse(noMatch.hasMatches());
+        assertEquals(900, noMatch.getHashesConsumed());
+        assertEquals(44100, noMatch.getSamplesProcessed());
+        assertEquals(1000, noMatch.getAudioDurationMs());
+    }
+
     @Test
     void testMultipleMatches() {
         TrackMatch[] matches = {
@@ -34,6 +34,7 @@ class TrackMatchTest {
     void testCreate() {
         TrackMatch m = TrackMatch.create("id", "t", 5, 10, 100);
         assertEquals(0.5f, m.getConfidence());
+        assertEquals(10, m.getHashesConsumed());
     }
 
     @Test
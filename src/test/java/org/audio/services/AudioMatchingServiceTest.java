@@ -3,12 +3,15 @@ package org.audio.services;
 import org.audio.db.FingerprintDatabase;
 import org.audio.models.AudioProcessingResult;
 import org.audio.models.TrackMatch;
+import org.audio.utils.LongArray;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
-import java.util.List;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.Optional;
+import java.util.function.LongConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -34,8 +37,8 @@ class AudioMatchingServiceTest {
 
     @Test
     void identifyTrack_returnsNoMatchIfNoneFound() {
-        when(fingerprintService.generateFingerprints(any())).thenReturn(List.of(1L, 2L));
-        when(fingerprintDatabase.findBestMatch(any())).thenReturn(Optional.empty());
+        when(fingerprintService.generateFingerprintHashes(any())).thenReturn(LongArray.of(1L, 2L));
+        when(fingerprintDatabase.findBestMatch(any(LongArray.class))).thenReturn(Optional.empty());
         byte[] audio = new byte[4];
         AudioProcessingResult result = service.identifyTrack(audio);
         assertTrue(result.isSuccess());
@@ -44,9 +47,9 @@ class AudioMatchingServiceTest {
 
     @Test
     void identifyTrack_returnsMatchIfFound() {
-        when(fingerprintService.generateFingerprints(any())).thenReturn(List.of(1L, 2L));
+        when(fingerprintService.generateFingerprintHashes(any())).thenReturn(LongArray.of(1L, 2L));
         TrackMatch match = mock(TrackMatch.class);
-        when(fingerprintDatabase.findBestMatch(any())).thenReturn(Optional.of(match));
+        when(fingerprintDatabase.findBestMatch(any(LongArray.class))).thenReturn(Optional.of(match));
         byte[] audio = new byte[4];
         AudioProcessingResult result = service.identifyTrack(audio);
         assertTrue(result.isSuccess());
@@ -69,9 +72,9 @@ class AudioMatchingServiceTest {
 
     @Test
     void findBestMatches_returnsMultipleMatches() {
-        when(fingerprintService.generateFingerprints(any())).thenReturn(List.of(1L, 2L, 3L));
+        when(fingerprintService.generateFingerprintHashes(any())).thenReturn(LongArray.of(1L, 2L, 3L));
         TrackMatch[] matches = {mock(TrackMatch.class), mock(TrackMatch.class)};
-        when(fingerprintDatabase.bestMatches(any(), eq(2), eq(0.5f))).thenReturn(matches);
+        when(fingerprintDatabase.bestMatches(any(LongArray.class), eq(2), eq(0.5f))).thenReturn(matches);
         byte[] audio = new byte[4];
         AudioProcessingResult result = service.findBestMatches(audio, 2, 0.5f);
         assertTrue(result.isSuccess());
@@ -80,7 +83,7 @@ class AudioMatchingServiceTest {
 
     @Test
     void findBestMatches_returnsErrorOnException() {
-        when(fingerprintService.generateFingerprints(any())).thenThrow(new RuntimeException("fail"));
+        when(fingerprintService.generateFingerprintHashes(any())).thenThrow(new RuntimeException("fail"));
         byte[] audio = new byte[4];
         AudioProcessingResult result = service.findBestMatches(audio, 2, 0.5f);
         assertFalse(result.isSuccess());
@@ -89,18 +92,38 @@ class AudioMatchingServiceTest {
 
     @Test
     void registerTrack_addsTrack() {
-        when(fingerprintService.generateFingerprints(any())).thenReturn(List.of(1L, 2L));
-        doNothing().when(fingerprintDatabase).addTrack(any(), any(), any());
+        when(fingerprintService.generateFingerprintHashes(any())).thenReturn(LongArray.of(1L, 2L));
+        doNothing().when(fingerprintDatabase).addTrack(any(), any(), any(LongArray.class));
         service.registerTrack("id", "title", new byte[4]);
-        verify(fingerprintDatabase, times(1)).addTrack(eq("id"), eq("title"), any());
+        verify(fingerprintDatabase, times(1)).addTrack(eq("id"), eq("title"), any(LongArray.class));
     }
 
     @Test
     void identifyTrack_returnsErrorOnException() {
-        when(fingerprintService.generateFingerprints(any())).thenThrow(new RuntimeException("fail"));
+        when(fingerprintService.generateFingerprintHashes(any())).thenThrow(new RuntimeException("fail"));
         byte[] audio = new byte[4];
         AudioProcessingResult result = service.identifyTrack(audio);
         assertFalse(result.isSuccess());
         assertTrue(result.getErrorMessage().contains("fail"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void identifyTrack_streamReturnsErrorOnEmptyAudio() {
+        AudioProcessingResult result = service.identifyTrack(new ByteArrayInputStream(new byte[0]));
+        assertFalse(result.isSuccess());
+        assertEquals("Audio data is empty", result.getErrorMessage());
+    }
+
+    @Test
+    void registerTrack_streamAddsStreamedHashes() throws IOException {
+        when(fingerprintService.streamFingerprints(any(), any())).thenAnswer(invocation -> {
+            LongConsumer sink = invocation.getArgument(1);
+            sink.accept(7L);
+            sink.accept(9L);
+            return 2L;
+        });
+        service.registerTrack("id", "title", new ByteArrayInputStream(new byte[4]));
+        verify(fingerprintDatabase, times(1)).addTrack(eq("id"), eq("title"),
+                argThat((LongArray hashes) -> hashes.size() == 2 && hashes.get(1) == 9L));
+    }
+}
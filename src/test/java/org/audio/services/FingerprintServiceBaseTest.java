@@ -1,6 +1,7 @@
 package org.audio.services;
 
 import org.audio.models.Peak;
+import org.audio.utils.LongArray;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -12,7 +13,7 @@ class FingerprintServiceBaseTest {
     void generateFingerprints_throwsIfNotImplemented() {
         FingerprintServiceBase base = new FingerprintServiceBase() {
             @Override
-            public List<Long> generateFingerprints(double[] audioSamples) {
+            public LongArray generateFingerprintHashes(double[] audioSamples) {
                 throw new UnsupportedOperationException();
             }
             @Override
@@ -20,6 +21,7 @@ class FingerprintServiceBaseTest {
                 throw new UnsupportedOperationException();
             }
         };
+        assertThrows(UnsupportedOperationException.class, () -> base.generateFingerprintHashes(new double[0]));
         assertThrows(UnsupportedOperationException.class, () -> base.generateFingerprints(new double[0]));
         assertThrows(UnsupportedOperationException.class, () -> base.extractPeaks(new double[0]));
     }
@@ -1,7 +1,14 @@
 package org.audio.services;
 
+import org.audio.fingerprints.FingerprintFormat;
+import org.audio.fingerprints.FingerprintPrecision;
+import org.audio.utils.LongArray;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class FingerprintServiceTest {
@@ -12,6 +19,64 @@ class FingerprintServiceTest {
         assertNotNull(service.generateFingerprints(audio));
     }
 
+    @Test
+    void arrayAndStreamProduceSameHashes() throws IOException {
+        Random random = new Random(3);
+        byte[] pcm = new byte[2 * 44100 * 3];
+        double[] samples = new double[pcm.length / 2];
+        for (int i = 0; i < samples.length; i++) {
+            // Тон с затуханием к концу, чтобы нормализация по бегущему RMS отличалась от общей
+            double value = 0.5 * Math.sin(2 * Math.PI * 1000 * i / 44100.0) * (1 - i / (double) samples.length)
+                    + 0.01 * random.nextGaussian();
+            short sample = (short) Math.round(Math.max(-1, Math.min(1, value)) * Short.MAX_VALUE);
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+            samples[i] = sample / 32768.0;
+        }
+
+        for (FingerprintPrecision precision : FingerprintPrecision.values()) {
+            for (FingerprintFormat format : new FingerprintFormat[]{FingerprintFormat.SR_44100, FingerprintFormat.SR_11025}) {
+                FingerprintService service = new FingerprintService(precision, format);
+                LongArray streamed = new LongArray();
+                service.streamFingerprints(new ByteArrayInputStream(pcm), streamed::add);
+                LongArray batch = service.generateFingerprintHashes(samples);
+
+                assertTrue(streamed.size() > 0);
+                assertEquals(streamed.size(), batch.size());
+                for (int i = 0; i < streamed.size(); i++) {
+                    assertEquals(streamed.get(i), batch.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void floatPrecision_producesNearlyIdenticalHashes() {
+        Random random = new Random(1);
+        double[] audio = new double[44100 * 5];
+        for (int i = 0; i < audio.length; i++) {
+            double t = i / 44100.0;
+            audio[i] = 0.5 * Math.sin(2 * Math.PI * 440 * t)
+                    + 0.3 * Math.sin(2 * Math.PI * 1234 * (1 + 0.1 * Math.sin(t)) * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 3000 * t) * Math.sin(t * 3)
+                    + 0.05 * random.nextGaussian();
+        }
+
+        LongArray expected = new FingerprintService(FingerprintPrecision.DOUBLE).generateFingerprintHashes(audio);
+        LongArray actual = new FingerprintService(FingerprintPrecision.FLOAT).generateFingerprintHashes(audio);
+
+        // Расходиться могут только пики с почти равной амплитудой или на пороге мощности
+        int same = 0;
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            if (expected.get(i) == actual.get(i)) {
+                same++;
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), actual.size(), expected.size() * 0.01);
+        assertTrue(same >= expected.size() * 0.98, same + " of " + expected.size());
+    }
+
     @Test
     void extractPeaks_returnsNotNull() {
         FingerprintService service = new FingerprintService();
@@ -0,0 +1,114 @@
+package org.audio.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioKernelsTest {
+    private final AudioKernels scalar = new ScalarAudioKernels();
+    private final AudioKernels selected = AudioKernels.get();
+
+    @Test
+    void elementwiseKernels_matchScalarExactly() {
+        for (int length : new int[]{0, 1, 3, 17, 1024, 1031}) {
+            double[] x = randomArray(length, 1);
+            double[] y = randomArray(length, 2);
+
+            double[] expected = x.clone();
+            double[] actual = x.clone();
+            scalar.scaleAndClamp(expected, length, 3.5);
+            selected.scaleAndClamp(actual, length, 3.5);
+            assertArrayEquals(expected, actual, 0);
+
+            expected = x.clone();
+            actual = x.clone();
+            scalar.multiply(expected, y, length);
+            selected.multiply(actual, y, length);
+            assertArrayEquals(expected, actual, 0);
+
+            expected = new double[length];
+            actual = new double[length];
+            scalar.power(x, y, expected, length);
+            selected.power(x, y, actual, length);
+            assertArrayEquals(expected, actual, 0);
+        }
+    }
+
+    @Test
+    void sumOfSquares_matchesScalarWithinRounding() {
+        double[] x = randomArray(10_007, 3);
+        assertEquals(scalar.sumOfSquares(x, 5, x.length), selected.sumOfSquares(x, 5, x.length), 1e-9);
+        assertEquals(0.0, selected.sumOfSquares(x, 4, 4));
+    }
+
+    @Test
+    void decodePcm16_matchesScalar() {
+        byte[] pcm = new byte[2 * 9001 + 1];
+        new Random(4).nextBytes(pcm);
+        double[] expected = new double[9001];
+        double[] actual = new double[9001];
+
+        scalar.decodePcm16(pcm, 1, expected, expected.length);
+        selected.decodePcm16(pcm, 1, actual, actual.length);
+
+        assertArrayEquals(expected, actual, 0);
+        assertTrue(expected[0] >= -1.0 && expected[0] < 1.0);
+    }
+
+    @Test
+    void floatKernels_matchScalar() {
+        for (int length : new int[]{0, 1, 3, 17, 1024, 1031}) {
+            float[] x = toFloats(randomArray(length, 5));
+            float[] y = toFloats(randomArray(length, 6));
+
+            float[] expected = x.clone();
+            float[] actual = x.clone();
+            scalar.scaleAndClamp(expected, length, 3.5f);
+            selected.scaleAndClamp(actual, length, 3.5f);
+            assertArrayEquals(expected, actual, 0);
+
+            expected = x.clone();
+            actual = x.clone();
+            scalar.multiply(expected, y, length);
+            selected.multiply(actual, y, length);
+            assertArrayEquals(expected, actual, 0);
+
+            expected = new float[length];
+            actual = new float[length];
+            scalar.power(x, y, expected, length);
+            selected.power(x, y, actual, length);
+            assertArrayEquals(expected, actual, 0);
+        }
+
+        float[] x = toFloats(randomArray(10_007, 7));
+        double expectedSum = scalar.sumOfSquares(x, 5, x.length);
+        assertEquals(expectedSum, selected.sumOfSquares(x, 5, x.length), expectedSum * 1e-6);
+
+        byte[] pcm = new byte[2 * 9001];
+        new Random(8).nextBytes(pcm);
+        float[] expectedPcm = new float[9001];
+        float[] actualPcm = new float[9001];
+        scalar.decodePcm16(pcm, 0, expectedPcm, expectedPcm.length);
+        selected.decodePcm16(pcm, 0, actualPcm, actualPcm.length);
+        assertArrayEquals(expectedPcm, actualPcm, 0);
+    }
+
+    private static float[] toFloats(double[] x) {
+        float[] result = new float[x.length];
+        for (int i = 0; i < x.length; i++) {
+            result[i] = (float) x[i];
+        }
+        return result;
+    }
+
+    private static double[] randomArray(int length, long seed) {
+        Random random = new Random(seed);
+        double[] x = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = random.nextGaussian() * 0.5;
+        }
+        return x;
+    }
+}
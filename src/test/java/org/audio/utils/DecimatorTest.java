@@ -0,0 +1,93 @@
+package org.audio.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecimatorTest {
+
+    @Test
+    void factorOne_isIdentity() {
+        double[] signal = {0.1, -0.2, 0.3, 0.4, -0.5};
+        assertArrayEquals(signal, Decimator.decimate(signal, 1), 0);
+    }
+
+    @Test
+    void passesLowFrequencies_andRejectsAboveNewNyquist() {
+        int n = 44100;
+        for (int factor : new int[]{2, 4}) {
+            double nyquist = 22050.0 / factor;
+            double low = rms(trim(Decimator.decimate(tone(nyquist * 0.4, n), factor)));
+            double high = rms(trim(Decimator.decimate(tone(nyquist * 1.4, n), factor)));
+
+            assertEquals(Math.sqrt(0.5), low, 0.01, "factor " + factor);
+            assertTrue(high < 0.01, "leakage " + high + ", factor " + factor);
+        }
+        assertEquals(22050, Decimator.outputLength(n, 2));
+        assertEquals(2, Decimator.outputLength(5, 4));
+    }
+
+    @Test
+    void streamingMatchesBatch() {
+        double[] signal = tone(3000, 10_001);
+        for (int factor : new int[]{1, 2, 4}) {
+            double[] expected = Decimator.decimate(signal, factor);
+
+            LongArray bits = new LongArray();
+            Decimator decimator = new Decimator(factor, value -> bits.add(Double.doubleToLongBits(value)));
+            for (double sample : signal) {
+                decimator.push(sample);
+            }
+            decimator.flush();
+
+            assertEquals(expected.length, bits.size(), "factor " + factor);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], Double.longBitsToDouble(bits.get(i)), 0, "factor " + factor + ", i=" + i);
+            }
+        }
+    }
+
+    @Test
+    void floatDecimationMatchesDouble() {
+        double[] signal = tone(2000, 4096);
+        float[] floatSignal = new float[signal.length];
+        for (int i = 0; i < signal.length; i++) {
+            floatSignal[i] = (float) signal[i];
+        }
+
+        double[] expected = Decimator.decimate(signal, 4);
+        float[] actual = Decimator.decimate(floatSignal, 4);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-5);
+        }
+    }
+
+    @Test
+    void rejectsFactorsOtherThanPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> Decimator.decimate(new double[4], 0));
+        assertThrows(IllegalArgumentException.class, () -> new Decimator(3, value -> { }));
+    }
+
+    private static double[] tone(double frequency, int length) {
+        double[] signal = new double[length];
+        for (int i = 0; i < length; i++) {
+            signal[i] = Math.sin(2 * Math.PI * frequency * i / 44100.0);
+        }
+        return signal;
+    }
+
+    // Отбрасывает края, где фильтр видит дополнение нулями
+    private static double[] trim(double[] signal) {
+        double[] middle = new double[signal.length - 200];
+        System.arraycopy(signal, 100, middle, 0, middle.length);
+        return middle;
+    }
+
+    private static double rms(double[] signal) {
+        double sum = 0;
+        for (double sample : signal) {
+            sum += sample * sample;
+        }
+        return Math.sqrt(sum / signal.length);
+    }
+}
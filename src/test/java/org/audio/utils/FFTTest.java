@@ -73,4 +73,109 @@ class FFTTest {
         FFT.Complex[] output = FFT.fftWithPadding(input);
         assertEquals(4, output.length); // padded до 4
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testInPlaceFftMatchesNaiveDft() {
+        int n = 64;
+        double[] re = new double[n];
+        double[] im = new double[n];
+        for (int i = 0; i < n; i++) {
+            re[i] = Math.sin(i * 0.3) + 0.5 * Math.cos(i * 1.7);
+            im[i] = 0.25 * Math.sin(i * 0.9);
+        }
+        double[] expectedRe = new double[n];
+        double[] expectedIm = new double[n];
+        for (int k = 0; k < n; k++) {
+            for (int t = 0; t < n; t++) {
+                double angle = -2 * Math.PI * k * t / n;
+                expectedRe[k] += re[t] * Math.cos(angle) - im[t] * Math.sin(angle);
+                expectedIm[k] += re[t] * Math.sin(angle) + im[t] * Math.cos(angle);
+            }
+        }
+
+        FFT.fft(re, im);
+
+        for (int k = 0; k < n; k++) {
+            assertEquals(expectedRe[k], re[k], 1e-9);
+            assertEquals(expectedIm[k], im[k], 1e-9);
+        }
+    }
+
+    @Test
+    void testComplexWrapperMatchesInPlaceFft() {
+        double[] re = {1, 2, 3, 4, 0, -1, -2, -3};
+        double[] im = new double[re.length];
+        FFT.Complex[] input = new FFT.Complex[re.length];
+        for (int i = 0; i < re.length; i++) input[i] = new FFT.Complex(re[i], 0);
+
+        FFT.Complex[] output = FFT.fft(input);
+        FFT.fft(re, im);
+
+        for (int i = 0; i < re.length; i++) {
+            assertEquals(re[i], output[i].re, 1e-12);
+            assertEquals(im[i], output[i].im, 1e-12);
+        }
+    }
+
+    @Test
+    void testInPlaceFftValidatesInput() {
+        assertThrows(IllegalArgumentException.class, () -> FFT.fft(null, new double[4]));
+        assertThrows(IllegalArgumentException.class, () -> FFT.fft(new double[4], new double[2]));
+        assertThrows(IllegalArgumentException.class, () -> FFT.fft(new double[3], new double[3]));
+    }
+
+    @Test
+    void testRealFftMatchesComplexFftHalfSpectrum() {
+        for (int n : new int[]{1, 2, 4, 8, 64, 256}) {
+            double[] signal = new double[n];
+            for (int i = 0; i < n; i++) signal[i] = Math.sin(i * 0.37) + 0.3 * Math.cos(i * 2.1);
+            int length = Math.max(1, n - n / 4); // хвост дополняется нулями
+
+            double[] fullRe = new double[n];
+            double[] fullIm = new double[n];
+            System.arraycopy(signal, 0, fullRe, 0, length);
+            FFT.fft(fullRe, fullIm);
+
+            double[] re = new double[n / 2 + 1];
+            double[] im = new double[n / 2 + 1];
+            FFT.realFft(signal, length, n, re, im);
+
+            for (int k = 0; k <= n / 2; k++) {
+                assertEquals(fullRe[k], re[k], 1e-9, "re[" + k + "], n=" + n);
+                assertEquals(fullIm[k], im[k], 1e-9, "im[" + k + "], n=" + n);
+            }
+        }
+    }
+
+    @Test
+    void testFloatRealFftMatchesDoublePrecision() {
+        int n = 4096;
+        FftPlan plan = FftPlan.forSize(n);
+        double[] signal = new double[n];
+        float[] floatSignal = new float[n];
+        for (int i = 0; i < n; i++) {
+            signal[i] = Math.sin(i * 0.37) + 0.3 * Math.cos(i * 2.1);
+            floatSignal[i] = (float) signal[i];
+        }
+
+        double[] re = new double[n / 2 + 1];
+        double[] im = new double[n / 2 + 1];
+        float[] floatRe = new float[n / 2 + 1];
+        float[] floatIm = new float[n / 2 + 1];
+        FFT.realFft(signal, n - 100, plan, re, im);
+        FFT.realFft(floatSignal, n - 100, plan, floatRe, floatIm);
+
+        // Ошибка float-БПФ растёт как log2(n) · eps · норма сигнала
+        for (int k = 0; k <= n / 2; k++) {
+            assertEquals(re[k], floatRe[k], 1e-2, "re[" + k + "]");
+            assertEquals(im[k], floatIm[k], 1e-2, "im[" + k + "]");
+        }
+    }
+
+    @Test
+    void testRealFftValidatesInput() {
+        assertThrows(IllegalArgumentException.class, () -> FFT.realFft(new double[6], 6, 6, new double[4], new double[4]));
+        assertThrows(IllegalArgumentException.class, () -> FFT.realFft(new double[8], 8, 8, new double[4], new double[4]));
+        assertThrows(IllegalArgumentException.class, () -> FFT.realFft(new double[8], 9, 8, new double[5], new double[5]));
+    }
+}
@@ -0,0 +1,39 @@
+package org.audio.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FftPlanTest {
+    @Test
+    void forSize_returnsCachedPlan() {
+        assertSame(FftPlan.forSize(1024), FftPlan.forSize(1024));
+        assertEquals(1024, FftPlan.forSize(1024).size());
+    }
+
+    @Test
+    void forSize_rejectsNonPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> FftPlan.forSize(0));
+        assertThrows(IllegalArgumentException.class, () -> FftPlan.forSize(12));
+    }
+
+    @Test
+    void applyHannWindow_matchesHannFormula() {
+        int size = 16;
+        double[] frame = new double[size];
+        java.util.Arrays.fill(frame, 2.0);
+        FftPlan.forSize(size).applyHannWindow(frame, size);
+        for (int i = 0; i < size; i++) {
+            assertEquals(2.0 * 0.5 * (1 - Math.cos(2 * Math.PI * i / (size - 1))), frame[i], 1e-12);
+        }
+    }
+
+    @Test
+    void applyHannWindow_partialFrameLeavesTailUntouched() {
+        double[] frame = {1, 1, 1, 1, 1, 1, 1, 1};
+        FftPlan.forSize(8).applyHannWindow(frame, 4);
+        assertEquals(0.0, frame[0], 1e-12);
+        assertEquals(1.0, frame[4]);
+        assertThrows(IllegalArgumentException.class, () -> FftPlan.forSize(4).applyHannWindow(frame, 8));
+    }
+}
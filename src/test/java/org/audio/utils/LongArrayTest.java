@@ -0,0 +1,50 @@
+package org.audio.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongArrayTest {
+    @Test
+    void add_growsAndKeepsOrder() {
+        LongArray array = new LongArray();
+        for (long i = 0; i < 100; i++) {
+            array.add(i * 3);
+        }
+        assertEquals(100, array.size());
+        assertEquals(297L, array.get(99));
+        assertEquals(100, array.toArray().length);
+    }
+
+    @Test
+    void addAll_appendsRange() {
+        LongArray array = LongArray.of(1, 2);
+        array.addAll(new long[]{5, 6, 7, 8}, 1, 2);
+        assertArrayEquals(new long[]{1, 2, 6, 7}, array.toArray());
+    }
+
+    @Test
+    void get_outOfBoundsThrows() {
+        LongArray array = new LongArray(8);
+        array.add(1);
+        assertThrows(IndexOutOfBoundsException.class, () -> array.get(1));
+    }
+
+    @Test
+    void fromListAndAsList_roundTrip() {
+        LongArray array = LongArray.fromList(List.of(10L, 20L, 30L));
+        assertEquals(List.of(10L, 20L, 30L), array.asList());
+        assertThrows(UnsupportedOperationException.class, () -> array.asList().add(40L));
+    }
+
+    @Test
+    void wrap_usesGivenPrefix() {
+        long[] values = {4, 5, 6};
+        LongArray array = LongArray.wrap(values, 2);
+        assertEquals(2, array.size());
+        assertSame(values, array.array());
+        assertThrows(IllegalArgumentException.class, () -> LongArray.wrap(values, 4));
+    }
+}